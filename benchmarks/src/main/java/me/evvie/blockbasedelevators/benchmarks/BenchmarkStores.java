@@ -0,0 +1,30 @@
+package me.evvie.blockbasedelevators.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.logging.Logger;
+
+import me.evvie.blockbasedelevators.elevators.ElevatorStore;
+
+/**
+ * This class creates elevator stores in temporary directories for the benchmarks
+ */
+public final class BenchmarkStores
+{
+	private BenchmarkStores()
+	{
+	}
+	
+	/**
+	 * This method creates a store writing to a new temporary directory
+	 * @return The store
+	 * @throws IOException If the directory can not be created
+	 */
+	public static ElevatorStore create() throws IOException
+	{
+		File directory = Files.createTempDirectory("bbe-benchmark").toFile();
+		directory.deleteOnExit();
+		return new ElevatorStore(directory, Logger.getLogger("BenchmarkStore"), ElevatorLayout.profiles().getNames());
+	}
+}
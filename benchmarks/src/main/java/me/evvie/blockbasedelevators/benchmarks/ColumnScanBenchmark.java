@@ -0,0 +1,114 @@
+package me.evvie.blockbasedelevators.benchmarks;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import me.evvie.blockbasedelevators.benchmarks.standin.StandInWorld;
+import me.evvie.blockbasedelevators.elevators.ElevatorColumnScanner;
+import me.evvie.blockbasedelevators.elevators.ElevatorManager;
+import me.evvie.blockbasedelevators.elevators.ElevatorStore;
+import me.evvie.blockbasedelevators.metrics.ElevatorMetrics;
+
+/**
+ * This benchmark compares the per-block column scan with the ChunkSnapshot based column scan
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ColumnScanBenchmark
+{
+	@Param({ "4", "32", "128" })
+	public int floorsPerShaft;
+	
+	private ElevatorStore store;
+	private ElevatorManager manager;
+	private ElevatorColumnScanner scanner;
+	private World world;
+	private ChunkSnapshot snapshot;
+	private int x;
+	private int z;
+	
+	@Setup(Level.Trial)
+	public void setup() throws IOException
+	{
+		StandInWorld standInWorld = new StandInWorld("column-scan");
+		ElevatorLayout layout = new ElevatorLayout(1, floorsPerShaft);
+		layout.build(standInWorld);
+		
+		world = standInWorld.getWorld();
+		x = layout.getX(0);
+		z = layout.getZ(0);
+		
+		store = BenchmarkStores.create();
+		manager = new ElevatorManager(ElevatorLayout.profiles(), store, new ElevatorMetrics());
+		scanner = new ElevatorColumnScanner(ElevatorLayout.profiles());
+		snapshot = standInWorld.snapshot(x >> 4, z >> 4);
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		store.close();
+	}
+	
+	@Benchmark
+	public int perBlockScan()
+	{
+		//the scan used by ElevatorManager.rescanElevator before the snapshot scanner existed
+		int floors = 0;
+		
+		for (int y = world.getMinHeight(); y < world.getMaxHeight(); y++)
+		{
+			Block block = world.getBlockAt(x, y, z);
+			
+			if (manager.checkForValidElevator(block))
+				floors++;
+		}
+		
+		return floors;
+	}
+	
+	@Benchmark
+	public int snapshotScan()
+	{
+		//taking the snapshot and verifying the candidates has to happen on the main thread
+		ChunkSnapshot chunkSnapshot = world.getChunkAt(x >> 4, z >> 4).getChunkSnapshot(false, false, false);
+		int[] candidates = scanner.scanColumn(chunkSnapshot, world.getMinHeight(), world.getMaxHeight(), x & 15, z & 15, 0);
+		int floors = 0;
+		
+		for (int candidate : candidates)
+		{
+			if (manager.checkForValidElevator(world.getBlockAt(x, candidate, z)))
+				floors++;
+		}
+		
+		return floors;
+	}
+	
+	@Benchmark
+	public int[] preparedSnapshotScan()
+	{
+		//the part of the snapshot scan that can run off the main thread
+		return scanner.scanColumn(snapshot, world.getMinHeight(), world.getMaxHeight(), x & 15, z & 15, 0);
+	}
+}
@@ -0,0 +1,85 @@
+package me.evvie.blockbasedelevators.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.block.Block;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import me.evvie.blockbasedelevators.benchmarks.standin.StandInWorld;
+import me.evvie.blockbasedelevators.elevators.Elevator;
+
+/**
+ * This benchmark measures the floor navigation and floor insertion of a single elevator
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ElevatorBenchmark
+{
+	//amount of pre-selected floors the benchmarks cycle through
+	private static final int SAMPLES = 1024;
+	
+	@Param({ "4", "32", "128" })
+	public int floorsPerShaft;
+	
+	private Elevator elevator;
+	private Block[] floors;
+	private int cursor;
+	
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		StandInWorld world = new StandInWorld("elevator");
+		ElevatorLayout layout = new ElevatorLayout(1, floorsPerShaft);
+		layout.build(world);
+		
+		elevator = new Elevator();
+		elevator.create(world.getBlockAt(layout.getX(0), layout.getY(0), layout.getZ(0)), 0);
+		
+		Random random = new Random(42);
+		floors = new Block[SAMPLES];
+		
+		for (int i = 0; i < SAMPLES; i++)
+			floors[i] = world.getBlockAt(layout.getX(0), layout.getY(random.nextInt(floorsPerShaft)), layout.getZ(0));
+		
+		for (int floor = 0; floor < floorsPerShaft; floor++)
+			elevator.addElevatorFloor(world.getBlockAt(layout.getX(0), layout.getY(floor), layout.getZ(0)));
+	}
+	
+	@Benchmark
+	public Block getAbove()
+	{
+		return elevator.getAbove(floors[cursor++ & (SAMPLES - 1)]);
+	}
+	
+	@Benchmark
+	public Block getBelow()
+	{
+		return elevator.getBelow(floors[cursor++ & (SAMPLES - 1)]);
+	}
+	
+	@Benchmark
+	public int removeAndAddElevatorFloor()
+	{
+		//removing first keeps the elevator unchanged after every invocation
+		Block floor = floors[cursor++ & (SAMPLES - 1)];
+		elevator.removeElevatorFloor(floor);
+		elevator.addElevatorFloor(floor);
+		return elevator.floorCount();
+	}
+}
@@ -0,0 +1,114 @@
+package me.evvie.blockbasedelevators.benchmarks;
+
+import java.util.Collections;
+
+import org.bukkit.Material;
+
+import me.evvie.blockbasedelevators.benchmarks.standin.StandInWorld;
+import me.evvie.blockbasedelevators.elevators.ElevatorProfile;
+import me.evvie.blockbasedelevators.elevators.ElevatorProfiles;
+
+/**
+ * This class builds a grid of elevators into a stand-in world
+ * Elevators are placed four blocks apart, so their rims never touch, and the floors of each
+ * elevator are spread evenly over the whole height of the world.
+ */
+public final class ElevatorLayout
+{
+	public static final String CENTER_MATERIAL = "lapis_block";
+	public static final String RIM_MATERIAL = "redstone_block";
+	
+	private static final int SPACING = 4;
+	
+	private final int elevatorCount;
+	private final int floorsPerShaft;
+	private final int side;
+	
+	/**
+	 * Constructor for the creation of a layout
+	 * @param elevatorCount The amount of elevators
+	 * @param floorsPerShaft The amount of floors of every elevator
+	 */
+	public ElevatorLayout(int elevatorCount, int floorsPerShaft)
+	{
+		this.elevatorCount = elevatorCount;
+		this.floorsPerShaft = floorsPerShaft;
+		this.side = (int)Math.ceil(Math.sqrt(elevatorCount));
+	}
+	
+	/**
+	 * This method compiles the default profile, made of the materials the layout builds with
+	 * @return The profiles
+	 */
+	public static ElevatorProfiles profiles()
+	{
+		Material center = Material.getMaterial(CENTER_MATERIAL.toUpperCase());
+		Material rim = Material.getMaterial(RIM_MATERIAL.toUpperCase());
+		return new ElevatorProfiles(Collections.singletonList(new ElevatorProfile(ElevatorProfiles.DEFAULT_PROFILE, center, rim, ElevatorProfile.SHAPE_PLUS, 0, true, true)));
+	}
+	
+	/**
+	 * This method builds every floor of every elevator into a world
+	 * @param world The world to build in
+	 */
+	public void build(StandInWorld world)
+	{
+		Material center = Material.getMaterial(CENTER_MATERIAL.toUpperCase());
+		Material rim = Material.getMaterial(RIM_MATERIAL.toUpperCase());
+		
+		for (int elevator = 0; elevator < elevatorCount; elevator++)
+		{
+			for (int floor = 0; floor < floorsPerShaft; floor++)
+				world.setFloor(getX(elevator), getY(floor), getZ(elevator), center, rim);
+		}
+	}
+	
+	/**
+	 * This method gets the x-coordinate of an elevator
+	 * @param elevator The number of the elevator
+	 * @return The x-coordinate of the elevator
+	 */
+	public int getX(int elevator)
+	{
+		return 1 + (elevator % side) * SPACING;
+	}
+	
+	/**
+	 * This method gets the z-coordinate of an elevator
+	 * @param elevator The number of the elevator
+	 * @return The z-coordinate of the elevator
+	 */
+	public int getZ(int elevator)
+	{
+		return 1 + (elevator / side) * SPACING;
+	}
+	
+	/**
+	 * This method gets the height of a floor, which is the same for every elevator
+	 * @param floor The number of the floor, starting at zero
+	 * @return The y-coordinate of the floor's center
+	 */
+	public int getY(int floor)
+	{
+		int distance = Math.max(2, (StandInWorld.MAX_HEIGHT - StandInWorld.MIN_HEIGHT) / floorsPerShaft);
+		return StandInWorld.MIN_HEIGHT + floor * distance;
+	}
+	
+	/**
+	 * This method gets the amount of elevators
+	 * @return The amount of elevators
+	 */
+	public int getElevatorCount()
+	{
+		return elevatorCount;
+	}
+	
+	/**
+	 * This method gets the amount of floors of every elevator
+	 * @return The amount of floors
+	 */
+	public int getFloorsPerShaft()
+	{
+		return floorsPerShaft;
+	}
+}
@@ -0,0 +1,112 @@
+package me.evvie.blockbasedelevators.benchmarks;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.block.Block;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import me.evvie.blockbasedelevators.benchmarks.standin.StandInWorld;
+import me.evvie.blockbasedelevators.elevators.Elevator;
+import me.evvie.blockbasedelevators.elevators.ElevatorManager;
+import me.evvie.blockbasedelevators.elevators.ElevatorStore;
+import me.evvie.blockbasedelevators.metrics.ElevatorMetrics;
+
+/**
+ * This benchmark measures the lookup and creation of elevators in the ElevatorManager
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ElevatorManagerBenchmark
+{
+	//amount of pre-selected blocks the benchmarks cycle through
+	private static final int SAMPLES = 1024;
+	
+	@Param({ "100", "1000", "10000" })
+	public int elevatorCount;
+	
+	@Param({ "4", "32", "128" })
+	public int floorsPerShaft;
+	
+	private ElevatorStore store;
+	private ElevatorManager manager;
+	private Block[] floors;
+	private Block[] misses;
+	private int cursor;
+	
+	@Setup(Level.Trial)
+	public void setup() throws IOException
+	{
+		StandInWorld world = new StandInWorld("elevator-manager");
+		ElevatorLayout layout = new ElevatorLayout(elevatorCount, floorsPerShaft);
+		layout.build(world);
+		
+		store = BenchmarkStores.create();
+		manager = new ElevatorManager(ElevatorLayout.profiles(), store, new ElevatorMetrics());
+		
+		for (int elevator = 0; elevator < elevatorCount; elevator++)
+			manager.createElevator(world.getBlockAt(layout.getX(elevator), layout.getY(0), layout.getZ(elevator)), 0);
+		
+		//random floors of random elevators, and blocks between the elevators
+		Random random = new Random(42);
+		floors = new Block[SAMPLES];
+		misses = new Block[SAMPLES];
+		
+		for (int i = 0; i < SAMPLES; i++)
+		{
+			int elevator = random.nextInt(elevatorCount);
+			int floor = random.nextInt(floorsPerShaft);
+			floors[i] = world.getBlockAt(layout.getX(elevator), layout.getY(floor), layout.getZ(elevator));
+			misses[i] = world.getBlockAt(layout.getX(elevator) + 2, layout.getY(floor), layout.getZ(elevator) + 2);
+		}
+	}
+	
+	@Setup(Level.Iteration)
+	public void compactJournals()
+	{
+		//createElevator journals every floor it finds, snapshots keep the journals from growing
+		manager.saveElevators();
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		store.close();
+	}
+	
+	@Benchmark
+	public Elevator elevatorExistsHit()
+	{
+		return manager.elevatorExists(floors[cursor++ & (SAMPLES - 1)], 0);
+	}
+	
+	@Benchmark
+	public Elevator elevatorExistsMiss()
+	{
+		return manager.elevatorExists(misses[cursor++ & (SAMPLES - 1)], 0);
+	}
+	
+	@Benchmark
+	public Elevator createElevator()
+	{
+		//replaces the known elevator and rescans its whole column
+		return manager.createElevator(floors[cursor++ & (SAMPLES - 1)], 0);
+	}
+}
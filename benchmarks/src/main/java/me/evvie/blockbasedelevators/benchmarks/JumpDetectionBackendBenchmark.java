@@ -0,0 +1,349 @@
+package me.evvie.blockbasedelevators.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.Statistic;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerStatisticIncrementEvent;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import me.evvie.blockbasedelevators.benchmarks.standin.StandInPlayer;
+import me.evvie.blockbasedelevators.benchmarks.standin.StandInWorld;
+import me.evvie.blockbasedelevators.benchmarks.standin.StandIns;
+import me.evvie.blockbasedelevators.elevators.PlayerSessions;
+import me.evvie.blockbasedelevators.events.PlayerJumpEvent;
+import me.evvie.blockbasedelevators.metrics.ElevatorMetrics;
+
+/**
+ * This benchmark compares the overhead and the accuracy of the jump detection backends
+ * Both backends replay the same trace of moves: the move backend gets every PlayerMoveEvent, the
+ * statistic backend only the statistic events the server fires for those moves. Besides the time
+ * per replay, the detected, missed and wrongly detected jumps are reported as secondary results.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JumpDetectionBackendBenchmark
+{
+	//vertical physics of players per tick
+	private static final double GRAVITY = 0.08;
+	private static final double DRAG = 0.98;
+	private static final double JUMP_VELOCITY = 0.42;
+	private static final double CLIMB_SPEED = 0.1176;
+	
+	private StandInWorld world;
+	private StandInPlayer player;
+	private PlayerJumpEvent.CallJumpEvent moveBackend;
+	private PlayerJumpEvent.CallJumpEventOnStatistic statisticBackend;
+	private final List<Step> trace = new ArrayList<Step>();
+	
+	//position of the player while the trace gets recorded
+	private double x;
+	private double y;
+	private double z;
+	private int jumpStatistic;
+	
+	/**
+	 * This class counts the accuracy of a backend over all replays of the trace
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Accuracy
+	{
+		public long detectedJumps;
+		public long missedJumps;
+		public long falseJumps;
+	}
+	
+	/**
+	 * This class is a single move of the trace, with the state of the player after the move
+	 */
+	private static class Step
+	{
+		private PlayerMoveEvent move;
+		private double velocityY;
+		private boolean onGround;
+		private List<PlayerStatisticIncrementEvent> statistics = new ArrayList<PlayerStatisticIncrementEvent>();
+		
+		//true if the player really jumped with this move
+		private boolean jump;
+		
+		//true if the move is the start of a jump that hit a ceiling
+		private boolean capped;
+	}
+	
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		world = new StandInWorld("jump-detection-backends");
+		x = 0.5;
+		y = 64;
+		z = 0.5;
+		player = new StandInPlayer(world, x, y, z);
+		
+		ElevatorMetrics metrics = new ElevatorMetrics();
+		moveBackend = new PlayerJumpEvent.CallJumpEvent(metrics, new PlayerSessions(Collections.singletonList(player.getPlayer())));
+		statisticBackend = new PlayerJumpEvent.CallJumpEventOnStatistic(metrics);
+		
+		for (int i = 0; i < 5; i++)
+		{
+			walk(20);
+			rotate(5);
+			jump(JUMP_VELOCITY, Double.MAX_VALUE, true);
+			walk(5);
+			
+			//jumps off honey blocks only reach half the velocity, so the move backend misses them
+			jump(JUMP_VELOCITY / 2, Double.MAX_VALUE, true);
+			walk(5);
+			
+			//jumps below a low ceiling, like between floors three blocks apart, only rise by 0.2
+			jump(JUMP_VELOCITY, 0.2, true);
+			walk(5);
+			
+			//walking up a slab or stair keeps the player on the ground
+			stepUp(0.5);
+			walk(5);
+			stepUp(-0.5);
+			
+			//knockback lifts the player like a jump, the server counts it as one as well
+			knockback(0.36);
+			walk(5);
+			
+			//climbing a ladder from the ground is no jump
+			climb(10);
+			walk(5);
+		}
+		
+		verifyCappedJumps();
+	}
+	
+	@Benchmark
+	public void moveBackend(Accuracy accuracy)
+	{
+		for (Step step : trace)
+		{
+			long calledEvents = prepare(step);
+			moveBackend.onJump(step.move);
+			score(accuracy, step, calledEvents);
+		}
+	}
+	
+	@Benchmark
+	public void statisticBackend(Accuracy accuracy)
+	{
+		for (Step step : trace)
+		{
+			long calledEvents = prepare(step);
+			
+			for (int i = 0; i < step.statistics.size(); i++)
+				statisticBackend.onStatisticIncrement(step.statistics.get(i));
+			
+			score(accuracy, step, calledEvents);
+		}
+	}
+	
+	/**
+	 * This method replays the trace against the move backend once and checks that it detects jumps below a ceiling
+	 * Those are the jumps between floors at the usual spacing, so missing them breaks upward travel.
+	 * @throws IllegalStateException If a jump below a ceiling is missed
+	 */
+	private void verifyCappedJumps()
+	{
+		for (Step step : trace)
+		{
+			long calledEvents = prepare(step);
+			moveBackend.onJump(step.move);
+			
+			if (step.capped && StandIns.calledEvents.get() == calledEvents)
+				throw new IllegalStateException("The move backend missed a jump below a low ceiling");
+		}
+	}
+	
+	/**
+	 * This method puts the player into the state after a move of the trace
+	 * @param step The move
+	 * @return The amount of events called so far
+	 */
+	private long prepare(Step step)
+	{
+		Location to = step.move.getTo();
+		player.moveTo(to.getX(), to.getY(), to.getZ());
+		player.setVelocityY(step.velocityY);
+		player.setOnGround(step.onGround);
+		
+		return StandIns.calledEvents.get();
+	}
+	
+	/**
+	 * This method compares the detection of a backend with the truth of the trace
+	 * @param accuracy The counters of the backend
+	 * @param step The replayed move
+	 * @param calledEvents The amount of events called before the move got replayed
+	 */
+	private static void score(Accuracy accuracy, Step step, long calledEvents)
+	{
+		boolean detected = StandIns.calledEvents.get() != calledEvents;
+		
+		if (step.jump)
+		{
+			if (detected)
+				accuracy.detectedJumps++;
+			else
+				accuracy.missedJumps++;
+		}
+		else if (detected)
+			accuracy.falseJumps++;
+	}
+	
+	/**
+	 * This method records a move of the player
+	 * @param toX The new x-coordinate
+	 * @param toY The new y-coordinate
+	 * @param toZ The new z-coordinate
+	 * @param yaw The new yaw
+	 * @param velocityY The vertical velocity after the move
+	 * @param onGround True if the player is on the ground after the move
+	 * @return The recorded step
+	 */
+	private Step record(double toX, double toY, double toZ, float yaw, double velocityY, boolean onGround)
+	{
+		Step step = new Step();
+		step.move = new PlayerMoveEvent(player.getPlayer(), new Location(world.getWorld(), x, y, z, 0, 0), new Location(world.getWorld(), toX, toY, toZ, yaw, 0));
+		step.velocityY = velocityY;
+		step.onGround = onGround;
+		trace.add(step);
+		
+		x = toX;
+		y = toY;
+		z = toZ;
+		return step;
+	}
+	
+	/**
+	 * This method adds the statistic event the server fires when a player leaves the ground upwards
+	 * @param step The move leaving the ground
+	 */
+	private void awardJump(Step step)
+	{
+		step.statistics.add(new PlayerStatisticIncrementEvent(player.getPlayer(), Statistic.JUMP, jumpStatistic, ++jumpStatistic));
+	}
+	
+	/**
+	 * This method records the player walking on flat ground
+	 * @param moves The amount of moves
+	 */
+	private void walk(int moves)
+	{
+		for (int i = 0; i < moves; i++)
+			record(x + 0.2, y, z, 0, -0.0784, true);
+	}
+	
+	/**
+	 * This method records the player turning the head without moving
+	 * @param moves The amount of moves
+	 */
+	private void rotate(int moves)
+	{
+		for (int i = 0; i < moves; i++)
+			record(x, y, z, i * 15, -0.0784, true);
+	}
+	
+	/**
+	 * This method records a jump from the ground until the landing
+	 * @param velocity The vertical velocity at the start of the jump
+	 * @param ceiling The height above the ground the player can't rise over
+	 * @param isJump True if the player jumped, false if the player got thrown up
+	 */
+	private void jump(double velocity, double ceiling, boolean isJump)
+	{
+		double ground = y;
+		boolean first = true;
+		
+		do
+		{
+			double toY = Math.min(y + velocity, ground + ceiling);
+			boolean landed = toY <= ground;
+			boolean capped = toY < y + velocity && velocity > 0;
+			
+			//the move hitting the ceiling still reports the velocity it started with, only later moves stop rising
+			Step step = record(x + 0.1, landed ? ground : toY, z, 0, velocity, landed);
+			
+			if (capped)
+				velocity = 0;
+			
+			if (first)
+			{
+				awardJump(step);
+				step.jump = isJump;
+				step.capped = capped;
+				first = false;
+			}
+			
+			velocity = (velocity - GRAVITY) * DRAG;
+		}
+		while (y > ground);
+	}
+	
+	/**
+	 * This method records the player walking up or down a step without leaving the ground
+	 * @param height The height of the step
+	 */
+	private void stepUp(double height)
+	{
+		record(x + 0.2, y + height, z, 0, -0.0784, true);
+	}
+	
+	/**
+	 * This method records the player getting hit and thrown up
+	 * @param velocity The vertical velocity of the knockback
+	 */
+	private void knockback(double velocity)
+	{
+		Step hit = record(x, y, z, 180, -0.0784, true);
+		hit.statistics.add(new PlayerStatisticIncrementEvent(player.getPlayer(), Statistic.DAMAGE_TAKEN, 0, 10));
+		
+		jump(velocity, Double.MAX_VALUE, false);
+	}
+	
+	/**
+	 * This method records the player climbing up a ladder and falling back down
+	 * @param moves The amount of moves spent climbing
+	 */
+	private void climb(int moves)
+	{
+		double ground = y;
+		
+		for (int i = 0; i <= moves; i++)
+			world.setType((int)Math.floor(x), (int)ground + i, (int)Math.floor(z), Material.LADDER);
+		
+		for (int i = 0; i < moves; i++)
+		{
+			Step step = record(x, y + CLIMB_SPEED, z, 0, CLIMB_SPEED, false);
+			
+			//the server can't tell leaving the ground on a ladder from a jump
+			if (i == 0)
+				awardJump(step);
+		}
+		
+		record(x, ground, z, 0, -0.0784, true);
+	}
+}
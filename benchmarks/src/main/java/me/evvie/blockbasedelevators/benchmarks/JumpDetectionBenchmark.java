@@ -0,0 +1,86 @@
+package me.evvie.blockbasedelevators.benchmarks;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Location;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import me.evvie.blockbasedelevators.benchmarks.standin.StandInPlayer;
+import me.evvie.blockbasedelevators.benchmarks.standin.StandInWorld;
+import me.evvie.blockbasedelevators.elevators.PlayerSessions;
+import me.evvie.blockbasedelevators.events.PlayerJumpEvent;
+import me.evvie.blockbasedelevators.metrics.ElevatorMetrics;
+
+/**
+ * This benchmark measures CallJumpEvent.onJump for the kinds of moves players make
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JumpDetectionBenchmark
+{
+	private PlayerJumpEvent.CallJumpEvent listener;
+	private StandInPlayer player;
+	private PlayerMoveEvent rotation;
+	private PlayerMoveEvent walk;
+	private PlayerMoveEvent jump;
+	private PlayerMoveEvent landing;
+	
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		StandInWorld world = new StandInWorld("jump-detection");
+		player = new StandInPlayer(world, 0.5, 64, 0.5);
+		listener = new PlayerJumpEvent.CallJumpEvent(new ElevatorMetrics(), new PlayerSessions(Collections.singletonList(player.getPlayer())));
+		
+		Location ground = new Location(world.getWorld(), 0.5, 64, 0.5, 0, 0);
+		Location turned = new Location(world.getWorld(), 0.5, 64, 0.5, 45, 10);
+		Location step = new Location(world.getWorld(), 0.7, 64, 0.5, 0, 0);
+		Location air = new Location(world.getWorld(), 0.5, 64.42, 0.5, 0, 0);
+		
+		rotation = new PlayerMoveEvent(player.getPlayer(), ground, turned);
+		walk = new PlayerMoveEvent(player.getPlayer(), ground, step);
+		jump = new PlayerMoveEvent(player.getPlayer(), ground, air);
+		landing = new PlayerMoveEvent(player.getPlayer(), air, ground);
+	}
+	
+	@Benchmark
+	public void rotationOnly()
+	{
+		listener.onJump(rotation);
+	}
+	
+	@Benchmark
+	public void walking()
+	{
+		listener.onJump(walk);
+	}
+	
+	@Benchmark
+	public void jumpAndLand()
+	{
+		//a full jump fires the custom event once and resets the jumping state when landing
+		player.setOnGround(false);
+		player.setVelocityY(0.42);
+		listener.onJump(jump);
+		
+		player.setOnGround(true);
+		player.setVelocityY(0);
+		listener.onJump(landing);
+	}
+}
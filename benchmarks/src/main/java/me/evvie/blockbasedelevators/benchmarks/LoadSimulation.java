@@ -0,0 +1,431 @@
+package me.evvie.blockbasedelevators.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import org.bukkit.Location;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerToggleSneakEvent;
+import org.bukkit.plugin.Plugin;
+
+import me.evvie.blockbasedelevators.benchmarks.standin.StandInPlayer;
+import me.evvie.blockbasedelevators.benchmarks.standin.StandInPluginManager;
+import me.evvie.blockbasedelevators.benchmarks.standin.StandInScheduler;
+import me.evvie.blockbasedelevators.benchmarks.standin.StandInWorld;
+import me.evvie.blockbasedelevators.benchmarks.standin.StandIns;
+import me.evvie.blockbasedelevators.elevators.ElevatorListener;
+import me.evvie.blockbasedelevators.elevators.ElevatorManager;
+import me.evvie.blockbasedelevators.elevators.ElevatorStore;
+import me.evvie.blockbasedelevators.elevators.PlayerSessions;
+import me.evvie.blockbasedelevators.elevators.RescanScheduler;
+import me.evvie.blockbasedelevators.events.PlayerJumpEvent;
+import me.evvie.blockbasedelevators.metrics.ElevatorMetrics;
+
+/**
+ * This class simulates crowds of players riding elevators, without a server
+ * Synthetic players walk, jump and sneak on the floors of a grid of elevators. Their moves are passed
+ * through the stand-in plugin manager to the jump detection and the ElevatorListener, and the stand-in
+ * scheduler runs the floor displays and teleport effects. The cost of every tick and the memory allocated
+ * by it are measured, and the run exits with 1 if a configured threshold is exceeded. The allocations
+ * include those of the stand-ins, so they are meant to compare runs with each other, not with a server.
+ * Options are passed as key=value arguments named like the fields, for example players=5000.
+ */
+public final class LoadSimulation
+{
+	//vertical velocities of a player starting a jump and standing on the ground
+	private static final double JUMP_VELOCITY = 0.42;
+	private static final double GROUND_VELOCITY = -0.0784;
+	
+	//duration of a server tick
+	private static final long TICK_NANOS = 50000000L;
+	
+	//size of the crowd and of the elevators
+	private final int players;
+	private final int elevators;
+	private final int floors;
+	
+	//ticks run before and while measuring, paced like a server unless the ticks run back to back
+	private final int warmupTicks;
+	private final int ticks;
+	private final boolean realTime;
+	
+	//chances in percent of a player jumping, sneaking or walking in a tick, idle players cause no events
+	private final int jumpChance;
+	private final int sneakChance;
+	private final int walkChance;
+	private final long seed;
+	
+	//thresholds failing the run, 0 disables a threshold
+	private final double maxP50Millis;
+	private final double maxP99Millis;
+	private final double maxTickMillis;
+	private final double maxAllocatedKBPerTick;
+	
+	private StandInPluginManager pluginManager;
+	private StandInScheduler scheduler;
+	private final List<SimulatedPlayer> crowd = new ArrayList<SimulatedPlayer>();
+	
+	/**
+	 * This class is a player of the crowd, standing on a floor of its elevator
+	 */
+	private static class SimulatedPlayer
+	{
+		private final StandInPlayer player;
+		private final double x;
+		private final double z;
+		
+		//true between the move starting a jump and the landing
+		private boolean airborne;
+		
+		//walking moves the player back and forth within the center block
+		private boolean stepped;
+		
+		/**
+		 * Constructor for the creation of a player of the crowd
+		 * @param player The stand-in of the player
+		 * @param x The x-coordinate of the player's elevator
+		 * @param z The z-coordinate of the player's elevator
+		 */
+		SimulatedPlayer(StandInPlayer player, int x, int z)
+		{
+			this.player = player;
+			this.x = x;
+			this.z = z;
+		}
+	}
+	
+	/**
+	 * Constructor for the creation of a simulation
+	 * @param options The options of the simulation, missing ones get their default
+	 */
+	public LoadSimulation(Map<String, String> options)
+	{
+		players = Integer.parseInt(options.getOrDefault("players", "2000"));
+		elevators = Integer.parseInt(options.getOrDefault("elevators", "500"));
+		floors = Integer.parseInt(options.getOrDefault("floors", "16"));
+		warmupTicks = Integer.parseInt(options.getOrDefault("warmupTicks", "200"));
+		ticks = Integer.parseInt(options.getOrDefault("ticks", "1200"));
+		realTime = Boolean.parseBoolean(options.getOrDefault("realTime", "true"));
+		jumpChance = Integer.parseInt(options.getOrDefault("jumpChance", "5"));
+		sneakChance = Integer.parseInt(options.getOrDefault("sneakChance", "2"));
+		walkChance = Integer.parseInt(options.getOrDefault("walkChance", "60"));
+		seed = Long.parseLong(options.getOrDefault("seed", "42"));
+		maxP50Millis = Double.parseDouble(options.getOrDefault("maxP50Millis", "0"));
+		maxP99Millis = Double.parseDouble(options.getOrDefault("maxP99Millis", "0"));
+		maxTickMillis = Double.parseDouble(options.getOrDefault("maxTickMillis", "0"));
+		maxAllocatedKBPerTick = Double.parseDouble(options.getOrDefault("maxAllocatedKBPerTick", "0"));
+	}
+	
+	/**
+	 * This method runs a simulation and exits with 1 if a threshold was exceeded
+	 * @param args The options as key=value pairs
+	 * @throws IOException If the elevator store can not be created
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		Map<String, String> options = new HashMap<String, String>();
+		
+		for (String arg : args)
+		{
+			int separator = arg.indexOf('=');
+			
+			if (separator <= 0)
+				throw new IllegalArgumentException("Options need to be given as key=value, got " + arg);
+			
+			options.put(arg.substring(0, separator), arg.substring(separator + 1));
+		}
+		
+		//the store keeps a writer thread alive, so the exit code has to be set explicitly
+		System.exit(new LoadSimulation(options).run() ? 0 : 1);
+	}
+	
+	/**
+	 * This method builds the elevators and the crowd, runs the ticks and reports the results
+	 * @return True if every threshold was kept, false otherwise
+	 * @throws IOException If the elevator store can not be created
+	 */
+	public boolean run() throws IOException
+	{
+		StandIns.installServer();
+		pluginManager = StandIns.getPluginManager();
+		scheduler = StandIns.getScheduler();
+		
+		StandInWorld world = new StandInWorld("load-simulation");
+		ElevatorLayout layout = new ElevatorLayout(elevators, floors);
+		layout.build(world);
+		
+		//the plug-in runs with its default configuration
+		Plugin plugin = StandIns.createPlugin("BlockbasedElevators", loadDefaultConfig());
+		ElevatorMetrics metrics = new ElevatorMetrics();
+		ElevatorStore store = BenchmarkStores.create();
+		ElevatorManager manager = new ElevatorManager(ElevatorLayout.profiles(), store, metrics);
+		manager.loadElevators(world.getWorld());
+		
+		//every player starts on a random floor of an elevator
+		Random random = new Random(seed);
+		List<Player> onlinePlayers = new ArrayList<Player>();
+		
+		for (int i = 0; i < players; i++)
+		{
+			int elevator = i % elevators;
+			int x = layout.getX(elevator);
+			int z = layout.getZ(elevator);
+			StandInPlayer player = new StandInPlayer(world, x + 0.5, layout.getY(random.nextInt(floors)) + 1, z + 0.5);
+			crowd.add(new SimulatedPlayer(player, x, z));
+			onlinePlayers.add(player.getPlayer());
+		}
+		
+		//the listeners get registered in the same order as by the plug-in
+		PlayerSessions sessions = new PlayerSessions(onlinePlayers);
+		pluginManager.registerEvents(sessions);
+		pluginManager.registerEvents(new PlayerJumpEvent.CallJumpEvent(metrics, sessions));
+		pluginManager.registerEvents(new ElevatorListener(plugin, manager, metrics, sessions));
+		new RescanScheduler(plugin, manager, plugin.getConfig().getInt("RescanBudgetMicros"), metrics);
+		
+		for (int i = 0; i < warmupTicks; i++)
+		{
+			long start = System.nanoTime();
+			tick(random);
+			waitForNextTick(start);
+		}
+		
+		long[] tickNanos = new long[ticks];
+		long allocatedBytes = 0;
+		int teleportsBefore = countTeleports();
+		
+		for (int i = 0; i < ticks; i++)
+		{
+			long allocatedBefore = allocatedBytes();
+			long start = System.nanoTime();
+			tick(random);
+			tickNanos[i] = System.nanoTime() - start;
+			allocatedBytes += allocatedBytes() - allocatedBefore;
+			waitForNextTick(start);
+		}
+		
+		store.close();
+		return report(tickNanos, allocatedBytes() >= 0 ? allocatedBytes : -1, countTeleports() - teleportsBefore, metrics);
+	}
+	
+	/**
+	 * This method runs a single tick: every player acts once, then the scheduled tasks run
+	 * @param random The source of the players' decisions
+	 */
+	private void tick(Random random)
+	{
+		for (int i = 0; i < crowd.size(); i++)
+			act(crowd.get(i), random);
+		
+		scheduler.tick();
+	}
+	
+	/**
+	 * This method waits for the start of the next tick, the rate limits of the plug-in use the real time
+	 * @param tickStart The start of the current tick
+	 */
+	private void waitForNextTick(long tickStart)
+	{
+		long remaining = tickStart + TICK_NANOS - System.nanoTime();
+		
+		if (!realTime || remaining <= 0)
+			return;
+		
+		try
+		{
+			Thread.sleep(remaining / 1000000, (int)(remaining % 1000000));
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * This method lets a player of the crowd do one thing
+	 * @param simulated The player
+	 * @param random The source of the player's decision
+	 */
+	private void act(SimulatedPlayer simulated, Random random)
+	{
+		double y = simulated.player.getY();
+		
+		//a jump lands on the floor the player is on now, which is the target floor after a teleport
+		if (simulated.airborne)
+		{
+			simulated.airborne = false;
+			move(simulated, Math.floor(y), GROUND_VELOCITY, true);
+			return;
+		}
+		
+		int roll = random.nextInt(100);
+		
+		if (roll < jumpChance)
+		{
+			simulated.airborne = true;
+			move(simulated, y + JUMP_VELOCITY, JUMP_VELOCITY, false);
+		}
+		else if (roll < jumpChance + sneakChance)
+		{
+			pluginManager.callEvent(new PlayerToggleSneakEvent(simulated.player.getPlayer(), true));
+		}
+		else if (roll < jumpChance + sneakChance + walkChance)
+		{
+			move(simulated, y, GROUND_VELOCITY, true);
+		}
+	}
+	
+	/**
+	 * This method moves a player like the server does: the move event is called while the player is
+	 * still at the old location, and the move is only applied if no teleport happened meanwhile
+	 * @param simulated The player
+	 * @param toY The new y-coordinate
+	 * @param velocityY The vertical velocity of the move
+	 * @param onGround True if the player is on the ground after the move
+	 */
+	private void move(SimulatedPlayer simulated, double toY, double velocityY, boolean onGround)
+	{
+		StandInPlayer player = simulated.player;
+		simulated.stepped = !simulated.stepped;
+		double toX = simulated.x + (simulated.stepped ? 0.7 : 0.3);
+		double toZ = simulated.z + 0.5;
+		
+		Location from = player.location();
+		player.setVelocityY(velocityY);
+		player.setOnGround(onGround);
+		
+		int teleports = player.getTeleports();
+		pluginManager.callEvent(new PlayerMoveEvent(player.getPlayer(), from, new Location(from.getWorld(), toX, toY, toZ)));
+		
+		if (player.getTeleports() == teleports)
+			player.moveTo(toX, toY, toZ);
+	}
+	
+	/**
+	 * This method prints the results of the simulation and checks them against the thresholds
+	 * @param tickNanos The duration of every measured tick
+	 * @param allocatedBytes The memory allocated by all measured ticks, negative if it couldn't be measured
+	 * @param teleports The amount of teleports in the measured ticks
+	 * @param metrics The metrics of the plug-in
+	 * @return True if every threshold was kept, false otherwise
+	 */
+	private boolean report(long[] tickNanos, long allocatedBytes, int teleports, ElevatorMetrics metrics)
+	{
+		long[] sorted = tickNanos.clone();
+		Arrays.sort(sorted);
+		double p50 = percentile(sorted, 0.5) / 1000000.0;
+		double p99 = percentile(sorted, 0.99) / 1000000.0;
+		double max = sorted[sorted.length - 1] / 1000000.0;
+		double allocatedKBPerTick = allocatedBytes / 1024.0 / ticks;
+		
+		System.out.println(String.format(Locale.ROOT, "Simulated %d players on %d elevators with %d floors for %d ticks", players, elevators, floors, ticks));
+		System.out.println(String.format(Locale.ROOT, "Tick time: p50 %.3f ms, p99 %.3f ms, max %.3f ms", p50, p99, max));
+		
+		if (allocatedBytes >= 0)
+			System.out.println(String.format(Locale.ROOT, "Allocated: %.1f KB per tick, %.1f MB per second", allocatedKBPerTick, allocatedKBPerTick * 20 / 1024));
+		else
+			System.out.println("Allocated: not supported by this JVM");
+		
+		System.out.println(String.format(Locale.ROOT, "Teleported players: %d, %.1f per tick", teleports, teleports / (double)ticks));
+		
+		for (String line : metrics.summarize())
+			System.out.println(line);
+		
+		boolean passed = check("p50 tick time", p50, maxP50Millis, "ms");
+		passed &= check("p99 tick time", p99, maxP99Millis, "ms");
+		passed &= check("maximum tick time", max, maxTickMillis, "ms");
+		
+		if (allocatedBytes >= 0)
+			passed &= check("allocation per tick", allocatedKBPerTick, maxAllocatedKBPerTick, "KB");
+		
+		return passed;
+	}
+	
+	/**
+	 * This method checks a result against its threshold and reports a violation
+	 * @param name The name of the result
+	 * @param value The result
+	 * @param threshold The threshold, 0 if it is disabled
+	 * @param unit The unit of the result
+	 * @return True if the threshold is kept or disabled, false otherwise
+	 */
+	private static boolean check(String name, double value, double threshold, String unit)
+	{
+		if (threshold <= 0 || value <= threshold)
+			return true;
+		
+		System.out.println(String.format(Locale.ROOT, "Threshold exceeded: %s is %.3f %s, the limit is %.3f %s", name, value, unit, threshold, unit));
+		return false;
+	}
+	
+	/**
+	 * This method gets a percentile of sorted durations
+	 * @param sorted The sorted durations
+	 * @param percentile The percentile (0-1)
+	 * @return The smallest duration at least this share of the durations are less or equal to
+	 */
+	private static long percentile(long[] sorted, double percentile)
+	{
+		int rank = (int)Math.ceil(percentile * sorted.length);
+		return sorted[Math.min(sorted.length - 1, Math.max(0, rank - 1))];
+	}
+	
+	/**
+	 * This method gets the teleports done by the whole crowd
+	 * @return The amount of teleports since the start
+	 */
+	private int countTeleports()
+	{
+		int teleports = 0;
+		
+		for (SimulatedPlayer simulated : crowd)
+			teleports += simulated.player.getTeleports();
+		
+		return teleports;
+	}
+	
+	/**
+	 * This method gets the memory allocated by the current thread
+	 * @return The allocated bytes since the start of the thread, or -1 if the JVM can't measure them
+	 */
+	private static long allocatedBytes()
+	{
+		java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		
+		if (!(threads instanceof com.sun.management.ThreadMXBean))
+			return -1;
+		
+		return ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+	
+	/**
+	 * This method loads the default configuration shipped with the plug-in
+	 * @return The configuration
+	 * @throws IOException If the configuration can not be read
+	 */
+	private static FileConfiguration loadDefaultConfig() throws IOException
+	{
+		InputStream stream = ElevatorListener.class.getClassLoader().getResourceAsStream("config.yml");
+		
+		if (stream == null)
+			throw new IOException("The config.yml of the plug-in is missing from the class path");
+		
+		try (Reader reader = new InputStreamReader(stream, StandardCharsets.UTF_8))
+		{
+			return YamlConfiguration.loadConfiguration(reader);
+		}
+	}
+}
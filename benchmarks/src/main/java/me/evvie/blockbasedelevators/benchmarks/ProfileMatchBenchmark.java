@@ -0,0 +1,122 @@
+package me.evvie.blockbasedelevators.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import me.evvie.blockbasedelevators.benchmarks.standin.StandInWorld;
+import me.evvie.blockbasedelevators.elevators.ElevatorProfile;
+import me.evvie.blockbasedelevators.elevators.ElevatorProfiles;
+
+/**
+ * This benchmark compares the compiled profile match with checking the profiles one after another
+ * The floors of the layout belong to the last profile, so checking one profile at a time has to
+ * go through all of them, while the compiled match reads the same five blocks for any amount.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProfileMatchBenchmark
+{
+	//amount of pre-selected blocks the benchmarks cycle through
+	private static final int SAMPLES = 1024;
+	
+	//materials of the profiles in front of the layout's profile, none of them matches its floors
+	private static final Material[] CENTERS = { Material.LAPIS_BLOCK, Material.GOLD_BLOCK, Material.IRON_BLOCK, Material.STONE };
+	private static final Material[] RIMS = { Material.IRON_BLOCK, Material.GOLD_BLOCK, Material.STONE };
+	
+	private static final BlockFace[] SIDE_FACES = { BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST };
+	
+	@Param({ "1", "8", "31" })
+	public int profileCount;
+	
+	private ElevatorProfiles profiles;
+	private Block[] floors;
+	private int cursor;
+	
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		StandInWorld world = new StandInWorld("profile-match");
+		ElevatorLayout layout = new ElevatorLayout(16, 32);
+		layout.build(world);
+		
+		List<ElevatorProfile> profileList = new ArrayList<ElevatorProfile>();
+		
+		for (int i = 0; i < profileCount - 1; i++)
+			profileList.add(new ElevatorProfile("profile-" + i, CENTERS[i % CENTERS.length], RIMS[(i / CENTERS.length) % RIMS.length], 1 + i % ElevatorProfile.SHAPE_PLUS, 0, true, true));
+		
+		profileList.add(ElevatorLayout.profiles().get(0));
+		profiles = new ElevatorProfiles(profileList);
+		
+		//random floors of random elevators
+		Random random = new Random(42);
+		floors = new Block[SAMPLES];
+		
+		for (int i = 0; i < SAMPLES; i++)
+		{
+			int elevator = random.nextInt(layout.getElevatorCount());
+			floors[i] = world.getBlockAt(layout.getX(elevator), layout.getY(random.nextInt(layout.getFloorsPerShaft())), layout.getZ(elevator));
+		}
+	}
+	
+	@Benchmark
+	public int compiledMatch()
+	{
+		return profiles.match(floors[cursor++ & (SAMPLES - 1)]);
+	}
+	
+	@Benchmark
+	public int profileByProfile()
+	{
+		Block block = floors[cursor++ & (SAMPLES - 1)];
+		
+		for (int i = 0; i < profiles.size(); i++)
+		{
+			if (matches(profiles.get(i), block))
+				return i;
+		}
+		
+		return ElevatorProfiles.NO_PROFILE;
+	}
+	
+	/**
+	 * This method checks a floor against a single profile, reading its blocks again for every profile
+	 * @param profile The profile
+	 * @param centerBlock The potential center of a floor
+	 * @return True if the floor matches the profile, false otherwise
+	 */
+	private static boolean matches(ElevatorProfile profile, Block centerBlock)
+	{
+		if (centerBlock.getType() != profile.getCenterMaterial())
+			return false;
+		
+		for (int side = 0; side < SIDE_FACES.length; side++)
+		{
+			if (profile.hasRim(side) && centerBlock.getRelative(SIDE_FACES[side]).getType() != profile.getRimMaterial())
+				return false;
+		}
+		
+		return true;
+	}
+}
@@ -0,0 +1,186 @@
+package me.evvie.blockbasedelevators.benchmarks.standin;
+
+import java.lang.reflect.Method;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.util.Vector;
+
+/**
+ * This class is an in-memory player standing in a stand-in world
+ * Its position, velocity and ground state are set directly by the benchmarks.
+ */
+public class StandInPlayer
+{
+	private static final AtomicInteger nextEntityId = new AtomicInteger(1);
+	
+	private final int entityId = nextEntityId.getAndIncrement();
+	private final UUID uniqueId = UUID.randomUUID();
+	private final StandInWorld world;
+	private final Player player;
+	
+	private double x;
+	private double y;
+	private double z;
+	private float yaw;
+	private float pitch;
+	private double velocityY;
+	private boolean onGround = true;
+	private boolean sneaking;
+	private int teleports;
+	
+	/**
+	 * Constructor for the creation of a player
+	 * @param world The world the player is in
+	 * @param x The x-coordinate of the player
+	 * @param y The y-coordinate of the player
+	 * @param z The z-coordinate of the player
+	 */
+	public StandInPlayer(StandInWorld world, double x, double y, double z)
+	{
+		this.world = world;
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.player = StandIns.proxy(Player.class, this::handle);
+	}
+	
+	/**
+	 * This method gets the Bukkit view of this player
+	 * @return The player
+	 */
+	public Player getPlayer()
+	{
+		return player;
+	}
+	
+	/**
+	 * This method creates the current location of the player
+	 * @return A new location object
+	 */
+	public Location location()
+	{
+		return new Location(world.getWorld(), x, y, z, yaw, pitch);
+	}
+	
+	/**
+	 * This method moves the player
+	 * @param x The new x-coordinate
+	 * @param y The new y-coordinate
+	 * @param z The new z-coordinate
+	 */
+	public void moveTo(double x, double y, double z)
+	{
+		this.x = x;
+		this.y = y;
+		this.z = z;
+	}
+	
+	/**
+	 * This method rotates the head of the player
+	 * @param yaw The new yaw
+	 * @param pitch The new pitch
+	 */
+	public void rotate(float yaw, float pitch)
+	{
+		this.yaw = yaw;
+		this.pitch = pitch;
+	}
+	
+	/**
+	 * This method sets the vertical velocity of the player
+	 * @param velocityY The new vertical velocity
+	 */
+	public void setVelocityY(double velocityY)
+	{
+		this.velocityY = velocityY;
+	}
+	
+	/**
+	 * This method sets if the player is standing on the ground
+	 * @param onGround True if the player stands on the ground, false otherwise
+	 */
+	public void setOnGround(boolean onGround)
+	{
+		this.onGround = onGround;
+	}
+	
+	/**
+	 * This method sets if the player is sneaking
+	 * @param sneaking True if the player sneaks, false otherwise
+	 */
+	public void setSneaking(boolean sneaking)
+	{
+		this.sneaking = sneaking;
+	}
+	
+	/**
+	 * This method gets the y-coordinate of the player
+	 * @return The y-coordinate of the player
+	 */
+	public double getY()
+	{
+		return y;
+	}
+	
+	/**
+	 * This method gets the amount of teleports the player did so far
+	 * @return The amount of teleports
+	 */
+	public int getTeleports()
+	{
+		return teleports;
+	}
+	
+	/**
+	 * This method handles the calls made to the Bukkit view of this player
+	 * @param method The called method
+	 * @param args The arguments of the call
+	 * @return The result of the call
+	 */
+	private Object handle(Method method, Object[] args)
+	{
+		switch (method.getName())
+		{
+			case "getEntityId":
+				return entityId;
+			case "getUniqueId":
+				return uniqueId;
+			case "getName":
+				return "Player" + entityId;
+			case "getWorld":
+				return world.getWorld();
+			case "getServer":
+				return Bukkit.getServer();
+			case "getLocation":
+				return location();
+			case "getVelocity":
+				return new Vector(0, velocityY, 0);
+			case "setVelocity":
+				velocityY = ((Vector)args[0]).getY();
+				return null;
+			case "isOnGround":
+				return onGround;
+			case "isSneaking":
+				return sneaking;
+			case "isOnline":
+				return true;
+			case "hasPermission":
+				return true;
+			case "teleport":
+				if (args.length > 0 && args[0] instanceof Location)
+				{
+					Location target = (Location)args[0];
+					moveTo(target.getX(), target.getY(), target.getZ());
+					teleports++;
+					return true;
+				}
+				return false;
+			default:
+				return null;
+		}
+	}
+}
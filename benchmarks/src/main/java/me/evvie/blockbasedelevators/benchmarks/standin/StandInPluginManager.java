@@ -0,0 +1,165 @@
+package me.evvie.blockbasedelevators.benchmarks.standin;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.plugin.PluginManager;
+
+/**
+ * This class is an in-memory plugin manager that passes events to the registered listeners
+ * Like the server, it calls the event handlers of a listener by reflection, ordered by their
+ * priority. Events are counted in StandIns.calledEvents whether a listener handles them or not.
+ */
+public class StandInPluginManager
+{
+	private final PluginManager pluginManager;
+	private final List<Handler> handlers = new ArrayList<Handler>();
+	
+	//handlers of every event class called so far, dropped when a listener gets registered
+	private final Map<Class<?>, Handler[]> handlersByEvent = new HashMap<Class<?>, Handler[]>();
+	
+	/**
+	 * This class is a single event handler method of a listener
+	 */
+	private static class Handler
+	{
+		private final Listener listener;
+		private final Method method;
+		private final EventHandler annotation;
+		
+		/**
+		 * Constructor for the creation of a handler
+		 * @param listener The listener declaring the method
+		 * @param method The event handler method
+		 * @param annotation The annotation of the method
+		 */
+		Handler(Listener listener, Method method, EventHandler annotation)
+		{
+			this.listener = listener;
+			this.method = method;
+			this.annotation = annotation;
+		}
+	}
+	
+	/**
+	 * Constructor for the creation of a plugin manager without listeners
+	 */
+	public StandInPluginManager()
+	{
+		pluginManager = StandIns.proxy(PluginManager.class, this::handle);
+	}
+	
+	/**
+	 * This method gets the Bukkit view of this plugin manager
+	 * @return The plugin manager
+	 */
+	public PluginManager getPluginManager()
+	{
+		return pluginManager;
+	}
+	
+	/**
+	 * This method registers the event handler methods of a listener
+	 * @param listener The listener
+	 */
+	public void registerEvents(Listener listener)
+	{
+		for (Method method : listener.getClass().getMethods())
+		{
+			EventHandler annotation = method.getAnnotation(EventHandler.class);
+			
+			if (annotation != null && method.getParameterCount() == 1 && Event.class.isAssignableFrom(method.getParameterTypes()[0]))
+				handlers.add(new Handler(listener, method, annotation));
+		}
+		
+		handlersByEvent.clear();
+	}
+	
+	/**
+	 * This method passes an event to every handler of its class or one of its super classes
+	 * @param event The event
+	 */
+	public void callEvent(Event event)
+	{
+		StandIns.calledEvents.incrementAndGet();
+		Handler[] eventHandlers = handlersByEvent.get(event.getClass());
+		
+		if (eventHandlers == null)
+		{
+			eventHandlers = findHandlers(event.getClass());
+			handlersByEvent.put(event.getClass(), eventHandlers);
+		}
+		
+		for (Handler handler : eventHandlers)
+		{
+			if (handler.annotation.ignoreCancelled() && event instanceof Cancellable && ((Cancellable)event).isCancelled())
+				continue;
+			
+			try
+			{
+				handler.method.invoke(handler.listener, event);
+			}
+			catch (InvocationTargetException e)
+			{
+				//a failing handler fails the caller, so a simulation can't hide it
+				if (e.getCause() instanceof RuntimeException)
+					throw (RuntimeException)e.getCause();
+				
+				throw new IllegalStateException("Could not pass " + event.getClass().getSimpleName() + " to " + handler.method, e.getCause());
+			}
+			catch (IllegalAccessException e)
+			{
+				throw new IllegalStateException("Could not pass " + event.getClass().getSimpleName() + " to " + handler.method, e);
+			}
+		}
+	}
+	
+	/**
+	 * This method finds the handlers of an event class, ordered by their priority
+	 * @param eventClass The class of the event
+	 * @return The handlers
+	 */
+	private Handler[] findHandlers(Class<?> eventClass)
+	{
+		List<Handler> found = new ArrayList<Handler>();
+		
+		for (Handler handler : handlers)
+		{
+			if (handler.method.getParameterTypes()[0].isAssignableFrom(eventClass))
+				found.add(handler);
+		}
+		
+		found.sort(Comparator.comparingInt(handler -> handler.annotation.priority().ordinal()));
+		return found.toArray(new Handler[0]);
+	}
+	
+	/**
+	 * This method handles the calls made to the Bukkit view of this plugin manager
+	 * @param method The called method
+	 * @param args The arguments of the call
+	 * @return The result of the call
+	 */
+	private Object handle(Method method, Object[] args)
+	{
+		switch (method.getName())
+		{
+			case "registerEvents":
+				registerEvents((Listener)args[0]);
+				return null;
+			case "callEvent":
+				callEvent((Event)args[0]);
+				return null;
+			default:
+				return null;
+		}
+	}
+}
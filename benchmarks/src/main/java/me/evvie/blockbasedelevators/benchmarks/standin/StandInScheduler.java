@@ -0,0 +1,189 @@
+package me.evvie.blockbasedelevators.benchmarks.standin;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * This class is an in-memory scheduler whose ticks are advanced by the caller
+ * Tasks run on the thread calling tick, in the order they were scheduled. Asynchronous tasks
+ * run within the ticks as well, so a simulation stays deterministic.
+ */
+public class StandInScheduler
+{
+	private final BukkitScheduler scheduler;
+	private final List<Task> tasks = new ArrayList<Task>();
+	private long currentTick;
+	private int nextTaskId = 1;
+	
+	/**
+	 * This class is a single scheduled task
+	 */
+	private class Task
+	{
+		private final int taskId = nextTaskId++;
+		private final Plugin owner;
+		private final Runnable runnable;
+		private final long period;
+		private final BukkitTask bukkitTask;
+		private long nextRun;
+		private boolean cancelled;
+		
+		/**
+		 * Constructor for the creation of a task
+		 * @param owner The plug-in that scheduled the task
+		 * @param runnable The code of the task
+		 * @param delay The ticks until the first run
+		 * @param period The ticks between two runs, 0 to run only once
+		 */
+		Task(Plugin owner, Runnable runnable, long delay, long period)
+		{
+			this.owner = owner;
+			this.runnable = runnable;
+			this.period = period;
+			this.nextRun = currentTick + Math.max(1, delay);
+			this.bukkitTask = StandIns.proxy(BukkitTask.class, this::handle);
+		}
+		
+		/**
+		 * This method handles the calls made to the Bukkit view of this task
+		 * @param method The called method
+		 * @param args The arguments of the call
+		 * @return The result of the call
+		 */
+		private Object handle(Method method, Object[] args)
+		{
+			switch (method.getName())
+			{
+				case "getTaskId":
+					return taskId;
+				case "getOwner":
+					return owner;
+				case "isSync":
+					return true;
+				case "isCancelled":
+					return cancelled;
+				case "cancel":
+					cancelled = true;
+					return null;
+				default:
+					return null;
+			}
+		}
+	}
+	
+	/**
+	 * Constructor for the creation of a scheduler at tick 0
+	 */
+	public StandInScheduler()
+	{
+		scheduler = StandIns.proxy(BukkitScheduler.class, this::handle);
+	}
+	
+	/**
+	 * This method gets the Bukkit view of this scheduler
+	 * @return The scheduler
+	 */
+	public BukkitScheduler getScheduler()
+	{
+		return scheduler;
+	}
+	
+	/**
+	 * This method advances the scheduler by one tick and runs the tasks due in it
+	 * Tasks scheduled while the tick runs get their first run in a later tick.
+	 */
+	public void tick()
+	{
+		currentTick++;
+		int taskCount = tasks.size();
+		
+		for (int i = 0; i < taskCount; i++)
+		{
+			Task task = tasks.get(i);
+			
+			if (task.cancelled || task.nextRun > currentTick)
+				continue;
+			
+			task.runnable.run();
+			
+			if (task.period > 0)
+				task.nextRun = currentTick + task.period;
+			else
+				task.cancelled = true;
+		}
+		
+		tasks.removeIf(task -> task.cancelled);
+	}
+	
+	/**
+	 * This method gets the amount of ticks run so far
+	 * @return The current tick
+	 */
+	public long getCurrentTick()
+	{
+		return currentTick;
+	}
+	
+	/**
+	 * This method gets the amount of tasks waiting for a run
+	 * @return The amount of scheduled tasks
+	 */
+	public int getTaskCount()
+	{
+		return tasks.size();
+	}
+	
+	/**
+	 * This method handles the calls made to the Bukkit view of this scheduler
+	 * Only tasks given as a Runnable are supported, the other variants get ignored.
+	 * @param method The called method
+	 * @param args The arguments of the call
+	 * @return The result of the call
+	 */
+	private Object handle(Method method, Object[] args)
+	{
+		switch (method.getName())
+		{
+			case "runTask":
+			case "runTaskAsynchronously":
+				return schedule(args, 0, 0);
+			case "runTaskLater":
+			case "runTaskLaterAsynchronously":
+				return schedule(args, (Long)args[2], 0);
+			case "runTaskTimer":
+			case "runTaskTimerAsynchronously":
+				return schedule(args, (Long)args[2], Math.max(1, (Long)args[3]));
+			case "cancelTasks":
+				for (Task task : tasks)
+				{
+					if (task.owner == args[0])
+						task.cancelled = true;
+				}
+				return null;
+			default:
+				return null;
+		}
+	}
+	
+	/**
+	 * This method schedules a task
+	 * @param args The arguments of the scheduling call, the plug-in followed by the code
+	 * @param delay The ticks until the first run
+	 * @param period The ticks between two runs, 0 to run only once
+	 * @return The Bukkit view of the task, or null if the code isn't a Runnable
+	 */
+	private BukkitTask schedule(Object[] args, long delay, long period)
+	{
+		if (!(args[1] instanceof Runnable))
+			return null;
+		
+		Task task = new Task((Plugin)args[0], (Runnable)args[1], delay, period);
+		tasks.add(task);
+		return task.bukkitTask;
+	}
+}
@@ -0,0 +1,388 @@
+package me.evvie.blockbasedelevators.benchmarks.standin;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.BlockData;
+
+import me.evvie.blockbasedelevators.util.CoordinateKeys;
+import me.evvie.blockbasedelevators.util.LongObjectHashMap;
+
+/**
+ * This class is an in-memory world with the height of an 1.18 overworld
+ * Blocks are stored as material ordinals in one array per chunk, and every chunk that got a block
+ * set is considered loaded.
+ */
+public class StandInWorld
+{
+	public static final int MIN_HEIGHT = -64;
+	public static final int MAX_HEIGHT = 320;
+	private static final int HEIGHT = MAX_HEIGHT - MIN_HEIGHT;
+	private static final Material[] MATERIALS = Material.values();
+	
+	private final String name;
+	private final UUID worldId = UUID.randomUUID();
+	private final LongObjectHashMap<char[]> chunks = new LongObjectHashMap<char[]>();
+	private final World world;
+	
+	/**
+	 * Constructor for the creation of an empty world
+	 * @param name The name of the world
+	 */
+	public StandInWorld(String name)
+	{
+		StandIns.installServer();
+		
+		this.name = name;
+		this.world = StandIns.proxy(World.class, this::handle);
+		
+		StandIns.registerWorld(this);
+	}
+	
+	/**
+	 * This method gets the Bukkit view of this world
+	 * @return The world
+	 */
+	public World getWorld()
+	{
+		return world;
+	}
+	
+	/**
+	 * This method gets the material of a block
+	 * @param x The x-coordinate of the block
+	 * @param y The y-coordinate of the block
+	 * @param z The z-coordinate of the block
+	 * @return The material of the block, air for unset blocks
+	 */
+	public Material getType(int x, int y, int z)
+	{
+		if (y < MIN_HEIGHT || y >= MAX_HEIGHT)
+			return Material.AIR;
+		
+		char[] blocks = chunks.get(CoordinateKeys.columnKey(x >> 4, z >> 4));
+		
+		if (blocks == null)
+			return Material.AIR;
+		
+		return MATERIALS[blocks[index(x, y, z)]];
+	}
+	
+	/**
+	 * This method sets the material of a block
+	 * @param x The x-coordinate of the block
+	 * @param y The y-coordinate of the block
+	 * @param z The z-coordinate of the block
+	 * @param material The new material of the block
+	 */
+	public void setType(int x, int y, int z, Material material)
+	{
+		long key = CoordinateKeys.columnKey(x >> 4, z >> 4);
+		char[] blocks = chunks.get(key);
+		
+		if (blocks == null)
+		{
+			blocks = new char[16 * 16 * HEIGHT];
+			chunks.put(key, blocks);
+		}
+		
+		blocks[index(x, y, z)] = (char)material.ordinal();
+	}
+	
+	/**
+	 * This method builds an elevator floor made of a center block and four rim blocks
+	 * @param x The x-coordinate of the center
+	 * @param y The y-coordinate of the center
+	 * @param z The z-coordinate of the center
+	 * @param center The material of the center
+	 * @param rim The material of the rim
+	 */
+	public void setFloor(int x, int y, int z, Material center, Material rim)
+	{
+		setType(x, y, z, center);
+		setType(x, y, z - 1, rim);
+		setType(x + 1, y, z, rim);
+		setType(x, y, z + 1, rim);
+		setType(x - 1, y, z, rim);
+	}
+	
+	/**
+	 * This method gets a block of this world
+	 * @param x The x-coordinate of the block
+	 * @param y The y-coordinate of the block
+	 * @param z The z-coordinate of the block
+	 * @return The block
+	 */
+	public Block getBlockAt(int x, int y, int z)
+	{
+		return new StandInBlock(this, x, y, z).getBlock();
+	}
+	
+	/**
+	 * This method gets a chunk of this world
+	 * @param chunkX The x-coordinate of the chunk
+	 * @param chunkZ The z-coordinate of the chunk
+	 * @return The chunk
+	 */
+	public Chunk getChunkAt(final int chunkX, final int chunkZ)
+	{
+		return StandIns.proxy(Chunk.class, (method, args) ->
+		{
+			switch (method.getName())
+			{
+				case "getX":
+					return chunkX;
+				case "getZ":
+					return chunkZ;
+				case "getWorld":
+					return world;
+				case "isLoaded":
+					return true;
+				case "getChunkSnapshot":
+					return snapshot(chunkX, chunkZ);
+				case "contains":
+					return contains(chunkX, chunkZ, ((BlockData)args[0]).getMaterial());
+				default:
+					return null;
+			}
+		});
+	}
+	
+	/**
+	 * This method copies a chunk into an immutable snapshot, like the server does
+	 * @param chunkX The x-coordinate of the chunk
+	 * @param chunkZ The z-coordinate of the chunk
+	 * @return The snapshot
+	 */
+	public ChunkSnapshot snapshot(final int chunkX, final int chunkZ)
+	{
+		char[] blocks = chunks.get(CoordinateKeys.columnKey(chunkX, chunkZ));
+		final char[] copy = blocks == null ? new char[16 * 16 * HEIGHT] : blocks.clone();
+		final boolean[] emptySections = new boolean[HEIGHT / 16];
+		final boolean[] present = new boolean[MATERIALS.length];
+		
+		for (int section = 0; section < emptySections.length; section++)
+		{
+			boolean empty = true;
+			
+			for (int i = section * 16 * 256; i < (section + 1) * 16 * 256; i++)
+			{
+				present[copy[i]] = true;
+				empty &= MATERIALS[copy[i]] == Material.AIR;
+			}
+			
+			emptySections[section] = empty;
+		}
+		
+		return StandIns.proxy(ChunkSnapshot.class, (method, args) ->
+		{
+			switch (method.getName())
+			{
+				case "getX":
+					return chunkX;
+				case "getZ":
+					return chunkZ;
+				case "getWorldName":
+					return name;
+				case "getBlockType":
+					return MATERIALS[copy[index((int)args[0], (int)args[1], (int)args[2])]];
+				case "isSectionEmpty":
+					return emptySections[(int)args[0]];
+				case "contains":
+					return present[((BlockData)args[0]).getMaterial().ordinal()];
+				default:
+					return null;
+			}
+		});
+	}
+	
+	/**
+	 * This method handles the calls made to the Bukkit view of this world
+	 * @param method The called method
+	 * @param args The arguments of the call
+	 * @return The result of the call
+	 */
+	private Object handle(Method method, Object[] args)
+	{
+		switch (method.getName())
+		{
+			case "getUID":
+				return worldId;
+			case "getName":
+				return name;
+			case "getMinHeight":
+				return MIN_HEIGHT;
+			case "getMaxHeight":
+				return MAX_HEIGHT;
+			case "getType":
+				return args.length == 3 ? getType((int)args[0], (int)args[1], (int)args[2]) : null;
+			case "getBlockAt":
+				if (args.length == 1)
+				{
+					Location location = (Location)args[0];
+					return getBlockAt(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+				}
+				return getBlockAt((int)args[0], (int)args[1], (int)args[2]);
+			case "getChunkAt":
+				return args.length == 2 && args[0] instanceof Integer ? getChunkAt((int)args[0], (int)args[1]) : null;
+			case "isChunkLoaded":
+			case "isChunkGenerated":
+				return args.length == 2 && chunks.containsKey(CoordinateKeys.columnKey((int)args[0], (int)args[1]));
+			case "getLoadedChunks":
+				return loadedChunks();
+			case "getPlayers":
+				return Collections.emptyList();
+			default:
+				return null;
+		}
+	}
+	
+	/**
+	 * This method checks if a chunk contains a material
+	 * @param chunkX The x-coordinate of the chunk
+	 * @param chunkZ The z-coordinate of the chunk
+	 * @param material The material
+	 * @return True if at least one block of the chunk has the material, false otherwise
+	 */
+	private boolean contains(int chunkX, int chunkZ, Material material)
+	{
+		char[] blocks = chunks.get(CoordinateKeys.columnKey(chunkX, chunkZ));
+		
+		if (blocks == null)
+			return material == Material.AIR;
+		
+		for (char block : blocks)
+		{
+			if (block == material.ordinal())
+				return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * This method gets all chunks that got a block set
+	 * @return The loaded chunks
+	 */
+	private Chunk[] loadedChunks()
+	{
+		final List<Chunk> loaded = new ArrayList<Chunk>();
+		chunks.forEach((key, blocks) -> loaded.add(getChunkAt(CoordinateKeys.columnX(key), CoordinateKeys.columnZ(key))));
+		return loaded.toArray(new Chunk[0]);
+	}
+	
+	/**
+	 * This method gets the index of a block inside the array of its chunk
+	 * @param x The x-coordinate of the block
+	 * @param y The y-coordinate of the block
+	 * @param z The z-coordinate of the block
+	 * @return The index of the block
+	 */
+	private static int index(int x, int y, int z)
+	{
+		return ((y - MIN_HEIGHT) << 8) | ((z & 15) << 4) | (x & 15);
+	}
+	
+	/**
+	 * This class is a single block of a stand-in world
+	 */
+	private static class StandInBlock
+	{
+		private final StandInWorld world;
+		private final int x;
+		private final int y;
+		private final int z;
+		
+		/**
+		 * Constructor for the creation of a block
+		 * @param world The world of the block
+		 * @param x The x-coordinate of the block
+		 * @param y The y-coordinate of the block
+		 * @param z The z-coordinate of the block
+		 */
+		StandInBlock(StandInWorld world, int x, int y, int z)
+		{
+			this.world = world;
+			this.x = x;
+			this.y = y;
+			this.z = z;
+		}
+		
+		/**
+		 * This method gets the Bukkit view of this block
+		 * @return The block
+		 */
+		Block getBlock()
+		{
+			return StandIns.proxy(Block.class, new StandIns.Handler()
+			{
+				@Override
+				public Object handle(Method method, Object[] args)
+				{
+					switch (method.getName())
+					{
+						case "getType":
+							return world.getType(x, y, z);
+						case "getX":
+							return x;
+						case "getY":
+							return y;
+						case "getZ":
+							return z;
+						case "getWorld":
+							return world.getWorld();
+						case "getLocation":
+							return args.length == 0 ? new Location(world.getWorld(), x, y, z) : null;
+						case "getChunk":
+							return world.getChunkAt(x >> 4, z >> 4);
+						case "getRelative":
+							if (args.length == 1)
+							{
+								BlockFace face = (BlockFace)args[0];
+								return world.getBlockAt(x + face.getModX(), y + face.getModY(), z + face.getModZ());
+							}
+							if (args.length == 2)
+							{
+								BlockFace face = (BlockFace)args[0];
+								int distance = (int)args[1];
+								return world.getBlockAt(x + face.getModX() * distance, y + face.getModY() * distance, z + face.getModZ() * distance);
+							}
+							return world.getBlockAt(x + (int)args[0], y + (int)args[1], z + (int)args[2]);
+						case "isEmpty":
+							return world.getType(x, y, z) == Material.AIR;
+						case "isPassable":
+							return !world.getType(x, y, z).isSolid();
+						default:
+							return null;
+					}
+				}
+				
+				@Override
+				public boolean equalTo(Object self, Object other)
+				{
+					if (!(other instanceof Block))
+						return false;
+					
+					Block block = (Block)other;
+					return block.getWorld() == world.getWorld() && block.getX() == x && block.getY() == y && block.getZ() == z;
+				}
+				
+				@Override
+				public int hash(Object self)
+				{
+					return (x * 31 + y) * 31 + z;
+				}
+			});
+		}
+	}
+}
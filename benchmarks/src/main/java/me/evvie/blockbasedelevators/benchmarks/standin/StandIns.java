@@ -0,0 +1,331 @@
+package me.evvie.blockbasedelevators.benchmarks.standin;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Material;
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.block.data.BlockData;
+import org.bukkit.boss.BossBar;
+import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.plugin.Plugin;
+
+/**
+ * This class creates the in-memory stand-ins for the Bukkit interfaces used by the plug-in
+ * The interfaces are implemented with dynamic proxies, so only the methods the plug-in calls need
+ * to be handled. Every other method returns null, zero or false.
+ */
+public final class StandIns
+{
+	//amount of events passed to the stand-in plugin manager
+	public static final AtomicLong calledEvents = new AtomicLong();
+	
+	private static final List<StandInWorld> worlds = new ArrayList<StandInWorld>();
+	private static Server server;
+	private static StandInPluginManager pluginManager;
+	private static StandInScheduler scheduler;
+	
+	private StandIns()
+	{
+	}
+	
+	/**
+	 * This method installs the stand-in server as the Bukkit server, if it isn't installed yet
+	 * @return The stand-in server
+	 */
+	public static synchronized Server installServer()
+	{
+		if (server == null)
+		{
+			final Logger logger = Logger.getLogger("StandInServer");
+			pluginManager = new StandInPluginManager();
+			scheduler = new StandInScheduler();
+			
+			server = proxy(Server.class, (method, args) ->
+			{
+				switch (method.getName())
+				{
+					case "getLogger":
+						return logger;
+					case "getName":
+						return "StandInServer";
+					case "getVersion":
+					case "getBukkitVersion":
+						return "1.18.2-R0.1-SNAPSHOT";
+					case "getPluginManager":
+						return pluginManager.getPluginManager();
+					case "getScheduler":
+						return scheduler.getScheduler();
+					case "createBossBar":
+						return bossBar((String)args[0]);
+					case "isPrimaryThread":
+						return true;
+					case "createBlockData":
+						return args.length == 1 && args[0] instanceof Material ? blockData((Material)args[0]) : null;
+					case "getWorlds":
+						return getWorlds();
+					case "getWorld":
+						return args[0] instanceof UUID ? getWorld((UUID)args[0]) : null;
+					case "getOnlinePlayers":
+						return Collections.emptyList();
+					default:
+						return null;
+				}
+			});
+			
+			Bukkit.setServer(server);
+		}
+		
+		return server;
+	}
+	
+	/**
+	 * This method gets the stand-in plugin manager of the stand-in server
+	 * @return The plugin manager
+	 */
+	public static StandInPluginManager getPluginManager()
+	{
+		installServer();
+		return pluginManager;
+	}
+	
+	/**
+	 * This method gets the stand-in scheduler of the stand-in server
+	 * @return The scheduler
+	 */
+	public static StandInScheduler getScheduler()
+	{
+		installServer();
+		return scheduler;
+	}
+	
+	/**
+	 * This method creates a stand-in plug-in running on the stand-in server
+	 * @param name The name of the plug-in
+	 * @param config The configuration returned by the plug-in
+	 * @return The plug-in
+	 */
+	public static Plugin createPlugin(final String name, final FileConfiguration config)
+	{
+		final Server pluginServer = installServer();
+		final Logger logger = Logger.getLogger(name);
+		
+		return proxy(Plugin.class, (method, args) ->
+		{
+			switch (method.getName())
+			{
+				case "getName":
+					return name;
+				case "getServer":
+					return pluginServer;
+				case "getConfig":
+					return config;
+				case "getLogger":
+					return logger;
+				case "isEnabled":
+					return true;
+				default:
+					return null;
+			}
+		});
+	}
+	
+	/**
+	 * This method registers a stand-in world with the stand-in server
+	 * @param world The stand-in world
+	 */
+	static synchronized void registerWorld(StandInWorld world)
+	{
+		worlds.add(world);
+	}
+	
+	/**
+	 * This method creates the block data of a material
+	 * @param material The material
+	 * @return The block data, which only knows its material and the string of its default state
+	 */
+	public static BlockData blockData(final Material material)
+	{
+		return proxy(BlockData.class, (method, args) ->
+		{
+			switch (method.getName())
+			{
+				case "getMaterial":
+					return material;
+				case "getAsString":
+					return "minecraft:" + material.name().toLowerCase();
+				default:
+					return null;
+			}
+		});
+	}
+	
+	/**
+	 * This method creates a boss bar, which only keeps its title, progress and visibility
+	 * @param title The initial title
+	 * @return The boss bar
+	 */
+	private static BossBar bossBar(String title)
+	{
+		final Object[] state = { title, 1.0, true };
+		
+		return proxy(BossBar.class, (method, args) ->
+		{
+			switch (method.getName())
+			{
+				case "getTitle":
+					return state[0];
+				case "setTitle":
+					state[0] = args[0];
+					return null;
+				case "getProgress":
+					return state[1];
+				case "setProgress":
+					state[1] = args[0];
+					return null;
+				case "isVisible":
+					return state[2];
+				case "setVisible":
+					state[2] = args[0];
+					return null;
+				default:
+					return null;
+			}
+		});
+	}
+	
+	/**
+	 * This method creates a stand-in for an interface
+	 * @param type The interface to implement
+	 * @param handler The handler of all calls except equals, hashCode and toString
+	 * @param <T> The type of the interface
+	 * @return The stand-in
+	 */
+	static <T> T proxy(Class<T> type, final Handler handler)
+	{
+		InvocationHandler invocationHandler = new InvocationHandler()
+		{
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+			{
+				if (method.getDeclaringClass() == Object.class)
+				{
+					switch (method.getName())
+					{
+						case "equals":
+							return handler.equalTo(proxy, args[0]);
+						case "hashCode":
+							return handler.hash(proxy);
+						default:
+							return type.getSimpleName() + "StandIn";
+					}
+				}
+				
+				Object result = handler.handle(method, args == null ? new Object[0] : args);
+				return result != null ? result : defaultValue(method.getReturnType());
+			}
+		};
+		
+		return type.cast(Proxy.newProxyInstance(StandIns.class.getClassLoader(), new Class<?>[] { type }, invocationHandler));
+	}
+	
+	/**
+	 * This method gets the value returned by methods the stand-ins don't handle
+	 * @param type The return type of the method
+	 * @return Zero or false for primitive types, null otherwise
+	 */
+	private static Object defaultValue(Class<?> type)
+	{
+		if (!type.isPrimitive() || type == void.class)
+			return null;
+		if (type == boolean.class)
+			return false;
+		if (type == char.class)
+			return (char)0;
+		if (type == double.class)
+			return 0d;
+		if (type == float.class)
+			return 0f;
+		if (type == long.class)
+			return 0L;
+		if (type == int.class)
+			return 0;
+		if (type == short.class)
+			return (short)0;
+		return (byte)0;
+	}
+	
+	/**
+	 * This method gets the Bukkit views of all stand-in worlds
+	 * @return The worlds
+	 */
+	private static synchronized List<World> getWorlds()
+	{
+		List<World> result = new ArrayList<World>();
+		
+		for (StandInWorld world : worlds)
+			result.add(world.getWorld());
+		
+		return result;
+	}
+	
+	/**
+	 * This method finds a stand-in world by its UUID
+	 * @param worldId The UUID of the world
+	 * @return The world, or null if no world has the UUID
+	 */
+	private static synchronized World getWorld(UUID worldId)
+	{
+		for (StandInWorld world : worlds)
+		{
+			if (world.getWorld().getUID().equals(worldId))
+				return world.getWorld();
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * This interface handles the calls made to a stand-in
+	 */
+	interface Handler
+	{
+		/**
+		 * This method handles a single call
+		 * @param method The called method
+		 * @param args The arguments of the call, never null
+		 * @return The result of the call, null gets replaced with the default value of the return type
+		 */
+		Object handle(Method method, Object[] args);
+		
+		/**
+		 * This method compares the stand-in to an other object
+		 * @param self The stand-in
+		 * @param other The other object
+		 * @return True if both are equal, false otherwise
+		 */
+		default boolean equalTo(Object self, Object other)
+		{
+			return self == other;
+		}
+		
+		/**
+		 * This method gets the hash code of the stand-in
+		 * @param self The stand-in
+		 * @return The hash code
+		 */
+		default int hash(Object self)
+		{
+			return System.identityHashCode(self);
+		}
+	}
+}
@@ -1,10 +1,26 @@
 package me.evvie.blockbasedelevators;
 
+import java.io.File;
+
+import org.bukkit.World;
+import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.event.HandlerList;
+import org.bukkit.plugin.ServicePriority;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import me.evvie.blockbasedelevators.api.ElevatorService;
+import me.evvie.blockbasedelevators.commands.ElevatorCommand;
+import me.evvie.blockbasedelevators.elevators.ElevatorImporter;
 import me.evvie.blockbasedelevators.elevators.ElevatorListener;
-import me.evvie.blockbasedelevators.events.PlayerJumpEvent;
+import me.evvie.blockbasedelevators.elevators.ElevatorManager;
+import me.evvie.blockbasedelevators.elevators.ElevatorProfiles;
+import me.evvie.blockbasedelevators.elevators.ElevatorServiceProvider;
+import me.evvie.blockbasedelevators.elevators.ElevatorStore;
+import me.evvie.blockbasedelevators.elevators.ElevatorSweeper;
+import me.evvie.blockbasedelevators.elevators.PlayerSessions;
+import me.evvie.blockbasedelevators.elevators.RescanScheduler;
+import me.evvie.blockbasedelevators.events.JumpDetection;
+import me.evvie.blockbasedelevators.metrics.ElevatorMetrics;
 
 /**
  * The main-class of this plug-in
@@ -12,6 +28,11 @@ import me.evvie.blockbasedelevators.events.PlayerJumpEvent;
  */
 public class BlockbasedElevators extends JavaPlugin
 {
+	private ElevatorStore elevatorStore;
+	private ElevatorManager elevatorManager;
+	private ElevatorMetrics metrics;
+	private ElevatorImporter elevatorImporter;
+	
 	@Override
 	public void onEnable() 
 	{
@@ -20,11 +41,63 @@ public class BlockbasedElevators extends JavaPlugin
         //save the default configuration, if it doesn't exist
         saveDefaultConfig();
         
-        //register the custom Jump-Event
-        getServer().getPluginManager().registerEvents(new PlayerJumpEvent.CallJumpEvent(), this);
+        //collect runtime metrics from the start
+        metrics = new ElevatorMetrics();
+        
+        //keep the state of every online player in a session, opened before any other listener needs it
+        PlayerSessions sessions = new PlayerSessions(getServer().getOnlinePlayers());
+        getServer().getPluginManager().registerEvents(sessions, this);
+        
+        //register the custom Jump-Event, using the configured detection
+        FileConfiguration config = getConfig();
+        JumpDetection jumpDetection = JumpDetection.fromName(config.getString("JumpDetection"));
+        
+        if (jumpDetection == null)
+        {
+            getLogger().warning("Unknown JumpDetection " + config.getString("JumpDetection") + ", using move instead");
+            jumpDetection = JumpDetection.MOVE;
+        }
+        
+        getServer().getPluginManager().registerEvents(jumpDetection.createListener(metrics, sessions), this);
+        
+        //create the ElevatorManager using the elevator profiles of the configuration
+        ElevatorProfiles profiles = ElevatorProfiles.fromConfig(config, getLogger());
+        elevatorStore = new ElevatorStore(new File(getDataFolder(), "elevators"), getLogger(), profiles.getNames());
+        elevatorManager = new ElevatorManager(profiles, elevatorStore, metrics);
+        
+        //load the elevators known before the last shut-down
+        for (World world : getServer().getWorlds())
+            elevatorManager.loadElevators(world);
+        
+        //offer the known elevators to other plug-ins
+        getServer().getServicesManager().register(ElevatorService.class, new ElevatorServiceProvider(elevatorManager), this, ServicePriority.Normal);
         
         //register elevator functionality
-        getServer().getPluginManager().registerEvents(new ElevatorListener(this), this);
+        getServer().getPluginManager().registerEvents(new ElevatorListener(this, elevatorManager, metrics, sessions), this);
+        
+        //re-check the known floors in the background, to catch blocks changed without events
+        new ElevatorSweeper(this, elevatorManager, config.getInt("SweepBudgetMicros"), metrics);
+        
+        //scan the columns of newly found elevators within a budget, instead of inside the event handlers
+        new RescanScheduler(this, elevatorManager, config.getInt("RescanBudgetMicros"), metrics);
+        
+        //register the command used to display the metrics and to import existing elevators
+        elevatorImporter = new ElevatorImporter(this, elevatorManager, config.getInt("ImportChunksPerTick"));
+        ElevatorCommand elevatorCommand = new ElevatorCommand(metrics, elevatorImporter);
+        getCommand("bbe").setExecutor(elevatorCommand);
+        getCommand("bbe").setTabCompleter(elevatorCommand);
+        
+        //periodically fold the journals into new snapshots
+        long snapshotTicks = config.getInt("SnapshotInterval") * 20L;
+        
+        if (snapshotTicks > 0)
+            getServer().getScheduler().runTaskTimer(this, elevatorManager::saveElevators, snapshotTicks, snapshotTicks);
+        
+        //periodically log a summary of the metrics, if enabled
+        long metricsTicks = config.getInt("MetricsLogInterval") * 20L;
+        
+        if (metricsTicks > 0)
+            getServer().getScheduler().runTaskTimer(this, this::logMetrics, metricsTicks, metricsTicks);
 	}
 	
 	@Override
@@ -34,5 +107,27 @@ public class BlockbasedElevators extends JavaPlugin
 		
 		//clean up everything added by this plug-in
 		HandlerList.unregisterAll(this);;
+		getServer().getScheduler().cancelTasks(this);
+		getServer().getServicesManager().unregisterAll(this);
+		
+		//a failed start-up might not have created everything
+		if (elevatorImporter != null)
+			elevatorImporter.cancel();
+		
+		//write the final snapshot before shutting down
+		if (elevatorManager != null)
+			elevatorManager.saveElevators();
+		
+		if (elevatorStore != null)
+			elevatorStore.close();
+	}
+	
+	/**
+	 * This method writes a summary of the runtime metrics to the log
+	 */
+	private void logMetrics()
+	{
+		for (String line : metrics.summarize())
+			getLogger().info(line);
 	}
-}
+}
\ No newline at end of file
@@ -0,0 +1,58 @@
+package me.evvie.blockbasedelevators.api;
+
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.UUID;
+
+/**
+ * This interface gives other plug-ins access to the elevators known by this plug-in
+ * It is registered with the Bukkit ServicesManager. All methods answer from the index of known
+ * elevators without reading any blocks, and can be called from any thread.
+ */
+public interface ElevatorService
+{
+	/**
+	 * This method gets the elevator of a block column
+	 * @param worldId The UUID of the world
+	 * @param x The x-coordinate of the column
+	 * @param z The z-coordinate of the column
+	 * @return A snapshot of the elevator, or null if no elevator is known for the column
+	 */
+	ElevatorSnapshot getElevator(UUID worldId, int x, int z);
+	
+	/**
+	 * This method gets all elevators of a chunk
+	 * @param worldId The UUID of the world
+	 * @param chunkX The x-coordinate of the chunk
+	 * @param chunkZ The z-coordinate of the chunk
+	 * @return Snapshots of the elevators in the chunk
+	 */
+	List<ElevatorSnapshot> getElevatorsInChunk(UUID worldId, int chunkX, int chunkZ);
+	
+	/**
+	 * This method finds the nearest floor above a height in a block column
+	 * @param worldId The UUID of the world
+	 * @param x The x-coordinate of the column
+	 * @param z The z-coordinate of the column
+	 * @param y The height
+	 * @return The y-coordinate of the floor's center block, or an empty result if there is none
+	 */
+	OptionalInt getFloorAbove(UUID worldId, int x, int z, int y);
+	
+	/**
+	 * This method finds the nearest floor below a height in a block column
+	 * @param worldId The UUID of the world
+	 * @param x The x-coordinate of the column
+	 * @param z The z-coordinate of the column
+	 * @param y The height
+	 * @return The y-coordinate of the floor's center block, or an empty result if there is none
+	 */
+	OptionalInt getFloorBelow(UUID worldId, int x, int z, int y);
+	
+	/**
+	 * This method exports all known elevators of a world
+	 * @param worldId The UUID of the world
+	 * @return Snapshots of all elevators of the world
+	 */
+	List<ElevatorSnapshot> exportWorld(UUID worldId);
+}
@@ -0,0 +1,118 @@
+package me.evvie.blockbasedelevators.api;
+
+import java.util.Arrays;
+import java.util.OptionalInt;
+import java.util.UUID;
+
+/**
+ * This class is an immutable snapshot of an elevator
+ * It holds the y-coordinates of the floor centers sorted from lowest to highest, so the floors 
+ * around a height can be found with a binary search.
+ */
+public final class ElevatorSnapshot
+{
+	private final UUID worldId;
+	private final int x;
+	private final int z;
+	private final int[] floorHeights;
+	
+	/**
+	 * Constructor for the creation of a snapshot
+	 * @param worldId The UUID of the elevator's world
+	 * @param x The x-coordinate of the elevator
+	 * @param z The z-coordinate of the elevator
+	 * @param floorHeights The y-coordinates of all floors sorted from lowest to highest, which must never be modified afterwards
+	 */
+	public ElevatorSnapshot(UUID worldId, int x, int z, int[] floorHeights)
+	{
+		this.worldId = worldId;
+		this.x = x;
+		this.z = z;
+		this.floorHeights = floorHeights;
+	}
+	
+	/**
+	 * This method gets the UUID of the elevator's world
+	 * @return The UUID of the world
+	 */
+	public UUID getWorldId()
+	{
+		return worldId;
+	}
+	
+	/**
+	 * This method gets the x-coordinate of the elevator
+	 * @return The x-coordinate of the elevator
+	 */
+	public int getX()
+	{
+		return x;
+	}
+	
+	/**
+	 * This method gets the z-coordinate of the elevator
+	 * @return The z-coordinate of the elevator
+	 */
+	public int getZ()
+	{
+		return z;
+	}
+	
+	/**
+	 * This method gets the amount of floors
+	 * @return The amount of floors
+	 */
+	public int getFloorCount()
+	{
+		return floorHeights.length;
+	}
+	
+	/**
+	 * This method gets the height of a floor
+	 * @param index The index of the floor, starting at zero for the lowest floor
+	 * @return The y-coordinate of the floor's center block
+	 */
+	public int getFloorHeight(int index)
+	{
+		return floorHeights[index];
+	}
+	
+	/**
+	 * This method gets the heights of all floors
+	 * @return A copy of the y-coordinates of all floors sorted from lowest to highest
+	 */
+	public int[] getFloorHeights()
+	{
+		return floorHeights.clone();
+	}
+	
+	/**
+	 * This method finds the nearest floor above a height
+	 * @param y The height
+	 * @return The y-coordinate of the lowest floor above the height, or an empty result if there is none
+	 */
+	public OptionalInt getFloorAbove(int y)
+	{
+		int index = Arrays.binarySearch(floorHeights, y);
+		
+		//skip the floor at the height itself, otherwise take the insertion point
+		index = index >= 0 ? index + 1 : -(index + 1);
+		
+		return index < floorHeights.length ? OptionalInt.of(floorHeights[index]) : OptionalInt.empty();
+	}
+	
+	/**
+	 * This method finds the nearest floor below a height
+	 * @param y The height
+	 * @return The y-coordinate of the highest floor below the height, or an empty result if there is none
+	 */
+	public OptionalInt getFloorBelow(int y)
+	{
+		int index = Arrays.binarySearch(floorHeights, y);
+		
+		//the floor below the one at the height, or below the insertion point
+		index = index >= 0 ? index - 1 : -(index + 1) - 1;
+		
+		return index >= 0 ? OptionalInt.of(floorHeights[index]) : OptionalInt.empty();
+	}
+}
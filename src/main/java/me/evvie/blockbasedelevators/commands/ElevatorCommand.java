@@ -0,0 +1,158 @@
+package me.evvie.blockbasedelevators.commands;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.bukkit.World;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
+
+import me.evvie.blockbasedelevators.elevators.ElevatorImporter;
+import me.evvie.blockbasedelevators.metrics.ElevatorMetrics;
+
+/**
+ * This class handles the /bbe command of this plug-in
+ */
+public class ElevatorCommand implements CommandExecutor, TabCompleter
+{
+	private static final String STATS_PERMISSION = "blockbasedelevators.stats";
+	private static final String IMPORT_PERMISSION = "blockbasedelevators.import";
+	
+	private final ElevatorMetrics metrics;
+	private final ElevatorImporter importer;
+	
+	/**
+	 * Constructor for the creation of the command
+	 * @param metrics The metrics displayed by the stats sub-command
+	 * @param importer The importer used by the import sub-command
+	 */
+	public ElevatorCommand(ElevatorMetrics metrics, ElevatorImporter importer)
+	{
+		this.metrics = metrics;
+		this.importer = importer;
+	}
+	
+	/**
+	 * This method executes the command
+	 * @param sender The sender of the command
+	 * @param command The executed command
+	 * @param label The alias used to execute the command
+	 * @param args The arguments of the command
+	 * @return True if the command was used correctly, false to show the usage
+	 */
+	@Override
+	public boolean onCommand(CommandSender sender, Command command, String label, String[] args)
+	{
+		if (args.length == 0)
+			return false;
+		
+		if (args[0].equalsIgnoreCase("stats") && args.length == 1)
+		{
+			if (!checkPermission(sender, STATS_PERMISSION))
+				return true;
+			
+			sender.sendMessage("BlockbasedElevators statistics:");
+			
+			for (String line : metrics.summarize())
+				sender.sendMessage(" " + line);
+			
+			return true;
+		}
+		
+		if (args[0].equalsIgnoreCase("import") && (args.length == 2 || args.length == 4))
+		{
+			if (!checkPermission(sender, IMPORT_PERMISSION))
+				return true;
+			
+			return importElevators(sender, args);
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * This method starts the import of a world or of a single region file
+	 * @param sender The sender of the command
+	 * @param args The arguments of the command: import, the world name and the optional region coordinates
+	 * @return True if the command was used correctly, false to show the usage
+	 */
+	private boolean importElevators(CommandSender sender, String[] args)
+	{
+		World world = sender.getServer().getWorld(args[1]);
+		
+		if (world == null)
+		{
+			sender.sendMessage("Unknown world " + args[1]);
+			return true;
+		}
+		
+		int[] region = null;
+		
+		if (args.length == 4)
+		{
+			try
+			{
+				region = new int[] { Integer.parseInt(args[2]), Integer.parseInt(args[3]) };
+			}
+			catch (NumberFormatException e)
+			{
+				return false;
+			}
+		}
+		
+		if (!importer.startImport(sender, world, region))
+			sender.sendMessage("An elevator import is already running");
+		
+		return true;
+	}
+	
+	/**
+	 * This method checks if the sender may use a sub-command, and tells them if they may not
+	 * @param sender The sender of the command
+	 * @param permission The permission of the sub-command
+	 * @return True if the sender has the permission, false otherwise
+	 */
+	private boolean checkPermission(CommandSender sender, String permission)
+	{
+		if (sender.hasPermission(permission))
+			return true;
+		
+		sender.sendMessage("You don't have permission to use this command");
+		return false;
+	}
+	
+	/**
+	 * This method completes the sub-commands and the world names of the import sub-command
+	 * @param sender The sender of the command
+	 * @param command The completed command
+	 * @param label The alias used for the command
+	 * @param args The arguments typed so far
+	 * @return The matching completions
+	 */
+	@Override
+	public List<String> onTabComplete(CommandSender sender, Command command, String label, String[] args)
+	{
+		List<String> completions = new ArrayList<String>();
+		
+		if (args.length == 1)
+		{
+			if (sender.hasPermission(STATS_PERMISSION) && "stats".startsWith(args[0].toLowerCase()))
+				completions.add("stats");
+			if (sender.hasPermission(IMPORT_PERMISSION) && "import".startsWith(args[0].toLowerCase()))
+				completions.add("import");
+		}
+		else if (args.length == 2 && args[0].equalsIgnoreCase("import") && sender.hasPermission(IMPORT_PERMISSION))
+		{
+			for (World world : sender.getServer().getWorlds())
+			{
+				if (world.getName().toLowerCase().startsWith(args[1].toLowerCase()))
+					completions.add(world.getName());
+			}
+		}
+		
+		return completions.isEmpty() ? Collections.<String>emptyList() : completions;
+	}
+}
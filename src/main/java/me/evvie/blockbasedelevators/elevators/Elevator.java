@@ -1,26 +1,45 @@
 package me.evvie.blockbasedelevators.elevators;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.UUID;
 
 import org.bukkit.World;
 import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
 
 /**
  * This class represents an elevator. 
- * It contains blocks that represent its floors sorted from lowest to highest.
+ * It contains the y-coordinates of its floors sorted from lowest to highest, each packed together 
+ * with a flag telling if the two blocks above the floor are free to land in.
+ * The floors are a copy-on-write array, so they can be read from any thread without locking.
+ * Changes are synchronized and replace the whole array. A second array holds the plain heights, 
+ * it only gets replaced when floors are added or removed.
  */
 public class Elevator 
 {
-	//list of blocks representing floors of the elevator
-	//sorted from lowest to highest
-	private List<Block> elevatorBlocks = new ArrayList<Block>();
+	private static final int[] NO_FLOORS = new int[0];
 	
-	//values needed to identify an elevator
-	private World world;
+	//y-coordinates of the center blocks representing floors of the elevator, shifted left by one
+	//the lowest bit is set if the landing above the floor is blocked, so the order stays the one of the heights
+	//sorted from lowest to highest, never modified after it got published
+	private volatile int[] floors = NO_FLOORS;
+	private static final int LANDING_BLOCKED = 1;
+	
+	//the same floors decoded to their y-coordinates, replaced whenever a floor is added or removed
+	//shared with the snapshots of the API, so creating them never copies floors
+	private volatile int[] floorHeights = NO_FLOORS;
+	
+	//values needed to identify an elevator, the world is kept by its UUID so unloaded worlds can be collected
+	private UUID worldId;
 	private int xLocation;
 	private int zLocation;
 	
+	//index of the profile all floors of this elevator are made of
+	private int profile;
+	
+	//token bucket limiting the teleports of all players using this elevator, only used by the main thread
+	private long teleportBucket;
+	
 	/**
 	 * This method checks if an elevator already exists 
 	 * @param block A block that should be part of an elevator
@@ -28,28 +47,45 @@ public class Elevator
 	 */
 	public boolean exists(Block block)
 	{
-		if (world == block.getWorld() && xLocation == block.getX() && zLocation == block.getZ()) return true;
+		if (xLocation == block.getX() && zLocation == block.getZ() && worldId.equals(block.getWorld().getUID())) return true;
 		else return false;
 	}
 	
 	/**
 	 * This method creates the elevator based on a block
 	 * @param startBlock A block that is part of the elevator
+	 * @param profile The index of the elevator's profile
 	 */
-	public void create(Block startBlock)
+	public void create(Block startBlock, int profile)
 	{
 		xLocation = startBlock.getLocation().getBlockX();
 		zLocation = startBlock.getLocation().getBlockZ();
-		world = startBlock.getWorld();
+		worldId = startBlock.getWorld().getUID();
+		this.profile = profile;
+	}
+	
+	/**
+	 * This method creates the elevator at a known column
+	 * @param worldId The UUID of the elevator's world
+	 * @param x The x-coordinate of the elevator
+	 * @param z The z-coordinate of the elevator
+	 * @param profile The index of the elevator's profile
+	 */
+	void create(UUID worldId, int x, int z, int profile)
+	{
+		this.worldId = worldId;
+		xLocation = x;
+		zLocation = z;
+		this.profile = profile;
 	}
 	
 	/**
 	 * This method is used to get the world of this elevator
-	 * @return The world this elevator is part of
+	 * @return The UUID of the world this elevator is part of
 	 */
-	public World getWorld()
+	public UUID getWorldId()
 	{
-		return world;
+		return worldId;
 	}
 	
 	/**
@@ -71,40 +107,70 @@ public class Elevator
 	}
 	
 	/**
-	 * This method gets the next floor above the given block
+	 * This method gets the profile of the elevator
+	 * @return The index of the profile, see ElevatorProfiles
+	 */
+	public int getProfile()
+	{
+		return profile;
+	}
+	
+	/**
+	 * This method gets the state of the token bucket limiting the teleports of this elevator
+	 * @return The state of the bucket, see TokenBucket
+	 */
+	long getTeleportBucket()
+	{
+		return teleportBucket;
+	}
+	
+	/**
+	 * This method sets the state of the token bucket limiting the teleports of this elevator
+	 * @param teleportBucket The new state of the bucket
+	 */
+	void setTeleportBucket(long teleportBucket)
+	{
+		this.teleportBucket = teleportBucket;
+	}
+	
+	/**
+	 * This method gets the next floor above the given block that can be landed on
+	 * Floors whose landing is blocked are skipped, without reading any blocks.
 	 * @param block The block representing the current floor
 	 * @return The block representing the next floor if it exists, otherwise null
 	 */
 	public Block getAbove(Block block)
 	{
-		if(elevatorBlocks.contains(block))
+		int[] floors = this.floors;
+		int index = indexOf(floors, block);
+		
+		if (index < 0)
+			return null;
+		
+		for (int i = index + 1; i < floors.length; i++)
 		{
-			int index = elevatorBlocks.indexOf(block);
-			
-			if (index < 0 || index + 1 == elevatorBlocks.size())
-				return null;
-			
-			return elevatorBlocks.get(index + 1);
+			if ((floors[i] & LANDING_BLOCKED) == 0)
+				return getFloorBlock(block, floors[i] >> 1);
 		}
 		
 		return null;
 	}
 	
 	/**
-	 * This method gets the next floor below the given block
+	 * This method gets the next floor below the given block that can be landed on
+	 * Floors whose landing is blocked are skipped, without reading any blocks.
 	 * @param block The block representing the current floor
 	 * @return The block representing the next floor if it exists, null otherwise
 	 */
 	public Block getBelow(Block block)
 	{
-		if(elevatorBlocks.contains(block))
+		int[] floors = this.floors;
+		int index = indexOf(floors, block);
+		
+		for (int i = index - 1; i >= 0; i--)
 		{
-			int index = elevatorBlocks.indexOf(block);
-			
-			if (index - 1 < 0)
-				return null;
-			
-			return elevatorBlocks.get(index - 1);
+			if ((floors[i] & LANDING_BLOCKED) == 0)
+				return getFloorBlock(block, floors[i] >> 1);
 		}
 		
 		return null;
@@ -116,7 +182,7 @@ public class Elevator
 	 */
 	public int floorCount()
 	{
-		return elevatorBlocks.size();
+		return floors.length;
 	}
 	
 	/**
@@ -126,46 +192,74 @@ public class Elevator
 	 */
 	public int getFloorNumber(Block block)
 	{
-		if(elevatorBlocks.contains(block))
-			return elevatorBlocks.indexOf(block) + 1;
-		return -1;
+		int index = indexOf(floors, block);
+		
+		if (index < 0)
+			return -1;
+		return index + 1;
 	}
 	
 	/**
-	 * This method inserts a new floor into the elevator
+	 * This method inserts a new floor into the elevator, reading the two blocks above it for its landing
 	 * @param block The block representing the new floor
 	 */
-	public void addElevatorFloor(Block block)
+	public synchronized void addElevatorFloor(Block block)
 	{
-		//inserts a block to the elevator at the right position corresponding to its y-coordinate
-		if(!elevatorBlocks.contains(block))
-		{
-			for (int i = 0; i < elevatorBlocks.size(); i++)
-			{
-				//if the current block is higher than the new one, this becomes the place of the 
-				//new one and the rest gets shifted to the right
-				if (elevatorBlocks.get(i).getLocation().getBlockY() > block.getLocation().getBlockY())
-				{
-					elevatorBlocks.add(i, block);
-					
-					//return early since the new position is fond
-					return;
-				}
-			}
-			
-			//if no higher floor can be found, this becomes the new highest floor
-			elevatorBlocks.add(block);
-		}
+		if (!exists(block))
+			return;
+		
+		int[] floors = this.floors;
+		
+		//the floor is already part of the elevator
+		if (indexOf(floors, block) >= 0)
+			return;
+		
+		//find the position of the new floor corresponding to its y-coordinate
+		int index = -(Arrays.binarySearch(floors, block.getY() << 1) + 1);
+		
+		//copy the lower floors, the new one and the higher floors shifted to the right
+		int[] newFloors = new int[floors.length + 1];
+		System.arraycopy(floors, 0, newFloors, 0, index);
+		newFloors[index] = pack(block.getY(), isLandingClear(block));
+		System.arraycopy(floors, index, newFloors, index + 1, floors.length - index);
+		publish(newFloors);
+	}
+	
+	/**
+	 * This method updates the landing flag of a floor, the floors are only replaced if the flag changed
+	 * @param y The y-coordinate of the floor
+	 * @param landingClear True if the two blocks above the floor are free to land in, false otherwise
+	 */
+	synchronized void setLandingClear(int y, boolean landingClear)
+	{
+		int[] floors = this.floors;
+		int index = indexOf(floors, y);
+		
+		if (index < 0 || floors[index] == pack(y, landingClear))
+			return;
+		
+		int[] newFloors = floors.clone();
+		newFloors[index] = pack(y, landingClear);
+		this.floors = newFloors;
 	}
 	
 	/**
 	 * This method removes a floor from the elevator
 	 * @param block The block representing the floor
 	 */
-	public void removeElevatorFloor(Block block)
+	public synchronized void removeElevatorFloor(Block block)
 	{
-		if(elevatorBlocks.contains(block))
-			elevatorBlocks.remove(block);
+		int[] floors = this.floors;
+		int index = indexOf(floors, block);
+		
+		if (index < 0)
+			return;
+		
+		//copy the lower floors and the higher floors shifted to the left
+		int[] newFloors = new int[floors.length - 1];
+		System.arraycopy(floors, 0, newFloors, 0, index);
+		System.arraycopy(floors, index + 1, newFloors, index, floors.length - index - 1);
+		publish(newFloors);
 	}
 	
 	/**
@@ -175,14 +269,133 @@ public class Elevator
 	 */
 	public boolean containsElevatorFloor(Block block)
 	{
-		return elevatorBlocks.contains(block);
+		return indexOf(floors, block) >= 0;
+	}
+	
+	/**
+	 * This method gets the current floor heights of the elevator
+	 * The array is an immutable snapshot, later changes of the elevator replace it instead.
+	 * @return The y-coordinates of all floors sorted from lowest to highest, must not be modified
+	 */
+	int[] getFloorHeights()
+	{
+		return floorHeights;
+	}
+	
+	/**
+	 * This method gets the height of a single floor, without copying all of them
+	 * @param index The index of the floor, counted from the lowest one
+	 * @return The y-coordinate of the floor
+	 */
+	int getFloorHeight(int index)
+	{
+		return floors[index] >> 1;
+	}
+	
+	/**
+	 * This method replaces all floors of the elevator, reading the two blocks above each of them for its landing
+	 * @param heights The y-coordinates of all floors sorted from lowest to highest
+	 * @param world The loaded world of the elevator
+	 */
+	synchronized void setFloorHeights(int[] heights, World world)
+	{
+		int[] newFloors = heights.length == 0 ? NO_FLOORS : new int[heights.length];
+		
+		for (int i = 0; i < heights.length; i++)
+			newFloors[i] = pack(heights[i], isLandingClear(world.getBlockAt(xLocation, heights[i], zLocation)));
+		
+		publish(newFloors);
 	}
 	
 	/**
 	 * This method clears all floors from an elevator
 	 */
-	public void clearElevator()
+	public synchronized void clearElevator()
+	{
+		publish(NO_FLOORS);
+	}
+	
+	/**
+	 * This method replaces the floors of the elevator together with their decoded heights
+	 * The heights are written first, so a reader finding the new floors also finds their heights.
+	 * @param newFloors The packed floors, which must not be modified afterwards
+	 */
+	private void publish(int[] newFloors)
+	{
+		int[] newHeights = newFloors.length == 0 ? NO_FLOORS : new int[newFloors.length];
+		
+		for (int i = 0; i < newFloors.length; i++)
+			newHeights[i] = newFloors[i] >> 1;
+		
+		floorHeights = newHeights;
+		floors = newFloors;
+	}
+	
+	/**
+	 * This method checks if a player can stand on a floor without getting stuck in a block
+	 * @param block The block representing the floor
+	 * @return True if the two blocks above the floor are passable, false otherwise
+	 */
+	static boolean isLandingClear(Block block)
+	{
+		Block feet = block.getRelative(BlockFace.UP);
+		return feet.isPassable() && feet.getRelative(BlockFace.UP).isPassable();
+	}
+	
+	/**
+	 * This method packs the height and the landing flag of a floor
+	 * @param y The y-coordinate of the floor
+	 * @param landingClear True if the landing of the floor is clear, false otherwise
+	 * @return The packed floor
+	 */
+	private static int pack(int y, boolean landingClear)
+	{
+		return landingClear ? y << 1 : (y << 1) | LANDING_BLOCKED;
+	}
+	
+	/**
+	 * This method finds the position of a floor inside the sorted floors
+	 * @param floors The floors read once by the caller
+	 * @param block The block that might represent a floor
+	 * @return The index of the floor, or -1 if the block does not represent a floor
+	 */
+	private int indexOf(int[] floors, Block block)
+	{
+		if (!exists(block))
+			return -1;
+		
+		return indexOf(floors, block.getY());
+	}
+	
+	/**
+	 * This method finds the position of a floor height inside the sorted floors
+	 * A floor with a clear landing is found directly, a blocked one sorts right after that position.
+	 * @param floors The floors read once by the caller
+	 * @param y The y-coordinate of the floor
+	 * @return The index of the floor, or -1 if the elevator has no floor at that height
+	 */
+	private static int indexOf(int[] floors, int y)
+	{
+		int index = Arrays.binarySearch(floors, y << 1);
+		
+		if (index >= 0)
+			return index;
+		
+		index = -(index + 1);
+		
+		if (index < floors.length && floors[index] == ((y << 1) | LANDING_BLOCKED))
+			return index;
+		return -1;
+	}
+	
+	/**
+	 * This method gets the center block of a floor
+	 * @param block A block of this elevator, which provides the loaded world
+	 * @param y The y-coordinate of the floor
+	 * @return The block representing the floor
+	 */
+	private Block getFloorBlock(Block block, int y)
 	{
-		elevatorBlocks.clear();
+		return block.getWorld().getBlockAt(xLocation, y, zLocation);
 	}
 }
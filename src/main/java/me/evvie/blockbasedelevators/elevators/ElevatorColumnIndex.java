@@ -0,0 +1,178 @@
+package me.evvie.blockbasedelevators.elevators;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import me.evvie.blockbasedelevators.util.CoordinateKeys;
+import me.evvie.blockbasedelevators.util.LongHashSet;
+import me.evvie.blockbasedelevators.util.LongObjectHashMap;
+
+/**
+ * This class keeps a 16x16 bitmap of the block columns containing elevator floors for every chunk
+ * Chunks are marked as complete once every floor they contain is known, which is the case for
+ * chunks without any elevator center blocks. For those chunks a single bit decides if a column
+ * can be an elevator, without looking at any blocks.
+ * Floors can appear in a complete chunk without any event, so the centers of rejected columns still 
+ * need to be checked, see ElevatorManager.isElevatorColumn.
+ */
+class ElevatorColumnIndex
+{
+	private static final long[] NO_COLUMNS = new long[0];
+	
+	//columns containing known elevator floors, four longs per chunk
+	private final Map<UUID, LongObjectHashMap<long[]>> columns = new HashMap<UUID, LongObjectHashMap<long[]>>();
+	
+	//chunks where every floor is known
+	private final Map<UUID, LongHashSet> completeChunks = new HashMap<UUID, LongHashSet>();
+	
+	/**
+	 * This method checks if a block column might contain an elevator floor
+	 * @param worldId The UUID of the world
+	 * @param x The x-coordinate of the column
+	 * @param z The z-coordinate of the column
+	 * @return False if the column can't contain a floor, true if it does or might contain one
+	 */
+	boolean mightContainFloors(UUID worldId, int x, int z)
+	{
+		long chunkKey = CoordinateKeys.columnKey(x >> 4, z >> 4);
+		LongObjectHashMap<long[]> worldColumns = columns.get(worldId);
+		
+		if (worldColumns != null)
+		{
+			long[] bitmap = worldColumns.get(chunkKey);
+			
+			if (bitmap != null && (bitmap[bitIndex(x, z) >> 6] & (1L << bitIndex(x, z))) != 0)
+				return true;
+		}
+		
+		LongHashSet worldCompleteChunks = completeChunks.get(worldId);
+		
+		//columns in chunks that aren't complete might contain unknown floors
+		return worldCompleteChunks == null || !worldCompleteChunks.contains(chunkKey);
+	}
+	
+	/**
+	 * This method marks a block column as containing or not containing elevator floors
+	 * @param worldId The UUID of the world
+	 * @param x The x-coordinate of the column
+	 * @param z The z-coordinate of the column
+	 * @param containsFloors True if the column contains floors, false otherwise
+	 */
+	void setColumn(UUID worldId, int x, int z, boolean containsFloors)
+	{
+		long chunkKey = CoordinateKeys.columnKey(x >> 4, z >> 4);
+		LongObjectHashMap<long[]> worldColumns = columns.get(worldId);
+		
+		if (worldColumns == null)
+		{
+			if (!containsFloors)
+				return;
+			
+			worldColumns = new LongObjectHashMap<long[]>();
+			columns.put(worldId, worldColumns);
+		}
+		
+		long[] bitmap = worldColumns.get(chunkKey);
+		
+		if (bitmap == null)
+		{
+			if (!containsFloors)
+				return;
+			
+			bitmap = new long[4];
+			worldColumns.put(chunkKey, bitmap);
+		}
+		
+		int bit = bitIndex(x, z);
+		
+		if (containsFloors)
+		{
+			bitmap[bit >> 6] |= 1L << bit;
+		}
+		else
+		{
+			bitmap[bit >> 6] &= ~(1L << bit);
+			
+			//drop bitmaps of chunks without any elevator
+			if ((bitmap[0] | bitmap[1] | bitmap[2] | bitmap[3]) == 0)
+				worldColumns.remove(chunkKey);
+		}
+	}
+	
+	/**
+	 * This method marks a chunk as complete or incomplete
+	 * @param worldId The UUID of the world
+	 * @param chunkX The x-coordinate of the chunk
+	 * @param chunkZ The z-coordinate of the chunk
+	 * @param complete True if every floor in the chunk is known, false otherwise
+	 */
+	void setChunkComplete(UUID worldId, int chunkX, int chunkZ, boolean complete)
+	{
+		LongHashSet worldCompleteChunks = completeChunks.get(worldId);
+		
+		if (worldCompleteChunks == null)
+		{
+			if (!complete)
+				return;
+			
+			worldCompleteChunks = new LongHashSet();
+			completeChunks.put(worldId, worldCompleteChunks);
+		}
+		
+		if (complete)
+			worldCompleteChunks.add(CoordinateKeys.columnKey(chunkX, chunkZ));
+		else
+			worldCompleteChunks.remove(CoordinateKeys.columnKey(chunkX, chunkZ));
+	}
+	
+	/**
+	 * This method forgets everything known about a chunk
+	 * @param worldId The UUID of the world
+	 * @param chunkX The x-coordinate of the chunk
+	 * @param chunkZ The z-coordinate of the chunk
+	 * @return The packed coordinates of the columns that contained floors
+	 */
+	long[] removeChunk(UUID worldId, int chunkX, int chunkZ)
+	{
+		setChunkComplete(worldId, chunkX, chunkZ, false);
+		
+		LongObjectHashMap<long[]> worldColumns = columns.get(worldId);
+		long[] bitmap = worldColumns == null ? null : worldColumns.remove(CoordinateKeys.columnKey(chunkX, chunkZ));
+		
+		if (bitmap == null)
+			return NO_COLUMNS;
+		
+		long[] columnKeys = new long[Long.bitCount(bitmap[0]) + Long.bitCount(bitmap[1]) + Long.bitCount(bitmap[2]) + Long.bitCount(bitmap[3])];
+		int count = 0;
+		
+		for (int bit = 0; bit < 256; bit++)
+		{
+			if ((bitmap[bit >> 6] & (1L << bit)) != 0)
+				columnKeys[count++] = CoordinateKeys.columnKey((chunkX << 4) | (bit & 15), (chunkZ << 4) | (bit >> 4));
+		}
+		
+		return columnKeys;
+	}
+	
+	/**
+	 * This method forgets everything known about a world
+	 * @param worldId The UUID of the world
+	 */
+	void removeWorld(UUID worldId)
+	{
+		columns.remove(worldId);
+		completeChunks.remove(worldId);
+	}
+	
+	/**
+	 * This method gets the index of a column's bit inside the bitmap of its chunk
+	 * @param x The x-coordinate of the column
+	 * @param z The z-coordinate of the column
+	 * @return The index of the bit (0-255)
+	 */
+	private static int bitIndex(int x, int z)
+	{
+		return ((z & 15) << 4) | (x & 15);
+	}
+}
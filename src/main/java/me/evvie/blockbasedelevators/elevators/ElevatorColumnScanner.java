@@ -0,0 +1,294 @@
+package me.evvie.blockbasedelevators.elevators;
+
+import java.util.Arrays;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.Material;
+import org.bukkit.block.data.BlockData;
+
+/**
+ * This class scans block columns of a ChunkSnapshot for elevator floors of all profiles
+ * Snapshots are immutable, so a scanner can be used from any thread. Rim blocks outside of the
+ * snapshot's chunk can't be checked, so every found floor needs to be verified on the main thread
+ * with ElevatorManager.matchFloor before it gets used.
+ */
+public class ElevatorColumnScanner
+{
+	private static final int[] NO_FLOORS = new int[0];
+	private static final long[] NO_CANDIDATES = new long[0];
+	
+	//edges of a chunk in the bitmaps returned by scanEdges
+	public static final int EDGE_NORTH = 0;
+	public static final int EDGE_EAST = 1;
+	public static final int EDGE_SOUTH = 2;
+	public static final int EDGE_WEST = 3;
+	
+	//profiles that make up an valid elevator floor, and their materials as block data for the palette lookups
+	//null if a material has more than one block state, since a palette can only be searched for single states
+	private final ElevatorProfiles profiles;
+	private final BlockData[] centerData;
+	private final BlockData[] rimData;
+	
+	/**
+	 * Constructor for the creation of the ElevatorColumnScanner
+	 * @param profiles The compiled elevator profiles
+	 */
+	public ElevatorColumnScanner(ElevatorProfiles profiles)
+	{
+		this.profiles = profiles;
+		this.centerData = createPaletteData(profiles.getCenterMaterials());
+		this.rimData = createPaletteData(profiles.getRimMaterials());
+	}
+	
+	/**
+	 * This method checks if a snapshot contains the center material of any profile
+	 * @param snapshot The snapshot of a chunk
+	 * @return True if the chunk might contain elevator floors, false otherwise
+	 */
+	public boolean mightContainFloors(ChunkSnapshot snapshot)
+	{
+		return mightContain(snapshot, centerData);
+	}
+	
+	/**
+	 * This method scans a single block column of a snapshot for the floors of a profile
+	 * @param snapshot The snapshot of the chunk containing the column
+	 * @param minHeight The minimum height of the snapshot's world
+	 * @param maxHeight The maximum height of the snapshot's world
+	 * @param localX The x-coordinate of the column inside the chunk (0-15)
+	 * @param localZ The z-coordinate of the column inside the chunk (0-15)
+	 * @param profile The index of the profile
+	 * @return The sorted heights of all floor candidates of the profile in the column
+	 */
+	public int[] scanColumn(ChunkSnapshot snapshot, int minHeight, int maxHeight, int localX, int localZ, int profile)
+	{
+		long[] candidates = scan(snapshot, minHeight, maxHeight, localX, localZ, 1 << profile);
+		
+		if (candidates.length == 0)
+			return NO_FLOORS;
+		
+		int[] floors = new int[candidates.length];
+		
+		for (int i = 0; i < candidates.length; i++)
+			floors[i] = floorHeight(candidates[i]);
+		
+		return floors;
+	}
+	
+	/**
+	 * This method scans a single block column of a snapshot for the floors of all profiles
+	 * @param snapshot The snapshot of the chunk containing the column
+	 * @param minHeight The minimum height of the snapshot's world
+	 * @param maxHeight The maximum height of the snapshot's world
+	 * @param localX The x-coordinate of the column inside the chunk (0-15)
+	 * @param localZ The z-coordinate of the column inside the chunk (0-15)
+	 * @return The floor candidates sorted by height, see floorHeight and floorProfiles
+	 */
+	public long[] scanColumnProfiles(ChunkSnapshot snapshot, int minHeight, int maxHeight, int localX, int localZ)
+	{
+		return scan(snapshot, minHeight, maxHeight, localX, localZ, -1);
+	}
+	
+	/**
+	 * This method gets the height of a floor candidate returned by scanColumnProfiles
+	 * @param candidate The floor candidate
+	 * @return The y-coordinate of the floor
+	 */
+	public static int floorHeight(long candidate)
+	{
+		return (int)(candidate >> 32);
+	}
+	
+	/**
+	 * This method gets the profiles a floor candidate returned by scanColumnProfiles might belong to
+	 * Sides with rim blocks outside of the chunk are not checked yet.
+	 * @param candidate The floor candidate
+	 * @return The candidate profiles, bit i stands for profile i
+	 */
+	public static int floorProfiles(long candidate)
+	{
+		return (int)candidate;
+	}
+	
+	/**
+	 * This method finds the rim blocks on the four edges of a snapshot
+	 * They complete the floors at the edges of the neighbouring chunks, whose rim lies in this chunk.
+	 * @param snapshot The snapshot of a chunk
+	 * @param minHeight The minimum height of the snapshot's world
+	 * @param maxHeight The maximum height of the snapshot's world
+	 * @return Bitmaps of the rim blocks of each rim material along each edge, indexed by 
+	 * (rimIndex * 4 + edge) * (maxHeight - minHeight) + (y - minHeight), see ElevatorProfiles.getRimIndex, 
+	 * or null if the chunk doesn't contain any rim material
+	 */
+	public short[] scanEdges(ChunkSnapshot snapshot, int minHeight, int maxHeight)
+	{
+		if (!mightContain(snapshot, rimData))
+			return null;
+		
+		Material[] rimMaterials = profiles.getRimMaterials();
+		int height = maxHeight - minHeight;
+		short[] edges = new short[rimMaterials.length * 4 * height];
+		int minSection = minHeight >> 4;
+		
+		for (int sectionY = minSection; sectionY << 4 < maxHeight; sectionY++)
+		{
+			if (snapshot.isSectionEmpty(sectionY - minSection))
+				continue;
+			
+			int top = Math.min((sectionY << 4) + 16, maxHeight);
+			
+			for (int y = Math.max(sectionY << 4, minHeight); y < top; y++)
+			{
+				int row = y - minHeight;
+				
+				for (int i = 0; i < 16; i++)
+				{
+					markRim(edges, rimMaterials, EDGE_NORTH, height, row, i, snapshot.getBlockType(i, y, 0));
+					markRim(edges, rimMaterials, EDGE_EAST, height, row, i, snapshot.getBlockType(15, y, i));
+					markRim(edges, rimMaterials, EDGE_SOUTH, height, row, i, snapshot.getBlockType(i, y, 15));
+					markRim(edges, rimMaterials, EDGE_WEST, height, row, i, snapshot.getBlockType(0, y, i));
+				}
+			}
+		}
+		
+		return edges;
+	}
+	
+	/**
+	 * This method scans a single block column of a snapshot for the floors of some profiles
+	 * @param snapshot The snapshot of the chunk containing the column
+	 * @param minHeight The minimum height of the snapshot's world
+	 * @param maxHeight The maximum height of the snapshot's world
+	 * @param localX The x-coordinate of the column inside the chunk (0-15)
+	 * @param localZ The z-coordinate of the column inside the chunk (0-15)
+	 * @param wanted The profiles to look for, bit i stands for profile i
+	 * @return The floor candidates sorted by height, see floorHeight and floorProfiles
+	 */
+	private long[] scan(ChunkSnapshot snapshot, int minHeight, int maxHeight, int localX, int localZ, int wanted)
+	{
+		if (!mightContainFloors(snapshot))
+			return NO_CANDIDATES;
+		
+		long[] floors = NO_CANDIDATES;
+		int floorCount = 0;
+		int minSection = minHeight >> 4;
+		
+		for (int sectionY = minSection; sectionY << 4 < maxHeight; sectionY++)
+		{
+			//sections containing only air can't contain a floor
+			if (snapshot.isSectionEmpty(sectionY - minSection))
+				continue;
+			
+			int top = Math.min((sectionY << 4) + 16, maxHeight);
+			
+			for (int y = Math.max(sectionY << 4, minHeight); y < top; y++)
+			{
+				int floorProfiles = matchFloor(snapshot, localX, y, localZ, wanted);
+				
+				if (floorProfiles != 0)
+				{
+					if (floorCount == floors.length)
+						floors = Arrays.copyOf(floors, Math.max(4, floorCount * 2));
+					
+					floors[floorCount++] = ((long)y << 32) | (floorProfiles & 0xFFFFFFFFL);
+				}
+			}
+		}
+		
+		return floorCount == floors.length ? floors : Arrays.copyOf(floors, floorCount);
+	}
+	
+	/**
+	 * This method checks which profiles a position of a snapshot is the center of a floor of
+	 * Only rim blocks inside the snapshot's chunk are checked, each block gets read at most once.
+	 * @param snapshot The snapshot of the chunk
+	 * @param localX The x-coordinate inside the chunk (0-15)
+	 * @param y The y-coordinate
+	 * @param localZ The z-coordinate inside the chunk (0-15)
+	 * @param wanted The profiles to look for
+	 * @return The matching profiles, 0 if the position is no floor candidate
+	 */
+	private int matchFloor(ChunkSnapshot snapshot, int localX, int y, int localZ, int wanted)
+	{
+		int candidates = profiles.getCenterProfiles(snapshot.getBlockType(localX, y, localZ)) & wanted;
+		
+		if (candidates == 0)
+			return 0;
+		
+		if (localZ > 0 && profiles.needingRim(candidates, ElevatorProfile.SIDE_NORTH) != 0)
+			candidates = profiles.filterSide(candidates, ElevatorProfile.SIDE_NORTH, snapshot.getBlockType(localX, y, localZ - 1));
+		if (localX < 15 && profiles.needingRim(candidates, ElevatorProfile.SIDE_EAST) != 0)
+			candidates = profiles.filterSide(candidates, ElevatorProfile.SIDE_EAST, snapshot.getBlockType(localX + 1, y, localZ));
+		if (localZ < 15 && profiles.needingRim(candidates, ElevatorProfile.SIDE_SOUTH) != 0)
+			candidates = profiles.filterSide(candidates, ElevatorProfile.SIDE_SOUTH, snapshot.getBlockType(localX, y, localZ + 1));
+		if (localX > 0 && profiles.needingRim(candidates, ElevatorProfile.SIDE_WEST) != 0)
+			candidates = profiles.filterSide(candidates, ElevatorProfile.SIDE_WEST, snapshot.getBlockType(localX - 1, y, localZ));
+		
+		return candidates;
+	}
+	
+	/**
+	 * This method sets the bit of an edge block in the bitmap of its material, if it is a rim material
+	 * @param edges The bitmaps of all rim materials
+	 * @param rimMaterials The rim materials
+	 * @param edge The edge of the chunk
+	 * @param height The height of the world
+	 * @param row The height of the block above the minimum height
+	 * @param index The position of the block along the edge
+	 * @param material The material of the block
+	 */
+	private static void markRim(short[] edges, Material[] rimMaterials, int edge, int height, int row, int index, Material material)
+	{
+		for (int rim = 0; rim < rimMaterials.length; rim++)
+		{
+			if (rimMaterials[rim] == material)
+			{
+				edges[(rim * 4 + edge) * height + row] |= 1 << index;
+				return;
+			}
+		}
+	}
+	
+	/**
+	 * This method checks if a snapshot might contain one of some materials
+	 * It looks up the block palettes of the sections instead of the blocks themselves.
+	 * @param snapshot The snapshot of a chunk
+	 * @param paletteData The block data of the materials, see createPaletteData
+	 * @return False if the snapshot contains none of the materials, true if it might contain one
+	 */
+	private static boolean mightContain(ChunkSnapshot snapshot, BlockData[] paletteData)
+	{
+		if (paletteData == null)
+			return true;
+		
+		for (BlockData data : paletteData)
+		{
+			if (snapshot.contains(data))
+				return true;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * This method creates the block data used to look up materials in the block palettes of a chunk
+	 * Palettes hold block states, so only materials with a single state can be found by their default block data.
+	 * @param materials The materials
+	 * @return The block data of every material, or null if a material has more than one block state
+	 */
+	static BlockData[] createPaletteData(Material[] materials)
+	{
+		BlockData[] data = new BlockData[materials.length];
+		
+		for (int i = 0; i < materials.length; i++)
+		{
+			data[i] = materials[i].createBlockData();
+			
+			//the properties of the default state are part of its string, like the axis of a log
+			if (data[i].getAsString().indexOf('[') >= 0)
+				return null;
+		}
+		
+		return data;
+	}
+}
@@ -1,7 +1,8 @@
 package me.evvie.blockbasedelevators.elevators;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
 
 import org.bukkit.block.BlockFace;
 import org.bukkit.boss.BarColor;
@@ -9,90 +10,234 @@ import org.bukkit.boss.BarStyle;
 import org.bukkit.boss.BossBar;
 import org.bukkit.entity.Player;
 import org.bukkit.plugin.Plugin;
-import org.bukkit.scheduler.BukkitRunnable;
+
+import me.evvie.blockbasedelevators.util.LongObjectHashMap;
+import me.evvie.blockbasedelevators.util.TimingWheel;
 
 /**
  * This class manages the floor GUI of players
+ * Every player keeps a single BossBar in their session that gets hidden instead of destroyed. Changes to a display
+ * only mark it as dirty and get sent once per tick, so several teleports within a tick cost a
+ * single update. The displays of all players are hidden by the same repeating task, which expires 
+ * the displays due in a tick using a timing wheel.
  */
 public class ElevatorFloorDisplayManager 
 {
-	private final int displaySeconds;
-	private final Plugin plugin;
-	private Map<Player, BossBar> playersWithDisplay = new HashMap<Player, BossBar>();
+	//slots of the timing wheel, displays lasting longer than this many ticks take several rounds
+	private static final int WHEEL_SLOTS = 256;
+	
+	private final int displayTicks;
+	private final PlayerSessions sessions;
+	private final TimingWheel<FloorDisplay> hideTimers = new TimingWheel<FloorDisplay>(WHEEL_SLOTS);
+	private final Consumer<FloorDisplay> hideFloorDisplay = this::hideFloorDisplay;
+	
+	//displays changed since the last tick
+	private final List<FloorDisplay> dirtyDisplays = new ArrayList<FloorDisplay>();
+	
+	//titles of all floor and floor count combinations used so far
+	private final LongObjectHashMap<String> titles = new LongObjectHashMap<String>();
+	private int visibleDisplays;
 	
 	/**
 	 * Constructor for the creation of the manager used for floor GUIs for players
 	 * @param plugin A reference to the main-class of this plug-in
 	 * @param displaySeconds The duration the floor display should be shown
+	 * @param sessions The sessions holding the displays of the players
 	 */
-	ElevatorFloorDisplayManager(Plugin plugin, int displaySeconds)
+	ElevatorFloorDisplayManager(Plugin plugin, int displaySeconds, PlayerSessions sessions)
 	{
-		this.plugin = plugin;
-		this.displaySeconds = displaySeconds;
+		this.displayTicks = displaySeconds * 20; // * 20 since a server tick is 0.05 seconds
+		this.sessions = sessions;
+		
+		//send the changed displays and advance the hide timers of all players once per tick
+		plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 1, 1);
 	}
 	
 	/**
 	 * This method displays the floor to a player
-	 * @param player The player the GUI will be created for
+	 * @param slot The session slot of the player the GUI will be created for
 	 * @param floor The floor the player is on
 	 * @param elevator The elevator that is used by the player
 	 */
-	public void displayFloorDispay(Player player, int floor, Elevator elevator)
+	public void displayFloorDispay(int slot, int floor, Elevator elevator)
 	{
-		//if the display already exists, update it with the new information
-		if (playersWithDisplay.containsKey(player))
+		FloorDisplay display = sessions.getFloorDisplay(slot);
+		
+		//every player keeps the same display after it was created once
+		if (display == null)
+		{
+			display = new FloorDisplay(sessions.getPlayer(slot));
+			sessions.setFloorDisplay(slot, display);
+		}
+		
+		display.elevator = elevator;
+		display.floor = floor;
+		display.floorCount = elevator.floorCount();
+		
+		//the new information is sent with the next tick
+		if (!display.dirty)
 		{
-			playersWithDisplay.get(player).setTitle("Floor " + floor + " of " + elevator.floorCount());
-			playersWithDisplay.get(player).setProgress((float)floor / elevator.floorCount());
+			display.dirty = true;
+			dirtyDisplays.add(display);
 		}
-		else //if not, create a new one
+		
+		//schedule the hiding of the BossBar, displays that are already shown keep their timer
+		if (!display.isScheduled())
+			hideTimers.schedule(display, displayTicks);
+	}
+	
+	/**
+	 * This method removes the display of a player, which is needed once the player leaves
+	 * @param player The player
+	 */
+	public void removeFloorDisplay(Player player)
+	{
+		int slot = sessions.getSlot(player);
+		FloorDisplay display = slot == PlayerSessions.NO_SLOT ? null : sessions.getFloorDisplay(slot);
+		
+		if (display == null)
+			return;
+		
+		sessions.setFloorDisplay(slot, null);
+		
+		hideTimers.cancel(display);
+		display.dirty = false;
+		
+		if (display.visible)
+			visibleDisplays--;
+		
+		if (display.bossBar != null)
+			display.bossBar.removeAll();
+	}
+	
+	/**
+	 * This method gets the amount of players currently seeing a floor display
+	 * @return The amount of displays
+	 */
+	public int getDisplayCount()
+	{
+		return visibleDisplays;
+	}
+	
+	/**
+	 * This method sends all changed displays and hides the displays that expired
+	 */
+	private void tick()
+	{
+		for (int i = 0; i < dirtyDisplays.size(); i++)
 		{
-			BossBar display = player.getServer().createBossBar("", BarColor.BLUE, BarStyle.SOLID);
-			display.setTitle("Floor " + floor + " of " + elevator.floorCount());
-			display.setProgress((float)floor / (float)elevator.floorCount());
-			display.addPlayer(player);
-			playersWithDisplay.put(player, display);
+			FloorDisplay display = dirtyDisplays.get(i);
 			
-			//schedule the hiding of the BossBar
-			startHideDisplayTimer(player, elevator);
+			//displays removed since they were changed don't need to be sent
+			if (display.dirty)
+				flushFloorDisplay(display);
 		}
+		
+		dirtyDisplays.clear();
+		hideTimers.tick(hideFloorDisplay);
 	}
 	
 	/**
-	 * This method is used to create the timer used to hide the GUI with a delay
-	 * @param player The player currently having a GUI element
-	 * @param elevator The elevator used by the player
+	 * This method sends the latest information of a display to its player
+	 * @param display The changed display
 	 */
-	private void startHideDisplayTimer(final Player player, final Elevator elevator)
+	private void flushFloorDisplay(FloorDisplay display)
 	{
-		//create a timer to remove the BossBar after a configured amount of time
-		new BukkitRunnable()
+		String title = getTitle(display.floor, display.floorCount);
+		double progress = (double)display.floor / display.floorCount;
+		display.dirty = false;
+		
+		if (display.bossBar == null)
 		{
-			@Override
-			public void run() 
-			{
-				hideFloorDisplay(player, elevator);
-			}
-		}.runTaskLater(plugin, displaySeconds * 20); // * 20 since a server tick is 0.05 seconds
+			display.bossBar = display.player.getServer().createBossBar(title, BarColor.BLUE, BarStyle.SOLID);
+			display.bossBar.setProgress(progress);
+			display.bossBar.addPlayer(display.player);
+		}
+		else
+		{
+			//only changed values are sent, the titles are cached so they can be compared directly
+			if (display.title != title)
+				display.bossBar.setTitle(title);
+			if (display.progress != progress)
+				display.bossBar.setProgress(progress);
+			if (!display.visible)
+				display.bossBar.setVisible(true);
+		}
+		
+		display.title = title;
+		display.progress = progress;
+		
+		if (!display.visible)
+		{
+			display.visible = true;
+			visibleDisplays++;
+		}
 	}
 	
 	/**
-	 * This method is used to remove the GUI element from a player
-	 * @param player The player currently having a GUI element
-	 * @param elevator The elevator used by the player
+	 * This method gets the title of a floor display
+	 * @param floor The floor the player is on
+	 * @param floorCount The amount of floors of the elevator
+	 * @return The cached title
 	 */
-	private void hideFloorDisplay(Player player, Elevator elevator)
+	private String getTitle(int floor, int floorCount)
+	{
+		long key = ((long)floor << 32) | (floorCount & 0xFFFFFFFFL);
+		String title = titles.get(key);
+		
+		if (title == null)
+		{
+			title = "Floor " + floor + " of " + floorCount;
+			titles.put(key, title);
+		}
+		
+		return title;
+	}
+	
+	/**
+	 * This method is used to hide the GUI element of a player once its timer expired
+	 * @param display The expired display
+	 */
+	private void hideFloorDisplay(FloorDisplay display)
 	{
 		//player is still on the elevator, keep display up
-		if (elevator.containsElevatorFloor(player.getLocation().getBlock().getRelative(BlockFace.DOWN)))
+		if (display.elevator.containsElevatorFloor(display.player.getLocation().getBlock().getRelative(BlockFace.DOWN)))
 		{
-			startHideDisplayTimer(player, elevator);
+			hideTimers.schedule(display, displayTicks);
+		}
+		else if (display.visible) //player left the elevator, hide display until the next ride
+		{
+			display.bossBar.setVisible(false);
+			display.visible = false;
+			visibleDisplays--;
+			
+			//hidden displays don't keep their elevator alive
+			display.elevator = null;
 		}
-		else //player left the elevator, clear display
+	}
+	
+	/**
+	 * This class is the floor display of a single player, scheduled in the timing wheel while it is shown
+	 */
+	static class FloorDisplay extends TimingWheel.Timer
+	{
+		private final Player player;
+		private BossBar bossBar;
+		private Elevator elevator;
+		private int floor;
+		private int floorCount;
+		private String title;
+		private double progress;
+		private boolean dirty;
+		private boolean visible;
+		
+		/**
+		 * Constructor for the creation of a display
+		 * @param player The player seeing the display
+		 */
+		FloorDisplay(Player player)
 		{
-			playersWithDisplay.get(player).removeAll();
-			playersWithDisplay.replace(player, null);
-			playersWithDisplay.remove(player);
+			this.player = player;
 		}
 	}
 }
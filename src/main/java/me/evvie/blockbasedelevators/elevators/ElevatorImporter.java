@@ -0,0 +1,575 @@
+package me.evvie.blockbasedelevators.elevators;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import org.bukkit.ChunkSnapshot;
+import org.bukkit.World;
+import org.bukkit.command.CommandSender;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import me.evvie.blockbasedelevators.util.CoordinateKeys;
+import me.evvie.blockbasedelevators.util.LongObjectHashMap;
+
+/**
+ * This class discovers all elevators of a world or of a single region file
+ * The chunks get loaded a few per tick to take their snapshots, which are scanned on a fork-join pool.
+ * Floors at the edge of a chunk are completed with the rim blocks found on the edges of the
+ * neighbouring chunks. Once every chunk is scanned, the found elevators get loaded in bulk.
+ */
+public class ElevatorImporter
+{
+	//ticks between two progress reports
+	private static final int PROGRESS_TICKS = 20 * 5;
+	
+	//maximum amount of snapshots waiting to be scanned, each one holds a copy of its chunk
+	private static final int MAX_PENDING_SNAPSHOTS = 256;
+	
+	//width of a region file in chunks
+	private static final int REGION_SIZE = 32;
+	
+	private final Plugin plugin;
+	private final ElevatorManager elevatorManager;
+	private final int chunksPerTick;
+	
+	//the running import, only one world gets imported at a time
+	private Import runningImport;
+	
+	/**
+	 * Constructor for the creation of the importer
+	 * @param plugin A reference to the main-class of this plug-in
+	 * @param elevatorManager The manager the found elevators get loaded into
+	 * @param chunksPerTick The maximum amount of chunks loaded for their snapshots per tick
+	 */
+	public ElevatorImporter(Plugin plugin, ElevatorManager elevatorManager, int chunksPerTick)
+	{
+		this.plugin = plugin;
+		this.elevatorManager = elevatorManager;
+		this.chunksPerTick = Math.max(1, chunksPerTick);
+	}
+	
+	/**
+	 * This method starts the import of a whole world or of a single region file
+	 * @param sender The receiver of the progress reports
+	 * @param world The world to import
+	 * @param region The coordinates of the region file, or null to import every region file of the world
+	 * @return True if the import started, false if an other import is still running
+	 */
+	public boolean startImport(CommandSender sender, World world, int[] region)
+	{
+		if (runningImport != null)
+			return false;
+		
+		runningImport = new Import(sender, world, region);
+		return true;
+	}
+	
+	/**
+	 * This method stops the running import without loading any of its results
+	 */
+	public void cancel()
+	{
+		if (runningImport != null)
+			runningImport.stop();
+	}
+	
+	/**
+	 * This class holds the state of a single import
+	 * Everything except the scans runs on the main thread.
+	 */
+	private class Import
+	{
+		private final CommandSender sender;
+		private final World world;
+		private final int minHeight;
+		private final int height;
+		private final long startTime = System.nanoTime();
+		
+		//chunks whose floors get imported, the chunks around a single region only contribute their edges
+		private final int minChunkX;
+		private final int minChunkZ;
+		private final int maxChunkX;
+		private final int maxChunkZ;
+		
+		private final ForkJoinPool pool = new ForkJoinPool();
+		private final BukkitTask task;
+		private final Future<long[]> chunkSearch;
+		private long[] chunkKeys;
+		private int nextChunk;
+		private int ticks;
+		
+		//scans finished by the pool, and the amount of chunks done including the skipped ones
+		private final Queue<ChunkScan> scans = new ConcurrentLinkedQueue<ChunkScan>();
+		private final AtomicInteger doneChunks = new AtomicInteger();
+		
+		//found elevators, floor candidates at chunk edges still need the rims of the neighbouring chunks
+		private final LongObjectHashMap<ElevatorStore.Record> columns = new LongObjectHashMap<ElevatorStore.Record>();
+		private final LongObjectHashMap<long[]> edgeColumns = new LongObjectHashMap<long[]>();
+		private final LongObjectHashMap<short[]> edgeRims = new LongObjectHashMap<short[]>();
+		
+		/**
+		 * Constructor for the creation of an import, which starts right away
+		 * @param sender The receiver of the progress reports
+		 * @param world The world to import
+		 * @param region The coordinates of the region file, or null to import every region file of the world
+		 */
+		Import(CommandSender sender, final World world, final int[] region)
+		{
+			this.sender = sender;
+			this.world = world;
+			minHeight = world.getMinHeight();
+			height = world.getMaxHeight() - minHeight;
+			
+			if (region == null)
+			{
+				minChunkX = Integer.MIN_VALUE;
+				minChunkZ = Integer.MIN_VALUE;
+				maxChunkX = Integer.MAX_VALUE;
+				maxChunkZ = Integer.MAX_VALUE;
+				chunkSearch = pool.submit(() -> findChunks(regionFolder(world)));
+			}
+			else
+			{
+				minChunkX = region[0] * REGION_SIZE;
+				minChunkZ = region[1] * REGION_SIZE;
+				maxChunkX = minChunkX + REGION_SIZE - 1;
+				maxChunkZ = minChunkZ + REGION_SIZE - 1;
+				chunkSearch = pool.submit(() -> surroundedRegion(minChunkX, minChunkZ));
+			}
+			
+			task = plugin.getServer().getScheduler().runTaskTimer(plugin, this::tick, 1, 1);
+		}
+		
+		/**
+		 * This method takes the snapshots of the next chunks, collects the finished scans and reports the progress
+		 */
+		private void tick()
+		{
+			if (plugin.getServer().getWorld(world.getUID()) == null)
+			{
+				sender.sendMessage("Elevator import of " + world.getName() + " stopped, the world got unloaded");
+				stop();
+				return;
+			}
+			
+			if (chunkKeys == null && !startScanning())
+				return;
+			
+			collectScans();
+			
+			//the pending snapshots are limited, so a slow pool can't fill the memory with chunk copies
+			for (int i = 0; i < chunksPerTick && nextChunk < chunkKeys.length && nextChunk - doneChunks.get() < MAX_PENDING_SNAPSHOTS; i++)
+				takeSnapshot(chunkKeys[nextChunk++]);
+			
+			if (doneChunks.get() == chunkKeys.length)
+			{
+				collectScans();
+				finish();
+			}
+			else if (++ticks % PROGRESS_TICKS == 0)
+			{
+				sender.sendMessage("Elevator import of " + world.getName() + ": " + doneChunks.get() + " of "
+						+ chunkKeys.length + " chunks scanned, " + (columns.size() + edgeColumns.size()) + " elevators found");
+			}
+		}
+		
+		/**
+		 * This method waits for the chunks to import
+		 * @return True if the chunks are known, false if the search is still running or failed
+		 */
+		private boolean startScanning()
+		{
+			if (!chunkSearch.isDone())
+				return false;
+			
+			try
+			{
+				chunkKeys = chunkSearch.get();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				stop();
+				return false;
+			}
+			catch (ExecutionException e)
+			{
+				plugin.getLogger().log(Level.WARNING, "Could not read the region files of world " + world.getName(), e.getCause());
+				sender.sendMessage("Elevator import of " + world.getName() + " failed, the region files could not be read");
+				stop();
+				return false;
+			}
+			
+			sender.sendMessage("Elevator import of " + world.getName() + ": scanning " + chunkKeys.length + " chunks");
+			return true;
+		}
+		
+		/**
+		 * This method takes the snapshot of a chunk and queues it for scanning
+		 * @param chunkKey The packed coordinates of the chunk
+		 */
+		private void takeSnapshot(long chunkKey)
+		{
+			int chunkX = CoordinateKeys.columnX(chunkKey);
+			int chunkZ = CoordinateKeys.columnZ(chunkKey);
+			boolean loaded = world.isChunkLoaded(chunkX, chunkZ);
+			
+			//chunks that were never generated are skipped instead of generated
+			if (!loaded && !world.loadChunk(chunkX, chunkZ, false))
+			{
+				doneChunks.incrementAndGet();
+				return;
+			}
+			
+			final ChunkSnapshot snapshot = world.getChunkAt(chunkX, chunkZ).getChunkSnapshot(false, false, false);
+			
+			if (!loaded)
+				world.unloadChunkRequest(chunkX, chunkZ);
+			
+			pool.execute(() ->
+			{
+				try
+				{
+					ChunkScan scan = scanChunk(snapshot);
+					
+					if (scan != null)
+						scans.add(scan);
+				}
+				catch (RuntimeException e)
+				{
+					plugin.getLogger().log(Level.WARNING, "Could not scan chunk " + snapshot.getX() + ", " + snapshot.getZ() + " for elevators", e);
+				}
+				finally
+				{
+					doneChunks.incrementAndGet();
+				}
+			});
+		}
+		
+		/**
+		 * This method scans the snapshot of a chunk for floors, it runs on the pool
+		 * @param snapshot The snapshot of the chunk
+		 * @return The found floors and edge rims, or null if the chunk contains neither
+		 */
+		private ChunkScan scanChunk(ChunkSnapshot snapshot)
+		{
+			ElevatorColumnScanner scanner = elevatorManager.getColumnScanner();
+			ChunkScan scan = new ChunkScan(CoordinateKeys.columnKey(snapshot.getX(), snapshot.getZ()));
+			scan.edgeRims = scanner.scanEdges(snapshot, minHeight, minHeight + height);
+			boolean imported = snapshot.getX() >= minChunkX && snapshot.getX() <= maxChunkX && snapshot.getZ() >= minChunkZ && snapshot.getZ() <= maxChunkZ;
+			
+			if (!imported || !scanner.mightContainFloors(snapshot))
+				return scan.edgeRims != null ? scan : null;
+			
+			for (int localZ = 0; localZ < 16; localZ++)
+			{
+				for (int localX = 0; localX < 16; localX++)
+				{
+					long[] candidates = scanner.scanColumnProfiles(snapshot, minHeight, minHeight + height, localX, localZ);
+					
+					if (candidates.length == 0)
+						continue;
+					
+					int x = (snapshot.getX() << 4) | localX;
+					int z = (snapshot.getZ() << 4) | localZ;
+					long key = CoordinateKeys.columnKey(x, z);
+					
+					//the scanner only checks the rim blocks inside of the chunk
+					if (localX == 0 || localX == 15 || localZ == 0 || localZ == 15)
+						scan.edgeColumns.put(key, candidates);
+					else
+						scan.columns.put(key, createRecord(x, z, candidates));
+				}
+			}
+			
+			return scan;
+		}
+		
+		/**
+		 * This method moves the finished scans into the results of the import
+		 */
+		private void collectScans()
+		{
+			ChunkScan scan;
+			
+			while ((scan = scans.poll()) != null)
+			{
+				scan.columns.forEach(columns::put);
+				scan.edgeColumns.forEach(edgeColumns::put);
+				
+				if (scan.edgeRims != null)
+					edgeRims.put(scan.chunkKey, scan.edgeRims);
+			}
+		}
+		
+		/**
+		 * This method completes the floors at the chunk edges and loads all found elevators
+		 */
+		private void finish()
+		{
+			edgeColumns.forEach((key, candidates) ->
+			{
+				int x = CoordinateKeys.columnX(key);
+				int z = CoordinateKeys.columnZ(key);
+				ElevatorStore.Record record = createRecord(x, z, checkEdgeRims(x, z, candidates));
+				
+				if (record != null)
+					columns.put(key, record);
+			});
+			
+			final long[] floorCount = new long[1];
+			columns.forEach((key, record) -> floorCount[0] += record.floorHeights.length);
+			
+			elevatorManager.importElevators(world, columns);
+			stop();
+			
+			sender.sendMessage("Elevator import of " + world.getName() + " finished: " + columns.size() + " elevators with " + floorCount[0]
+					+ " floors found in " + chunkKeys.length + " chunks, took " + (System.nanoTime() - startTime) / 1000000000L + "s");
+		}
+		
+		/**
+		 * This method creates the elevator of a column from its floor candidates
+		 * The profile of the lowest floor becomes the profile of the elevator, floors of other profiles are dropped.
+		 * @param x The x-coordinate of the column
+		 * @param z The z-coordinate of the column
+		 * @param candidates The floor candidates with the profiles they match
+		 * @return The elevator, or null if none of the candidates matches any profile
+		 */
+		private ElevatorStore.Record createRecord(int x, int z, long[] candidates)
+		{
+			int profile = ElevatorProfiles.NO_PROFILE;
+			int[] floorHeights = new int[candidates.length];
+			int count = 0;
+			
+			for (long candidate : candidates)
+			{
+				//like on the main thread, the first matching profile wins
+				int floorProfile = ElevatorProfiles.first(ElevatorColumnScanner.floorProfiles(candidate));
+				
+				if (floorProfile == ElevatorProfiles.NO_PROFILE)
+					continue;
+				
+				if (profile == ElevatorProfiles.NO_PROFILE)
+					profile = floorProfile;
+				
+				if (floorProfile == profile)
+					floorHeights[count++] = ElevatorColumnScanner.floorHeight(candidate);
+			}
+			
+			return count == 0 ? null : new ElevatorStore.Record(x, z, profile, Arrays.copyOf(floorHeights, count));
+		}
+		
+		/**
+		 * This method checks the rim blocks of the floors of an edge column, which lie in the neighbouring chunks
+		 * @param x The x-coordinate of the column
+		 * @param z The z-coordinate of the column
+		 * @param candidates The floor candidates with the profiles they might match
+		 * @return The floor candidates with the profiles they really match
+		 */
+		private long[] checkEdgeRims(int x, int z, long[] candidates)
+		{
+			long[] checked = new long[candidates.length];
+			
+			for (int i = 0; i < candidates.length; i++)
+			{
+				int y = ElevatorColumnScanner.floorHeight(candidates[i]);
+				int floorProfiles = 0;
+				
+				for (int remaining = ElevatorColumnScanner.floorProfiles(candidates[i]); remaining != 0; remaining &= remaining - 1)
+				{
+					int profile = Integer.numberOfTrailingZeros(remaining);
+					
+					if (hasEdgeRims(profile, x, y, z))
+						floorProfiles |= 1 << profile;
+				}
+				
+				checked[i] = ((long)y << 32) | (floorProfiles & 0xFFFFFFFFL);
+			}
+			
+			return checked;
+		}
+		
+		/**
+		 * This method checks the rim blocks of a floor that lie in the neighbouring chunks
+		 * @param profile The index of the floor's profile
+		 * @param x The x-coordinate of the floor center
+		 * @param y The y-coordinate of the floor center
+		 * @param z The z-coordinate of the floor center
+		 * @return True if every rim block the profile needs outside of the chunk is there, false otherwise
+		 */
+		private boolean hasEdgeRims(int profile, int x, int y, int z)
+		{
+			ElevatorProfile floorProfile = elevatorManager.getProfiles().get(profile);
+			int rim = elevatorManager.getProfiles().getRimIndex(profile);
+			int chunkX = x >> 4;
+			int chunkZ = z >> 4;
+			int localX = x & 15;
+			int localZ = z & 15;
+			
+			return (localZ != 0 || !floorProfile.hasRim(ElevatorProfile.SIDE_NORTH) || isRim(chunkX, chunkZ - 1, rim, ElevatorColumnScanner.EDGE_SOUTH, localX, y))
+					&& (localX != 15 || !floorProfile.hasRim(ElevatorProfile.SIDE_EAST) || isRim(chunkX + 1, chunkZ, rim, ElevatorColumnScanner.EDGE_WEST, localZ, y))
+					&& (localZ != 15 || !floorProfile.hasRim(ElevatorProfile.SIDE_SOUTH) || isRim(chunkX, chunkZ + 1, rim, ElevatorColumnScanner.EDGE_NORTH, localX, y))
+					&& (localX != 0 || !floorProfile.hasRim(ElevatorProfile.SIDE_WEST) || isRim(chunkX - 1, chunkZ, rim, ElevatorColumnScanner.EDGE_EAST, localZ, y));
+		}
+		
+		/**
+		 * This method checks if a block on the edge of a scanned chunk is made of a rim material
+		 * @param chunkX The x-coordinate of the chunk
+		 * @param chunkZ The z-coordinate of the chunk
+		 * @param rim The index of the rim material, see ElevatorProfiles.getRimIndex
+		 * @param edge The edge of the chunk
+		 * @param index The position of the block along the edge (0-15)
+		 * @param y The y-coordinate of the block
+		 * @return True if the block is made of the rim material, false if it isn't or the chunk wasn't scanned
+		 */
+		private boolean isRim(int chunkX, int chunkZ, int rim, int edge, int index, int y)
+		{
+			short[] rims = edgeRims.get(CoordinateKeys.columnKey(chunkX, chunkZ));
+			return rims != null && (rims[(rim * 4 + edge) * height + y - minHeight] & (1 << index)) != 0;
+		}
+		
+		/**
+		 * This method stops the import and releases its resources
+		 */
+		private void stop()
+		{
+			task.cancel();
+			pool.shutdownNow();
+			runningImport = null;
+		}
+	}
+	
+	/**
+	 * This class holds the results of a single chunk scan
+	 */
+	private static class ChunkScan
+	{
+		private final long chunkKey;
+		private final LongObjectHashMap<ElevatorStore.Record> columns = new LongObjectHashMap<ElevatorStore.Record>();
+		private final LongObjectHashMap<long[]> edgeColumns = new LongObjectHashMap<long[]>();
+		private short[] edgeRims;
+		
+		/**
+		 * Constructor for the creation of an empty scan
+		 * @param chunkKey The packed coordinates of the scanned chunk
+		 */
+		ChunkScan(long chunkKey)
+		{
+			this.chunkKey = chunkKey;
+		}
+	}
+	
+	/**
+	 * This method gets the folder containing the region files of a world
+	 * @param world The world
+	 * @return The region folder
+	 */
+	private static File regionFolder(World world)
+	{
+		switch (world.getEnvironment())
+		{
+			case NETHER:
+				return new File(world.getWorldFolder(), "DIM-1" + File.separator + "region");
+			case THE_END:
+				return new File(world.getWorldFolder(), "DIM1" + File.separator + "region");
+			default:
+				return new File(world.getWorldFolder(), "region");
+		}
+	}
+	
+	/**
+	 * This method finds all chunks stored in the region files of a world
+	 * @param regionFolder The region folder of the world
+	 * @return The packed coordinates of the stored chunks
+	 * @throws IOException If a region file can't be read
+	 */
+	private static long[] findChunks(File regionFolder) throws IOException
+	{
+		File[] files = regionFolder.listFiles();
+		long[] chunkKeys = new long[0];
+		int count = 0;
+		
+		if (files == null)
+			return chunkKeys;
+		
+		ByteBuffer header = ByteBuffer.allocate(REGION_SIZE * REGION_SIZE * 4);
+		
+		for (File file : files)
+		{
+			//region files are named r.<x>.<z>.mca
+			String[] parts = file.getName().split("\\.");
+			
+			if (parts.length != 4 || !parts[0].equals("r") || !parts[3].equals("mca"))
+				continue;
+			
+			int regionX;
+			int regionZ;
+			
+			try
+			{
+				regionX = Integer.parseInt(parts[1]);
+				regionZ = Integer.parseInt(parts[2]);
+			}
+			catch (NumberFormatException e)
+			{
+				continue;
+			}
+			
+			//the header starts with the location of every chunk, which is zero for chunks that don't exist
+			header.clear();
+			
+			try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+			{
+				int read = 0;
+				
+				while (header.hasRemaining() && read >= 0)
+					read = channel.read(header);
+			}
+			
+			header.flip();
+			
+			for (int i = 0; header.remaining() >= 4; i++)
+			{
+				if (header.getInt() == 0)
+					continue;
+				
+				if (count == chunkKeys.length)
+					chunkKeys = Arrays.copyOf(chunkKeys, Math.max(1024, count * 2));
+				
+				chunkKeys[count++] = CoordinateKeys.columnKey(regionX * REGION_SIZE + (i % REGION_SIZE), regionZ * REGION_SIZE + (i / REGION_SIZE));
+			}
+		}
+		
+		return Arrays.copyOf(chunkKeys, count);
+	}
+	
+	/**
+	 * This method lists the chunks of a region and the ring of chunks around it
+	 * The surrounding chunks are needed for the rim blocks of the floors at the region's border.
+	 * @param minChunkX The x-coordinate of the region's first chunk
+	 * @param minChunkZ The z-coordinate of the region's first chunk
+	 * @return The packed coordinates of the chunks
+	 */
+	private static long[] surroundedRegion(int minChunkX, int minChunkZ)
+	{
+		int width = REGION_SIZE + 2;
+		long[] chunkKeys = new long[width * width];
+		
+		for (int i = 0; i < chunkKeys.length; i++)
+			chunkKeys[i] = CoordinateKeys.columnKey(minChunkX - 1 + (i % width), minChunkZ - 1 + (i / width));
+		
+		return chunkKeys;
+	}
+}
@@ -1,19 +1,34 @@
 package me.evvie.blockbasedelevators.elevators;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import org.bukkit.Location;
-import org.bukkit.Particle;
-import org.bukkit.Sound;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockExplodeEvent;
+import org.bukkit.event.block.BlockPistonExtendEvent;
+import org.bukkit.event.block.BlockPistonRetractEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
+import org.bukkit.event.entity.EntityExplodeEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.player.PlayerToggleSneakEvent;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.event.world.ChunkUnloadEvent;
+import org.bukkit.event.world.WorldLoadEvent;
+import org.bukkit.event.world.WorldUnloadEvent;
+import org.bukkit.plugin.Plugin;
 
-import me.evvie.blockbasedelevators.BlockbasedElevators;
 import me.evvie.blockbasedelevators.events.PlayerJumpEvent;
+import me.evvie.blockbasedelevators.metrics.ElevatorMetrics;
+import me.evvie.blockbasedelevators.util.TokenBucket;
 
 /**
  * This enum is used to manage the elevator directions
@@ -29,23 +44,48 @@ enum Direction
  */
 public class ElevatorListener implements Listener
 {
+	private final Plugin plugin;
 	private final ElevatorManager elevatorManager;
 	private final ElevatorFloorDisplayManager elevatorDisplayManager;
+	private final TeleportEffects teleportEffects;
 	private final boolean displayFloorInfo;
+	private final ElevatorMetrics metrics;
+	private final PlayerSessions sessions;
+	
+	//limits of the teleports per player and per elevator, null if disabled
+	private final TokenBucket playerTeleportLimit;
+	private final TokenBucket elevatorTeleportLimit;
+	private long limitedTeleports;
 	
 	/**
 	 * Constructor to create the ElevatorListener with all needed information
 	 * @param plugin Reference to the main-class of this plug-in
+	 * @param elevatorManager The manager of all known elevators
+	 * @param metrics The metrics the teleports get recorded in
+	 * @param sessions The sessions of the online players
 	 */
-	public ElevatorListener(BlockbasedElevators plugin)
+	public ElevatorListener(Plugin plugin, ElevatorManager elevatorManager, ElevatorMetrics metrics, PlayerSessions sessions)
 	{
-		//create the ElevatorManager using the configuration data
 		FileConfiguration config = plugin.getConfig();
-		elevatorManager = new ElevatorManager(config.getString("ElevatorCenterBlockMaterial"), config.getString("ElevatorRimMaterial"));
+		this.plugin = plugin;
+		this.elevatorManager = elevatorManager;
+		this.metrics = metrics;
+		this.sessions = sessions;
 		displayFloorInfo = config.getBoolean("DisplayFloorOnTeleport");
 		
 		//prepare the ElevatorFloorDisplayManager
-		elevatorDisplayManager = new ElevatorFloorDisplayManager(plugin, config.getInt("DisplayDuration"));
+		elevatorDisplayManager = new ElevatorFloorDisplayManager(plugin, config.getInt("DisplayDuration"), sessions);
+		metrics.registerGauge("Floor displays", elevatorDisplayManager::getDisplayCount);
+		
+		//prepare the budgeted teleport effects
+		teleportEffects = new TeleportEffects(plugin, config.getInt("EffectBudgetPerTick"), config.getInt("EffectBudgetPerChunk"), metrics);
+		
+		//prepare the teleport limits, a rate of 0 disables a limit
+		double playerRate = config.getDouble("TeleportRate");
+		double elevatorRate = config.getDouble("ElevatorTeleportRate");
+		playerTeleportLimit = playerRate > 0 ? new TokenBucket(playerRate, config.getInt("TeleportBurst")) : null;
+		elevatorTeleportLimit = elevatorRate > 0 ? new TokenBucket(elevatorRate, config.getInt("ElevatorTeleportBurst")) : null;
+		metrics.registerGauge("Rate limited teleports", () -> limitedTeleports);
 	}
 	
 	/**
@@ -56,12 +96,30 @@ public class ElevatorListener implements Listener
 	public void onPlayerToggleSneakEvent(PlayerToggleSneakEvent event)
 	{
 		Player player = event.getPlayer();
-		Block block = player.getLocation().getBlock().getRelative(BlockFace.DOWN);
+		Location location = player.getLocation();
+		
+		//player toggles out of the sneaking mode
+		if (player.isSneaking())
+			return;
+		
+		int slot = sessions.getSlot(player);
+		
+		//players out of teleports are dropped before any block gets looked at
+		if (!hasTeleportToken(slot))
+			return;
+		
+		Block block = location.getBlock().getRelative(BlockFace.DOWN);
+		
+		//player is nowhere near an elevator
+		if (!elevatorManager.isElevatorColumn(block))
+			return;
 		
 		//player toggles into the sneaking mode and is standing on a valid elevator
-		if (!player.isSneaking() && elevatorManager.checkForValidElevator(block))
+		int profile = elevatorManager.matchFloor(block);
+		
+		if (profile != ElevatorProfiles.NO_PROFILE)
 		{
-			executeElevatorTeleport(Direction.DOWN, player, block);
+			executeElevatorTeleport(Direction.DOWN, player, slot, block, profile);
 		}
 	}
 	
@@ -73,12 +131,25 @@ public class ElevatorListener implements Listener
 	public void onPlayerJumpEvent(PlayerJumpEvent event)
 	{
 		Player player = event.getPlayer();
-		Block block = player.getLocation().getBlock().getRelative(BlockFace.DOWN);
+		Location location = player.getLocation();
+		int slot = sessions.getSlot(player);
+		
+		//players out of teleports are dropped before any block gets looked at
+		if (!hasTeleportToken(slot))
+			return;
+		
+		Block block = location.getBlock().getRelative(BlockFace.DOWN);
+		
+		//player is nowhere near an elevator
+		if (!elevatorManager.isElevatorColumn(block))
+			return;
 		
 		//player is standing on a valid elevator
-		if (elevatorManager.checkForValidElevator(block))
+		int profile = elevatorManager.matchFloor(block);
+		
+		if (profile != ElevatorProfiles.NO_PROFILE)
 		{
-			executeElevatorTeleport(Direction.UP, player, block);
+			executeElevatorTeleport(Direction.UP, player, slot, block, profile);
 		}
 	}
 	
@@ -90,9 +161,244 @@ public class ElevatorListener implements Listener
 	public void onBlockBreak(BlockBreakEvent event)
 	{
 		Block block = event.getBlock();
+		elevatorManager.invalidateFloorChecks(block);
 		
 		//make sure to remove floors from elevators if the block was part of one
 		elevatorManager.checkAndRemoveElevatorFloor(block);
+		
+		//the block is only gone after the event, so landings above floors are read in the next tick
+		updateLandingsLater(Collections.singletonList(block));
+	}
+	
+	/**
+	 * The event-handler used to listen for BlockPlaceEvents
+	 * @param event BlockPlaceEvent
+	 */
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onBlockPlace(BlockPlaceEvent event)
+	{
+		Block block = event.getBlockPlaced();
+		elevatorManager.invalidateFloorChecks(block);
+		
+		//register floors as soon as they are completed, instead of waiting for their first use
+		elevatorManager.checkAndAddElevatorFloor(block);
+		
+		//a block placed above a floor can block its landing
+		elevatorManager.updateLandings(block);
+	}
+	
+	/**
+	 * The event-handler used to listen for BlockExplodeEvents
+	 * @param event BlockExplodeEvent
+	 */
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onBlockExplode(BlockExplodeEvent event)
+	{
+		//floors destroyed by explosions get removed by the sweeper, the checks only need to read them again
+		for (Block block : event.blockList())
+			elevatorManager.invalidateFloorChecks(block);
+		
+		updateLandingsLater(event.blockList());
+	}
+	
+	/**
+	 * The event-handler used to listen for EntityExplodeEvents
+	 * @param event EntityExplodeEvent
+	 */
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onEntityExplode(EntityExplodeEvent event)
+	{
+		for (Block block : event.blockList())
+			elevatorManager.invalidateFloorChecks(block);
+		
+		updateLandingsLater(event.blockList());
+	}
+	
+	/**
+	 * The event-handler used to listen for BlockPistonExtendEvents
+	 * @param event BlockPistonExtendEvent
+	 */
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onPistonExtend(BlockPistonExtendEvent event)
+	{
+		invalidateMovedBlocks(event.getBlock(), event.getBlocks(), event.getDirection());
+	}
+	
+	/**
+	 * The event-handler used to listen for BlockPistonRetractEvents
+	 * @param event BlockPistonRetractEvent
+	 */
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onPistonRetract(BlockPistonRetractEvent event)
+	{
+		invalidateMovedBlocks(event.getBlock(), event.getBlocks(), event.getDirection());
+	}
+	
+	/**
+	 * The event-handler used to listen for PlayerQuitEvents
+	 * @param event PlayerQuitEvent
+	 */
+	@EventHandler
+	public void onPlayerQuit(PlayerQuitEvent event)
+	{
+		//the pooled floor display is not needed anymore
+		elevatorDisplayManager.removeFloorDisplay(event.getPlayer());
+	}
+	
+	/**
+	 * The event-handler used to listen for ChunkLoadEvents
+	 * @param event ChunkLoadEvent
+	 */
+	@EventHandler
+	public void onChunkLoad(ChunkLoadEvent event)
+	{
+		elevatorManager.classifyChunk(event.getChunk());
+	}
+	
+	/**
+	 * The event-handler used to listen for ChunkUnloadEvents
+	 * @param event ChunkUnloadEvent
+	 */
+	@EventHandler
+	public void onChunkUnload(ChunkUnloadEvent event)
+	{
+		elevatorManager.forgetChunk(event.getChunk());
+	}
+	
+	/**
+	 * The event-handler used to listen for WorldLoadEvents
+	 * @param event WorldLoadEvent
+	 */
+	@EventHandler
+	public void onWorldLoad(WorldLoadEvent event)
+	{
+		//worlds loaded after the start-up get their stored elevators as well
+		elevatorManager.loadElevators(event.getWorld());
+	}
+	
+	/**
+	 * The event-handler used to listen for WorldUnloadEvents
+	 * @param event WorldUnloadEvent
+	 */
+	@EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+	public void onWorldUnload(WorldUnloadEvent event)
+	{
+		//nothing of an unloaded world is kept in memory
+		elevatorManager.unloadElevators(event.getWorld());
+	}
+	
+	/**
+	 * This method makes the floor checks stale that the blocks moved by a piston might affect
+	 * Both neighbours along the piston are changed, since a block leaves one position and enters the next.
+	 * @param piston The piston
+	 * @param blocks The moved blocks
+	 * @param direction The direction of the piston
+	 */
+	private void invalidateMovedBlocks(Block piston, List<Block> blocks, BlockFace direction)
+	{
+		//the piston head appears in front of the piston or disappears from there
+		List<Block> changedBlocks = new ArrayList<Block>(blocks.size() * 3 + 1);
+		changedBlocks.add(piston.getRelative(direction));
+		elevatorManager.invalidateFloorChecks(piston.getRelative(direction));
+		
+		for (Block block : blocks)
+		{
+			elevatorManager.invalidateFloorChecks(block);
+			elevatorManager.invalidateFloorChecks(block.getRelative(direction));
+			elevatorManager.invalidateFloorChecks(block.getRelative(direction.getOppositeFace()));
+			changedBlocks.add(block);
+			changedBlocks.add(block.getRelative(direction));
+			changedBlocks.add(block.getRelative(direction.getOppositeFace()));
+		}
+		
+		//the blocks only move after the event
+		updateLandingsLater(changedBlocks);
+	}
+	
+	/**
+	 * This method reads the landings above the known floors a change might affect again in the next tick
+	 * Most changed blocks aren't above any known floor, those get filtered out without reading blocks or scheduling a task.
+	 * @param blocks The blocks changed after the current event
+	 */
+	private void updateLandingsLater(List<Block> blocks)
+	{
+		List<Block> landingBlocks = null;
+		
+		for (Block block : blocks)
+		{
+			if (!elevatorManager.affectsLanding(block))
+				continue;
+			
+			if (landingBlocks == null)
+				landingBlocks = new ArrayList<Block>();
+			
+			landingBlocks.add(block);
+		}
+		
+		if (landingBlocks == null)
+			return;
+		
+		final List<Block> changedLandings = landingBlocks;
+		
+		plugin.getServer().getScheduler().runTask(plugin, () ->
+		{
+			for (Block block : changedLandings)
+				elevatorManager.updateLandings(block);
+		});
+	}
+	
+	/**
+	 * This method checks if the teleport limit of a player would allow a teleport, without taking a token
+	 * Players out of tokens get dropped before any block lookup, the tokens are only taken once the teleport resolved.
+	 * @param slot The session slot of the player
+	 * @return True if the player might teleport, false otherwise
+	 */
+	private boolean hasTeleportToken(int slot)
+	{
+		//the player might not even stand on an elevator, so the drop isn't counted as a limited teleport
+		return playerTeleportLimit == null || slot == PlayerSessions.NO_SLOT || playerTeleportLimit.hasToken(sessions.getTeleportBucket(slot), TokenBucket.now());
+	}
+	
+	/**
+	 * This method takes a token from the teleport limits of a player and of the elevator the player stands in
+	 * Tokens are only taken if both limits allow the teleport. Players without a session are only limited by the elevator.
+	 * @param slot The session slot of the player
+	 * @param elevator The elevator the player teleports in
+	 * @return True if the teleport has to be dropped, false otherwise
+	 */
+	private boolean isRateLimited(int slot, Elevator elevator)
+	{
+		long now = TokenBucket.now();
+		long playerBucket = TokenBucket.DENIED;
+		
+		if (playerTeleportLimit != null && slot != PlayerSessions.NO_SLOT)
+		{
+			playerBucket = playerTeleportLimit.take(sessions.getTeleportBucket(slot), now);
+			
+			if (playerBucket == TokenBucket.DENIED)
+			{
+				limitedTeleports++;
+				return true;
+			}
+		}
+		
+		if (elevatorTeleportLimit != null)
+		{
+			long elevatorBucket = elevatorTeleportLimit.take(elevator.getTeleportBucket(), now);
+			
+			if (elevatorBucket == TokenBucket.DENIED)
+			{
+				limitedTeleports++;
+				return true;
+			}
+			
+			elevator.setTeleportBucket(elevatorBucket);
+		}
+		
+		if (playerBucket != TokenBucket.DENIED)
+			sessions.setTeleportBucket(slot, playerBucket);
+		
+		return false;
 	}
 	
 	/**
@@ -100,16 +406,27 @@ public class ElevatorListener implements Listener
 	 * elevator object itself
 	 * @param direction The direction the player wants to be teleported
 	 * @param player The player that wants to teleport
+	 * @param slot The session slot of the player
 	 * @param start The current floor of the elevator
+	 * @param profile The index of the current floor's profile
 	 */
-	private void executeElevatorTeleport(Direction direction, Player player, Block start)
+	private void executeElevatorTeleport(Direction direction, Player player, int slot, Block start, int profile)
 	{
+		long startTime = System.nanoTime();
+		
 		//check and get the used elevator
-		Elevator elevator = elevatorManager.elevatorExists(start);
+		Elevator elevator = elevatorManager.elevatorExists(start, profile);
 		
 		//create a new one, if there wasn't one already
 		if (elevator == null)
-			elevator = elevatorManager.createElevator(start);
+			elevator = elevatorManager.createElevator(start, profile);
+		
+		//the column belongs to an elevator of another profile
+		if (elevator == null)
+			return;
+		
+		//let the sweeper check the used elevator soon
+		elevatorManager.markElevatorUsed(elevator);
 		
 		Block targetFloor = null;
 		
@@ -130,11 +447,25 @@ public class ElevatorListener implements Listener
 		if (targetFloor == null)
 			return;
 		
+		//the profile of the elevator can limit the direction and the distance of a teleport
+		if (!elevatorManager.getProfiles().get(profile).allowsTravel(direction, Math.abs(targetFloor.getY() - start.getY())))
+			return;
+		
+		//spammed teleports are dropped, tokens are only taken for teleports that would happen otherwise
+		if (isRateLimited(slot, elevator))
+			return;
+		
 		//execute the teleport
 		teleportPlayerToFloor(player, targetFloor);
 		
-		//display floor information
-		displayFloorInformation(player, elevator.getFloorNumber(targetFloor), elevator);
+		//remember the teleport and display floor information, players without a session get neither
+		if (slot != PlayerSessions.NO_SLOT)
+		{
+			sessions.recordTeleport(slot, targetFloor.getX(), targetFloor.getY(), targetFloor.getZ());
+			displayFloorInformation(slot, elevator.getFloorNumber(targetFloor), elevator);
+		}
+		
+		metrics.getTeleports().recordSince(startTime);
 	}
 	
 	/**
@@ -146,32 +477,31 @@ public class ElevatorListener implements Listener
 	{
 		//adjust player location to fit the target location height
 		//this way optional data like rotation stay intact
-		Location targetLocation = player.getLocation();
-		targetLocation.setY(target.getLocation().getY() + 1);
+		Location startLocation = player.getLocation();
+		Location targetLocation = startLocation.clone();
+		targetLocation.setY(target.getY() + 1);
 		
-		//teleport the player while adding some effects and sound as feedback
-		player.getWorld().spawnParticle(Particle.GLOW, player.getLocation().getX(), player.getLocation().getY() + 1, player.getLocation().getZ(), 10, 0.5, 1, 0.5);
-		player.getWorld().playSound(player.getLocation(), Sound.ENTITY_ENDERMAN_TELEPORT, 1, 1);
+		//teleport the player right away, the effects and sound used as feedback follow within the budget
 		player.teleport(targetLocation);
-		player.getWorld().spawnParticle(Particle.GLOW, targetLocation.getX(), targetLocation.getY() + 1, targetLocation.getZ(), 10, 0.5, 1, 0.5);
+		teleportEffects.playTeleportEffects(startLocation, targetLocation);
 	}
 	
 	/**
 	 * This method is used to display the current floor to a player after telporting to a new one
-	 * @param player The player that needs the GUI element
+	 * @param slot The session slot of the player that needs the GUI element
 	 * @param targetFloor The new floor number
 	 * @param elevator The elevator currently used by the player
 	 */
-	private void displayFloorInformation(Player player, int targetFloor, Elevator elevator)
+	private void displayFloorInformation(int slot, int targetFloor, Elevator elevator)
 	{
 		if (displayFloorInfo)
 		{
 			//old floor info using big on-screen text
 			//player.resetTitle();
 			//player.sendTitle("Floor " + targetFloor + " of " + floorCount, null, 10, 40, 10);
-
+			
 			//display floor information using the BossBar GUI
-			elevatorDisplayManager.displayFloorDispay(player, targetFloor, elevator);
+			elevatorDisplayManager.displayFloorDispay(slot, targetFloor, elevator);
 		}
 	}
 }
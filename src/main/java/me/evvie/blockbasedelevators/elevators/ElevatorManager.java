@@ -1,89 +1,613 @@
 package me.evvie.blockbasedelevators.elevators;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
+import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
 import org.bukkit.Material;
 import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
+import org.bukkit.block.data.BlockData;
+
+import me.evvie.blockbasedelevators.metrics.ElevatorMetrics;
+import me.evvie.blockbasedelevators.util.CoordinateKeys;
+import me.evvie.blockbasedelevators.util.LongHashSet;
+import me.evvie.blockbasedelevators.util.LongObjectHashMap;
 
 /**
  * This class manages all elevators that get created during the runtime of the server
+ * Known elevators and their floors can be read from any thread without locking. Changing them, 
+ * the column bitmaps and the journal are left to the main thread.
  */
 public class ElevatorManager
 {
-	//materials that make up an valid elevator floor
-	private final Material elevatorCenterMat;
-	private final Material elevatorRimMat;
+	//compiled profiles that make up an valid elevator floor, and their center materials as block data
+	//the block data is null if a center material has more than one block state
+	private final ElevatorProfiles profiles;
+	private final BlockData[] centerData;
+	
+	//all known elevators since server start, indexed by world and packed column coordinates
+	//copy-on-write buckets per chunk, so lookups from other threads never block
+	private final ElevatorRegistry cachedElevators = new ElevatorRegistry();
+	
+	//floors of the elevators in unloaded chunks, kept without any elevator objects
+	private final UnloadedElevators unloadedElevators = new UnloadedElevators();
+	
+	//persistent storage of the known elevators
+	private final ElevatorStore elevatorStore;
+	
+	//scanner used to find the floors of a column in a chunk snapshot
+	private final ElevatorColumnScanner columnScanner;
+	
+	//bitmaps of the columns containing floors, used to reject most checks without reading blocks
+	private final ElevatorColumnIndex columnIndex = new ElevatorColumnIndex();
+	
+	//results of recent floor checks, stale once a block of their chunk changes
+	private final ElevatorValidityCache validityCache = new ElevatorValidityCache();
+	
+	//runtime metrics of the checks and rescans
+	private final ElevatorMetrics metrics;
+	
+	//faces of the sides of a floor, in the order of the profile shapes
+	private static final BlockFace[] SIDE_FACES = { BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST };
+	
+	//elevators used since the sweeper last checked them, bounded and without duplicate columns
+	private static final int MAX_USED_ELEVATORS = 256;
+	private final ArrayDeque<Elevator> usedElevators = new ArrayDeque<Elevator>();
+	private final LongHashSet usedColumns = new LongHashSet();
 	
-	//list of all known elevators since server start
-	private List<Elevator> cachedElevators = new ArrayList<Elevator>();
+	//scheduler running the full scans of new elevators, or null to scan them right away
+	private RescanScheduler rescanScheduler;
+	
+	//heights above and below a used floor that get probed until the full scan of a new elevator lands
+	//floors further away can't be reached before that scan, which takes at least until the next tick
+	private static final int PROBE_DISTANCE = 32;
 	
 	/**
 	 * Constructor for the creation of the ElevatorManager
-	 * @param centerMatName The material that makes up the center of an elevator
-	 * @param rimMatName The material that makes up the rim of an elevator
+	 * @param profiles The compiled elevator profiles
+	 * @param elevatorStore The storage used to persist the known elevators
+	 * @param metrics The metrics the checks and rescans get recorded in
 	 */
-	public ElevatorManager(String centerMatName, String rimMatName)
+	public ElevatorManager(ElevatorProfiles profiles, ElevatorStore elevatorStore, ElevatorMetrics metrics)
 	{
-		//parse the configuration material strings to materials
-		elevatorCenterMat = Material.getMaterial(centerMatName.toUpperCase());
-		elevatorRimMat = Material.getMaterial(rimMatName.toUpperCase());
+		this.profiles = profiles;
+		centerData = ElevatorColumnScanner.createPaletteData(profiles.getCenterMaterials());
+		this.elevatorStore = elevatorStore;
+		columnScanner = new ElevatorColumnScanner(profiles);
+		this.metrics = metrics;
+		
+		metrics.registerGauge("Elevators", this::getElevatorCount);
+		metrics.registerGauge("Floors", this::getFloorCount);
+		metrics.registerGauge("Unloaded elevators", unloadedElevators::size);
+		metrics.registerGauge("Cached floor checks", validityCache::getHits);
 	}
 	
 	/**
 	 * This method checks if the given block is the center of an valid elevator floor
+	 * Floors checked before are answered without reading any blocks, as long as no block of their chunk changed.
 	 * @param centerBlock The potential center of an elevator
 	 * @return True if the block is the center of an valid elevator floor, false otherwise
 	 */
 	public boolean checkForValidElevator(Block centerBlock)
 	{
-		if (centerBlock.getType() != elevatorCenterMat) return false;
-		if (centerBlock.getRelative(BlockFace.NORTH).getType() != elevatorRimMat) return false;
-		if (centerBlock.getRelative(BlockFace.EAST).getType() != elevatorRimMat) return false;
-		if (centerBlock.getRelative(BlockFace.SOUTH).getType() != elevatorRimMat) return false;
-		if (centerBlock.getRelative(BlockFace.WEST).getType() != elevatorRimMat) return false;
+		return matchFloor(centerBlock) != ElevatorProfiles.NO_PROFILE;
+	}
+	
+	/**
+	 * This method finds the profile of the elevator floor a block is the center of
+	 * Floors checked before are answered without reading any blocks, as long as no block of their chunk changed.
+	 * @param centerBlock The potential center of an elevator
+	 * @return The index of the floor's profile, or ElevatorProfiles.NO_PROFILE if the block is no floor center
+	 */
+	public int matchFloor(Block centerBlock)
+	{
+		return checkFloor(centerBlock, true);
+	}
+	
+	/**
+	 * This method gets the compiled elevator profiles
+	 * @return The profiles
+	 */
+	public ElevatorProfiles getProfiles()
+	{
+		return profiles;
+	}
+	
+	/**
+	 * This method makes the remembered floor checks stale that a changed block might affect
+	 * It needs to be called for every changed block, before the next floor check.
+	 * @param block The changed block
+	 */
+	public void invalidateFloorChecks(Block block)
+	{
+		validityCache.invalidate(block.getWorld().getUID(), block.getX(), block.getZ());
+	}
+	
+	/**
+	 * This method gets the amount of known elevators in the loaded chunks of all worlds
+	 * @return The amount of known elevators
+	 */
+	public long getElevatorCount()
+	{
+		long count = 0;
+		
+		for (UUID worldId : cachedElevators.getWorlds())
+			count += cachedElevators.size(worldId);
+		
+		return count;
+	}
+	
+	/**
+	 * This method gets the amount of known floors of all elevators in the loaded chunks of all worlds
+	 * @return The amount of known floors
+	 */
+	public long getFloorCount()
+	{
+		final long[] count = new long[1];
+		
+		for (UUID worldId : cachedElevators.getWorlds())
+			cachedElevators.forEach(worldId, (key, elevator) -> count[0] += elevator.floorCount());
+		
+		return count[0];
+	}
+	
+	/**
+	 * This method matches a potential elevator floor against the profiles and remembers the result
+	 * @param centerBlock The potential center of an elevator
+	 * @param useCache True to use a remembered result, false to always read the blocks
+	 * @return The index of the floor's profile, or ElevatorProfiles.NO_PROFILE if the block is no floor center
+	 */
+	private int checkFloor(Block centerBlock, boolean useCache)
+	{
+		long start = System.nanoTime();
+		UUID worldId = centerBlock.getWorld().getUID();
+		int x = centerBlock.getX();
+		int y = centerBlock.getY();
+		int z = centerBlock.getZ();
+		
+		int profile = useCache ? validityCache.get(worldId, x, y, z) : ElevatorValidityCache.UNKNOWN;
+		
+		if (profile == ElevatorValidityCache.UNKNOWN)
+		{
+			//a single pass over the floor's blocks checks all profiles at once
+			profile = profiles.match(centerBlock);
+			validityCache.put(worldId, x, y, z, profile);
+		}
+		
+		metrics.getValidityChecks().recordSince(start);
+		return profile;
+	}
+	
+	/**
+	 * This method checks if a block can be the center of an elevator floor, reading at most the block itself
+	 * Columns the bitmap rejects still get the material of the block checked, since floors can appear 
+	 * without any event, for example by world editors, commands or pistons. Finding a center block there 
+	 * marks its chunk as incomplete again.
+	 * @param centerBlock The potential center of an elevator
+	 * @return False if the block can't be the center of a floor, true if it might be one
+	 */
+	public boolean isElevatorColumn(Block centerBlock)
+	{
+		UUID worldId = centerBlock.getWorld().getUID();
+		
+		if (columnIndex.mightContainFloors(worldId, centerBlock.getX(), centerBlock.getZ()))
+			return true;
+		
+		if (profiles.getCenterProfiles(centerBlock.getType()) == 0)
+			return false;
+		
+		columnIndex.setChunkComplete(worldId, centerBlock.getX() >> 4, centerBlock.getZ() >> 4, false);
 		return true;
 	}
 	
+	/**
+	 * This method brings back the elevators of a loaded chunk and checks if it can contain unknown elevator floors
+	 * @param chunk The loaded chunk
+	 */
+	public void classifyChunk(Chunk chunk)
+	{
+		final UUID worldId = chunk.getWorld().getUID();
+		final LongObjectHashMap<Elevator> chunkElevators = new LongObjectHashMap<Elevator>();
+		
+		unloadedElevators.take(worldId, chunk.getX(), chunk.getZ(), (x, z, profile, floorHeights) ->
+		{
+			Elevator elevator = new Elevator();
+			elevator.create(worldId, x, z, profile);
+			elevator.setFloorHeights(floorHeights, chunk.getWorld());
+			chunkElevators.put(CoordinateKeys.columnKey(x, z), elevator);
+			updateColumn(elevator);
+		});
+		
+		if (!chunkElevators.isEmpty())
+			cachedElevators.putAll(worldId, chunkElevators);
+		
+		//without any center blocks, every floor of the chunk is known, since there are none
+		//floors built afterwards get registered by the BlockPlaceEvent, others once they are used
+		boolean containsCenters = centerData == null;
+		
+		for (int i = 0; !containsCenters && i < centerData.length; i++)
+			containsCenters = chunk.contains(centerData[i]);
+		
+		columnIndex.setChunkComplete(chunk.getWorld().getUID(), chunk.getX(), chunk.getZ(), !containsCenters);
+	}
+	
+	/**
+	 * This method moves the elevators of an unloaded chunk out of the index of known elevators
+	 * @param chunk The unloaded chunk
+	 */
+	public void forgetChunk(Chunk chunk)
+	{
+		final UUID worldId = chunk.getWorld().getUID();
+		
+		//only columns containing floors can hold elevators, elevators without floors never stay in the index
+		long[] columnKeys = columnIndex.removeChunk(worldId, chunk.getX(), chunk.getZ());
+		validityCache.removeChunk(worldId, chunk.getX(), chunk.getZ());
+		
+		cachedElevators.removeAll(worldId, columnKeys, (key, elevator) ->
+			unloadedElevators.add(worldId, elevator.getX(), elevator.getZ(), elevator.getProfile(), elevator.getFloorHeights()));
+	}
+	
+	/**
+	 * This method writes a final snapshot of an unloaded world and forgets all of its elevators
+	 * @param world The unloaded world
+	 */
+	public void unloadElevators(World world)
+	{
+		UUID worldId = world.getUID();
+		saveElevators(worldId);
+		
+		cachedElevators.removeWorld(worldId);
+		unloadedElevators.removeWorld(worldId);
+		columnIndex.removeWorld(worldId);
+		validityCache.removeWorld(worldId);
+		
+		if (rescanScheduler != null)
+			rescanScheduler.removeWorld(worldId);
+	}
+	
 	/**
 	 * This method checks if a block is part of an already existing elevator. If an elevator  
 	 * is found it gets checked for the block. Should the block be missing from the elevator 
 	 * it gets added to it. Blocks used to call this method need to be a valid elevator floor.
 	 * @param block A block that is a valid elevator floor center
-	 * @return The existing elevator, or null if no elevator containing this block exists
+	 * @param profile The index of the floor's profile
+	 * @return The existing elevator, or null if no elevator of the floor's profile exists in the column
 	 */
-	public Elevator elevatorExists(Block block)
+	public Elevator elevatorExists(Block block, int profile)
 	{
-		for (int i = 0; i < cachedElevators.size(); i++)
+		Elevator elevator = getElevator(block);
+		
+		//floors of other profiles are not connected to the elevator of the column
+		if (elevator == null || elevator.getProfile() != profile)
+			return null;
+		
+		if (!elevator.containsElevatorFloor(block))
 		{
-			if (cachedElevators.get(i).exists(block))
-			{
-				if(cachedElevators.get(i).containsElevatorFloor(block))
-					return cachedElevators.get(i);
-				else
-					cachedElevators.get(i).addElevatorFloor(block);
-				
-				return cachedElevators.get(i);
-			}
+			elevator.addElevatorFloor(block);
+			journal(ElevatorStore.OPERATION_ADD, elevator, block.getY());
+			updateColumn(elevator);
+		}
+		
+		return elevator;
+	}
+	
+	/**
+	 * This method checks if a block is part of the landing above a known floor
+	 * Only the known elevator of the block's column is looked up, no blocks are read.
+	 * @param block A changed block
+	 * @return True if one of the two floors below the block is a known floor, false otherwise
+	 */
+	public boolean affectsLanding(Block block)
+	{
+		Elevator elevator = getElevator(block);
+		
+		return elevator != null && (elevator.containsElevatorFloor(block.getRelative(0, -1, 0)) 
+			|| elevator.containsElevatorFloor(block.getRelative(0, -2, 0)));
+	}
+	
+	/**
+	 * This method reads the landings of the known floors a changed block might be part of again
+	 * The block has to be in its new state, so it can't be called while its change is still cancellable.
+	 * @param block A changed block
+	 */
+	public void updateLandings(Block block)
+	{
+		Elevator elevator = getElevator(block);
+		
+		if (elevator == null)
+			return;
+		
+		for (int below = 1; below <= 2; below++)
+		{
+			Block floorBlock = block.getRelative(0, -below, 0);
+			
+			if (elevator.containsElevatorFloor(floorBlock))
+				elevator.setLandingClear(floorBlock.getY(), Elevator.isLandingClear(floorBlock));
+		}
+	}
+	
+	/**
+	 * This method remembers an used elevator, so the sweeper checks its floors before all others
+	 * @param elevator The used elevator
+	 */
+	public void markElevatorUsed(Elevator elevator)
+	{
+		if (usedElevators.size() < MAX_USED_ELEVATORS && usedColumns.add(CoordinateKeys.columnKey(elevator.getX(), elevator.getZ())))
+			usedElevators.add(elevator);
+	}
+	
+	/**
+	 * This method takes the oldest elevator used since the sweeper last checked it
+	 * @return The elevator, or null if no elevator has been used
+	 */
+	Elevator pollUsedElevator()
+	{
+		Elevator elevator = usedElevators.poll();
+		
+		if (elevator != null)
+			usedColumns.remove(CoordinateKeys.columnKey(elevator.getX(), elevator.getZ()));
+		
+		return elevator;
+	}
+	
+	/**
+	 * This method checks a known floor against the world and removes it, if it isn't a floor of the elevator's profile anymore
+	 * The blocks are always read, so changes the validity cache didn't see get corrected as well. The landing 
+	 * of a valid floor is read again for the same reason.
+	 * @param world The world of the elevator
+	 * @param elevator The elevator
+	 * @param y The height of the floor
+	 * @return True if the floor is still valid, false if it got removed
+	 */
+	boolean validateFloor(World world, Elevator elevator, int y)
+	{
+		Block block = world.getBlockAt(elevator.getX(), y, elevator.getZ());
+		
+		if (checkFloor(block, false) == elevator.getProfile())
+		{
+			elevator.setLandingClear(y, Elevator.isLandingClear(block));
+			return true;
 		}
 		
-		return null;
+		removeFloorFromElevator(block);
+		return false;
+	}
+	
+	/**
+	 * This method looks up a known elevator without reading any blocks or changing anything
+	 * It can be called from any thread.
+	 * @param worldId The UUID of the world
+	 * @param x The x-coordinate of the elevator
+	 * @param z The z-coordinate of the elevator
+	 * @return The elevator, or null if no elevator is known for the column
+	 */
+	public Elevator getKnownElevator(UUID worldId, int x, int z)
+	{
+		return cachedElevators.get(worldId, x, z);
+	}
+	
+	/**
+	 * This method gets the registry of all known elevators in loaded chunks
+	 * @return The registry
+	 */
+	ElevatorRegistry getRegistry()
+	{
+		return cachedElevators;
+	}
+	
+	/**
+	 * This method gets the scanner used to find the floors in chunk snapshots
+	 * @return The column scanner
+	 */
+	ElevatorColumnScanner getColumnScanner()
+	{
+		return columnScanner;
+	}
+	
+	/**
+	 * This method gets the floors of the known elevators in unloaded chunks
+	 * @return The unloaded elevators
+	 */
+	UnloadedElevators getUnloadedElevators()
+	{
+		return unloadedElevators;
+	}
+	
+	/**
+	 * This method sets the scheduler that runs the full scans of new elevators
+	 * @param rescanScheduler The scheduler
+	 */
+	void setRescanScheduler(RescanScheduler rescanScheduler)
+	{
+		this.rescanScheduler = rescanScheduler;
 	}
 	
 	/**
 	 * This method creates a new elevator using an already checked center block
+	 * With a rescan scheduler, only the nearest floors above and below the block are searched right away
+	 * and the rest of the column is scanned within the scheduler's budget. Until then, floors further away
+	 * than the probed heights can't be reached.
 	 * @param block A block that is a valid elevator floor center
-	 * @return The newly created elevator
+	 * @param profile The index of the floor's profile
+	 * @return The newly created elevator, or null if the column belongs to an elevator of another profile
 	 */
-	public Elevator createElevator(Block block)
+	public Elevator createElevator(Block block, int profile)
 	{
+		Elevator knownElevator = getElevator(block);
+		
+		if (knownElevator != null && knownElevator.getProfile() != profile)
+			return null;
+		
 		Elevator elevator = new Elevator();
-		elevator.create(block);
-		cachedElevators.add(elevator);
-		rescanElevator(cachedElevators.size() - 1);
-		return cachedElevators.get(cachedElevators.size() - 1);
+		elevator.create(block, profile);
+		
+		if (rescanScheduler == null)
+		{
+			cachedElevators.put(block.getWorld().getUID(), elevator);
+			rescanElevator(block.getWorld(), elevator);
+			return elevator;
+		}
+		
+		//the probed floors are in place before other threads can find the elevator
+		probeElevator(block, elevator);
+		cachedElevators.put(block.getWorld().getUID(), elevator);
+		rescanScheduler.request(elevator);
+		return elevator;
+	}
+	
+	/**
+	 * This method rescans an elevator whose scan was scheduled
+	 * @param world The world of the elevator
+	 * @param elevator The elevator that needs a rescan
+	 */
+	void rescanScheduledElevator(World world, Elevator elevator)
+	{
+		rescanElevator(world, elevator);
+	}
+	
+	/**
+	 * This method loads the stored elevators of a world, so they don't need to be rescanned
+	 * If the stored elevators can't be read, the world starts without known elevators and they get found again once they are used.
+	 * @param world The world whose elevators should be loaded
+	 */
+	public void loadElevators(final World world)
+	{
+		final LongObjectHashMap<Elevator> worldElevators = new LongObjectHashMap<Elevator>();
+		LongObjectHashMap<ElevatorStore.Record> records = elevatorStore.load(world.getUID());
+		boolean loaded = records != null;
+		
+		if (!loaded)
+			records = new LongObjectHashMap<ElevatorStore.Record>();
+		
+		records.forEach((key, record) ->
+		{
+			if (record.floorHeights.length == 0)
+				return;
+			
+			int x = record.x;
+			int z = record.z;
+			
+			//elevators of unloaded chunks only get created once their chunk loads
+			if (!world.isChunkLoaded(x >> 4, z >> 4))
+			{
+				unloadedElevators.add(world.getUID(), x, z, record.profile, record.floorHeights);
+				return;
+			}
+			
+			Elevator elevator = new Elevator();
+			elevator.create(world.getUID(), x, z, record.profile);
+			elevator.setFloorHeights(record.floorHeights, world);
+			worldElevators.put(key, elevator);
+			updateColumn(elevator);
+		});
+		
+		cachedElevators.putAll(world.getUID(), worldElevators);
+		
+		for (Chunk chunk : world.getLoadedChunks())
+			classifyChunk(chunk);
+		
+		//fold the replayed journal into a fresh snapshot, the files of a failed load are left as they are
+		if (loaded)
+			saveElevators(world.getUID());
+	}
+	
+	/**
+	 * This method loads the elevators found by an import, they replace the known elevators of their columns
+	 * @param world The world of the elevators
+	 * @param columns The found elevators, indexed by packed column coordinates
+	 */
+	void importElevators(final World world, LongObjectHashMap<ElevatorStore.Record> columns)
+	{
+		final UUID worldId = world.getUID();
+		final LongObjectHashMap<Elevator> newElevators = new LongObjectHashMap<Elevator>();
+		final LongObjectHashMap<LongObjectHashMap<ElevatorStore.Record>> unloadedChunks = new LongObjectHashMap<LongObjectHashMap<ElevatorStore.Record>>();
+		
+		columns.forEach((key, record) ->
+		{
+			int x = record.x;
+			int z = record.z;
+			
+			//elevators of unloaded chunks are collected per chunk, to merge them with the stored ones
+			if (!world.isChunkLoaded(x >> 4, z >> 4))
+			{
+				long chunkKey = CoordinateKeys.columnKey(x >> 4, z >> 4);
+				LongObjectHashMap<ElevatorStore.Record> chunkColumns = unloadedChunks.get(chunkKey);
+				
+				if (chunkColumns == null)
+				{
+					chunkColumns = new LongObjectHashMap<ElevatorStore.Record>();
+					unloadedChunks.put(chunkKey, chunkColumns);
+				}
+				
+				chunkColumns.put(key, record);
+				return;
+			}
+			
+			Elevator elevator = cachedElevators.get(worldId, x, z);
+			
+			//known elevators of another profile get replaced as a whole
+			if (elevator == null || elevator.getProfile() != record.profile)
+			{
+				elevator = new Elevator();
+				elevator.create(worldId, x, z, record.profile);
+				newElevators.put(key, elevator);
+			}
+			
+			elevator.setFloorHeights(record.floorHeights, world);
+			updateColumn(elevator);
+		});
+		
+		cachedElevators.putAll(worldId, newElevators);
+		
+		unloadedChunks.forEach((chunkKey, chunkColumns) ->
+		{
+			unloadedElevators.take(worldId, CoordinateKeys.columnX(chunkKey), CoordinateKeys.columnZ(chunkKey), (x, z, profile, floorHeights) ->
+			{
+				if (!chunkColumns.containsKey(CoordinateKeys.columnKey(x, z)))
+					unloadedElevators.add(worldId, x, z, profile, floorHeights);
+			});
+			
+			chunkColumns.forEach((key, record) -> unloadedElevators.add(worldId, record.x, record.z, record.profile, record.floorHeights));
+		});
+		
+		//a fresh snapshot replaces the journal, instead of journaling every imported floor
+		saveElevators(worldId);
+	}
+	
+	/**
+	 * This method writes a snapshot of all known elevators in the background
+	 */
+	public void saveElevators()
+	{
+		for (UUID worldId : cachedElevators.getWorlds())
+			saveElevators(worldId);
+	}
+	
+	/**
+	 * This method writes a snapshot of the known elevators of a world in the background
+	 * @param worldId The UUID of the world
+	 */
+	private void saveElevators(UUID worldId)
+	{
+		final List<ElevatorStore.Record> records = new ArrayList<ElevatorStore.Record>();
+		
+		cachedElevators.forEach(worldId, (key, elevator) ->
+		{
+			if (elevator.floorCount() > 0)
+				records.add(new ElevatorStore.Record(elevator.getX(), elevator.getZ(), elevator.getProfile(), elevator.getFloorHeights()));
+		});
+		
+		unloadedElevators.forEach(worldId, (x, z, profile, floorHeights) -> records.add(new ElevatorStore.Record(x, z, profile, floorHeights)));
+		
+		elevatorStore.writeSnapshot(worldId, records);
 	}
 	
 	/**
@@ -92,67 +616,225 @@ public class ElevatorManager
 	 */
 	public void checkAndRemoveElevatorFloor(Block block)
 	{
-		if (block.getType() == elevatorCenterMat)
+		Material type = block.getType();
+		
+		if (profiles.getCenterProfiles(type) != 0)
 		{
 			removeFloorFromElevator(block);
 		}
-		else if (block.getType() == elevatorRimMat)
+		
+		//a material can be the center of one profile and the rim of another
+		int rimProfiles = profiles.getRimProfiles(type);
+		
+		if (rimProfiles != 0)
 		{
-			Block elevatorBlock = isPartOfElevator(block);
-			
-			if (elevatorBlock != null)
-			{
-				removeFloorFromElevator(elevatorBlock);
-			}
+			removeFloorsOfRim(block, rimProfiles);
+		}
+	}
+	
+	/**
+	 * This method checks a placed block and adds every floor completed by it to its elevator
+	 * @param block A block that might complete an elevator floor
+	 */
+	public void checkAndAddElevatorFloor(Block block)
+	{
+		Material type = block.getType();
+		
+		if (profiles.getCenterProfiles(type) != 0)
+		{
+			addFloorToElevator(block);
+		}
+		
+		if (profiles.getRimProfiles(type) != 0)
+		{
+			//a rim block can complete up to four floors
+			addFloorToElevator(block.getRelative(BlockFace.NORTH));
+			addFloorToElevator(block.getRelative(BlockFace.EAST));
+			addFloorToElevator(block.getRelative(BlockFace.SOUTH));
+			addFloorToElevator(block.getRelative(BlockFace.WEST));
 		}
 	}
 	
 	/**
 	 * This method rescans an elevator to update its floors
-	 * @param index The index of the elevator that needs a rescan
+	 * The found floors replace the old ones at once, so readers on other threads never see a partly scanned elevator.
+	 * @param world The world of the elevator
+	 * @param elevator The elevator that needs a rescan
 	 */
-	private void rescanElevator(final int index)
+	private void rescanElevator(World world, Elevator elevator)
 	{
-		World world = cachedElevators.get(index).getWorld();
-		cachedElevators.get(index).clearElevator();
+		long start = System.nanoTime();
+		journal(ElevatorStore.OPERATION_CLEAR, elevator, 0);
+		journal(ElevatorStore.OPERATION_PROFILE, elevator, elevator.getProfile());
 		
-		for (int i = world.getMinHeight(); i < world.getMaxHeight(); i++)
+		//scan a snapshot of the chunk, so sections without floors get skipped
+		ChunkSnapshot snapshot = world.getChunkAt(elevator.getX() >> 4, elevator.getZ() >> 4).getChunkSnapshot(false, false, false);
+		int[] candidates = columnScanner.scanColumn(snapshot, world.getMinHeight(), world.getMaxHeight(), elevator.getX() & 15, elevator.getZ() & 15, elevator.getProfile());
+		int[] heights = new int[candidates.length];
+		int floorCount = 0;
+		
+		for (int i = 0; i < candidates.length; i++)
 		{
-			Block block = world.getBlockAt(cachedElevators.get(index).getX(), i, cachedElevators.get(index).getZ());
+			Block block = world.getBlockAt(elevator.getX(), candidates[i], elevator.getZ());
 			
-			if (checkForValidElevator(block))
+			//rim blocks in neighbouring chunks are not part of the snapshot
+			if (matchFloor(block) == elevator.getProfile())
 			{
-				cachedElevators.get(index).addElevatorFloor(block);
+				heights[floorCount++] = candidates[i];
+				journal(ElevatorStore.OPERATION_ADD, elevator, candidates[i]);
 			}
 		}
+		
+		elevator.setFloorHeights(floorCount == heights.length ? heights : Arrays.copyOf(heights, floorCount), world);
+		updateColumn(elevator);
+		metrics.getRescans().recordSince(start);
 	}
 	
 	/**
-	 * This method checks if a block is part of an elevator floor
-	 * @param block A block that needs to be checked
-	 * @return The center block of the floor that the given block is part of, null otherwise
+	 * This method adds a used floor and the nearest floors above and below it to a new elevator
+	 * Only PROBE_DISTANCE blocks are searched in each direction, floors further away can't be reached 
+	 * until the scheduled scan of the column lands.
+	 * @param block The center block of the used floor
+	 * @param elevator The new elevator
 	 */
-	private Block isPartOfElevator(Block block)
+	private void probeElevator(Block block, Elevator elevator)
 	{
-		if (block.getRelative(BlockFace.NORTH).getType() == elevatorCenterMat) return block.getRelative(BlockFace.NORTH);
-		if (block.getRelative(BlockFace.EAST).getType() == elevatorCenterMat) return block.getRelative(BlockFace.EAST);
-		if (block.getRelative(BlockFace.SOUTH).getType() == elevatorCenterMat) return block.getRelative(BlockFace.SOUTH);
-		if (block.getRelative(BlockFace.WEST).getType() == elevatorCenterMat) return block.getRelative(BlockFace.WEST);
-		return null;
+		long start = System.nanoTime();
+		World world = block.getWorld();
+		int below = probeFloor(world, block, -1, elevator.getProfile());
+		int above = probeFloor(world, block, 1, elevator.getProfile());
+		
+		//sorted from lowest to highest, the used floor is always part of it
+		int[] heights = new int[3];
+		int floorCount = 0;
+		
+		if (below != Integer.MIN_VALUE)
+			heights[floorCount++] = below;
+		
+		heights[floorCount++] = block.getY();
+		
+		if (above != Integer.MIN_VALUE)
+			heights[floorCount++] = above;
+		
+		journal(ElevatorStore.OPERATION_CLEAR, elevator, 0);
+		journal(ElevatorStore.OPERATION_PROFILE, elevator, elevator.getProfile());
+		
+		for (int i = 0; i < floorCount; i++)
+			journal(ElevatorStore.OPERATION_ADD, elevator, heights[i]);
+		
+		elevator.setFloorHeights(Arrays.copyOf(heights, floorCount), world);
+		updateColumn(elevator);
+		metrics.getProbes().recordSince(start);
 	}
-
+	
+	/**
+	 * This method searches the nearest floor of a profile above or below a used floor
+	 * The blocks are matched against the profiles directly, so the misses of a probe don't fill the 
+	 * validity cache or its metrics.
+	 * @param world The world of the used floor
+	 * @param block The center block of the used floor
+	 * @param direction 1 to search upwards, -1 to search downwards
+	 * @param profile The index of the elevator's profile
+	 * @return The y-coordinate of the nearest floor, or Integer.MIN_VALUE if none is within PROBE_DISTANCE
+	 */
+	private int probeFloor(World world, Block block, int direction, int profile)
+	{
+		int minY = Math.max(world.getMinHeight(), block.getY() - PROBE_DISTANCE);
+		int maxY = Math.min(world.getMaxHeight() - 1, block.getY() + PROBE_DISTANCE);
+		
+		for (int y = block.getY() + direction; y >= minY && y <= maxY; y += direction)
+		{
+			if (profiles.match(world.getBlockAt(block.getX(), y, block.getZ())) == profile)
+				return y;
+		}
+		
+		return Integer.MIN_VALUE;
+	}
+	
+	/**
+	 * This method updates the column bitmap after the floors of an elevator changed, and drops 
+	 * the elevator if it has no floors left
+	 * @param elevator The changed elevator
+	 */
+	private void updateColumn(Elevator elevator)
+	{
+		boolean containsFloors = elevator.floorCount() > 0;
+		columnIndex.setColumn(elevator.getWorldId(), elevator.getX(), elevator.getZ(), containsFloors);
+		
+		//elevators without floors are dropped, the column gets scanned again once a floor is used or built
+		if (!containsFloors && cachedElevators.get(elevator.getWorldId(), elevator.getX(), elevator.getZ()) == elevator)
+			cachedElevators.remove(elevator.getWorldId(), elevator.getX(), elevator.getZ());
+	}
+	
+	/**
+	 * This method records a floor change in the journal of the elevator's world
+	 * @param operation The journal operation
+	 * @param elevator The changed elevator
+	 * @param y The y-coordinate of the changed floor, or the profile index
+	 */
+	private void journal(byte operation, Elevator elevator, int y)
+	{
+		elevatorStore.append(elevator.getWorldId(), operation, elevator.getX(), y, elevator.getZ());
+	}
+	
+	/**
+	 * This method looks up the elevator in the column of a block
+	 * @param block A block that might be part of an elevator
+	 * @return The elevator in the column of the block, or null if none is known
+	 */
+	private Elevator getElevator(Block block)
+	{
+		return cachedElevators.get(block.getWorld().getUID(), block.getX(), block.getZ());
+	}
+	
+	/**
+	 * This method removes the known floors a rim block is part of
+	 * The floors are found by the elevators of the neighbouring columns, so no blocks need to be read.
+	 * @param block A rim block that needs to be checked
+	 * @param rimProfiles The profiles the block is the rim material of
+	 */
+	private void removeFloorsOfRim(Block block, int rimProfiles)
+	{
+		for (int side = 0; side < SIDE_FACES.length; side++)
+		{
+			Block centerBlock = block.getRelative(SIDE_FACES[side]);
+			Elevator elevator = getElevator(centerBlock);
+			
+			//the block lies on the opposite side of the neighbouring floor
+			if (elevator != null && (rimProfiles & (1 << elevator.getProfile())) != 0 && profiles.get(elevator.getProfile()).hasRim((side + 2) & 3))
+				removeFloorFromElevator(centerBlock);
+		}
+	}
+	
+	/**
+	 * This method adds a floor to its elevator if the block is the center of a valid floor
+	 * @param block The potential center block of an elevator floor
+	 */
+	private void addFloorToElevator(Block block)
+	{
+		int profile = matchFloor(block);
+		
+		if (profile == ElevatorProfiles.NO_PROFILE)
+			return;
+		
+		//the floor gets inserted into the known elevator, only unknown columns need to be scanned once
+		if (elevatorExists(block, profile) == null)
+			createElevator(block, profile);
+	}
+	
 	/**
 	 * This method removes a floor from an elevator
 	 * @param block The center block of an elevator floor
 	 */
 	private void removeFloorFromElevator(Block block)
 	{
-		for (int i = 0; i < cachedElevators.size(); i++)
+		Elevator elevator = getElevator(block);
+		
+		if (elevator != null && elevator.containsElevatorFloor(block))
 		{
-			if (cachedElevators.get(i).exists(block))
-			{
-				cachedElevators.get(i).removeElevatorFloor(block);
-			}
+			elevator.removeElevatorFloor(block);
+			journal(ElevatorStore.OPERATION_REMOVE, elevator, block.getY());
+			updateColumn(elevator);
 		}
 	}
 }
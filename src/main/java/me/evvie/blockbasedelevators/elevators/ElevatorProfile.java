@@ -0,0 +1,187 @@
+package me.evvie.blockbasedelevators.elevators;
+
+import java.util.List;
+
+import org.bukkit.Material;
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * This class describes a kind of elevator: the blocks its floors are made of and how players may travel in it
+ * A floor is a center block with rim blocks on some of its four sides. Which sides need a rim block
+ * is the shape of the floor, the plus shape of the original elevators needs all four of them.
+ */
+public class ElevatorProfile
+{
+	//sides of a floor, in the order of the shape bits
+	public static final int SIDE_NORTH = 0;
+	public static final int SIDE_EAST = 1;
+	public static final int SIDE_SOUTH = 2;
+	public static final int SIDE_WEST = 3;
+	
+	//shape with a rim block on every side
+	public static final int SHAPE_PLUS = 0b1111;
+	
+	private static final String[] SIDE_NAMES = { "NORTH", "EAST", "SOUTH", "WEST" };
+	
+	private final String name;
+	private final Material centerMaterial;
+	private final Material rimMaterial;
+	private final int shape;
+	
+	//travel rules, a maximum distance of 0 means unlimited
+	private final int maxTravelDistance;
+	private final boolean travelUp;
+	private final boolean travelDown;
+	
+	/**
+	 * Constructor for the creation of a profile
+	 * @param name The name of the profile
+	 * @param centerMaterial The material of the center block of a floor
+	 * @param rimMaterial The material of the rim blocks of a floor
+	 * @param shape The sides that need a rim block, bit i stands for side i
+	 * @param maxTravelDistance The maximum distance between two floors a player can travel, 0 for no limit
+	 * @param travelUp True if players may travel upwards
+	 * @param travelDown True if players may travel downwards
+	 */
+	public ElevatorProfile(String name, Material centerMaterial, Material rimMaterial, int shape, int maxTravelDistance, boolean travelUp, boolean travelDown)
+	{
+		this.name = name;
+		this.centerMaterial = centerMaterial;
+		this.rimMaterial = rimMaterial;
+		this.shape = shape & SHAPE_PLUS;
+		this.maxTravelDistance = Math.max(0, maxTravelDistance);
+		this.travelUp = travelUp;
+		this.travelDown = travelDown;
+	}
+	
+	/**
+	 * This method creates a profile from its section of the configuration
+	 * @param section The section of the profile, named like the profile
+	 * @return The profile
+	 * @throws IllegalArgumentException If a material or a side of the section is unknown
+	 */
+	public static ElevatorProfile fromConfig(ConfigurationSection section)
+	{
+		Material center = parseMaterial(section.getString("CenterBlock"));
+		Material rim = parseMaterial(section.getString("RimBlock", center.name()));
+		int shape = SHAPE_PLUS;
+		
+		if (section.contains("RimSides"))
+		{
+			shape = 0;
+			List<String> sides = section.getStringList("RimSides");
+			
+			for (String side : sides)
+				shape |= 1 << parseSide(side);
+		}
+		
+		String directions = section.getString("Directions", "both").toLowerCase();
+		
+		if (!directions.equals("both") && !directions.equals("up") && !directions.equals("down"))
+			throw new IllegalArgumentException("Unknown Directions " + directions + ", use both, up or down");
+		
+		return new ElevatorProfile(section.getName(), center, rim, shape, section.getInt("MaxTravelDistance", 0), !directions.equals("down"), !directions.equals("up"));
+	}
+	
+	/**
+	 * This method gets the name of the profile
+	 * @return The name of the profile
+	 */
+	public String getName()
+	{
+		return name;
+	}
+	
+	/**
+	 * This method gets the material of the center block of a floor
+	 * @return The center material
+	 */
+	public Material getCenterMaterial()
+	{
+		return centerMaterial;
+	}
+	
+	/**
+	 * This method gets the material of the rim blocks of a floor
+	 * @return The rim material
+	 */
+	public Material getRimMaterial()
+	{
+		return rimMaterial;
+	}
+	
+	/**
+	 * This method gets the sides of a floor that need a rim block
+	 * @return The shape, bit i stands for side i
+	 */
+	public int getShape()
+	{
+		return shape;
+	}
+	
+	/**
+	 * This method checks if a side of a floor needs a rim block
+	 * @param side The side, see SIDE_NORTH to SIDE_WEST
+	 * @return True if the side needs a rim block, false otherwise
+	 */
+	public boolean hasRim(int side)
+	{
+		return (shape & (1 << side)) != 0;
+	}
+	
+	/**
+	 * This method gets the maximum distance between two floors a player can travel
+	 * @return The maximum distance in blocks, 0 if it isn't limited
+	 */
+	public int getMaxTravelDistance()
+	{
+		return maxTravelDistance;
+	}
+	
+	/**
+	 * This method checks if the travel rules allow a teleport
+	 * @param direction The direction of the teleport
+	 * @param distance The distance between the two floors
+	 * @return True if the teleport is allowed, false otherwise
+	 */
+	boolean allowsTravel(Direction direction, int distance)
+	{
+		if (direction == Direction.UP ? !travelUp : !travelDown)
+			return false;
+		
+		return maxTravelDistance == 0 || distance <= maxTravelDistance;
+	}
+	
+	/**
+	 * This method parses the name of a block material
+	 * @param name The name of the material
+	 * @return The material
+	 * @throws IllegalArgumentException If the material is unknown
+	 */
+	private static Material parseMaterial(String name)
+	{
+		Material material = name == null ? null : Material.getMaterial(name.toUpperCase());
+		
+		if (material == null || !material.isBlock())
+			throw new IllegalArgumentException("Unknown block material " + name);
+		
+		return material;
+	}
+	
+	/**
+	 * This method parses the name of a side
+	 * @param name The name of the side
+	 * @return The side, see SIDE_NORTH to SIDE_WEST
+	 * @throws IllegalArgumentException If the side is unknown
+	 */
+	private static int parseSide(String name)
+	{
+		for (int side = 0; side < SIDE_NAMES.length; side++)
+		{
+			if (SIDE_NAMES[side].equalsIgnoreCase(name))
+				return side;
+		}
+		
+		throw new IllegalArgumentException("Unknown rim side " + name + ", use NORTH, EAST, SOUTH or WEST");
+	}
+}
@@ -0,0 +1,302 @@
+package me.evvie.blockbasedelevators.elevators;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+import org.bukkit.configuration.ConfigurationSection;
+
+/**
+ * This class matches blocks against all elevator profiles at once
+ * The profiles are compiled into lookup tables indexed by the ordinal of a material, holding a bit
+ * for every profile. Matching a floor reads its center block and ANDs the bits of the profiles it
+ * can be the center of with the bits of the profiles each rim block completes. Every block gets
+ * read at most once, no matter how many profiles there are. The first profile in the configuration
+ * wins if a floor matches more than one.
+ */
+public class ElevatorProfiles
+{
+	//result of the matching methods if no profile matches
+	public static final int NO_PROFILE = -1;
+	
+	//profiles are bits of an int, and the validity cache keeps them in 5 bits
+	public static final int MAX_PROFILES = 31;
+	
+	//name of the profile made of the ElevatorCenterBlockMaterial and ElevatorRimMaterial
+	public static final String DEFAULT_PROFILE = "default";
+	
+	//faces of the sides of a floor, in the order of the shape bits
+	private static final BlockFace[] SIDE_FACES = { BlockFace.NORTH, BlockFace.EAST, BlockFace.SOUTH, BlockFace.WEST };
+	
+	private final ElevatorProfile[] profiles;
+	private final int materialCount = Material.values().length;
+	
+	//profiles a material is the center of, indexed by the ordinal of the material
+	private final int[] centerProfiles = new int[materialCount];
+	
+	//profiles a material is the rim of, indexed by the ordinal of the material
+	private final int[] rimProfiles = new int[materialCount];
+	
+	//profiles a material completes a side for, indexed by side * materialCount + ordinal
+	//profiles without a rim on a side accept every material there
+	private final int[] sideProfiles = new int[4 * materialCount];
+	
+	//profiles needing a rim on each side, sides none of the candidates need are never read
+	private final int[] rimSides = new int[4];
+	
+	//distinct materials of all profiles, and the index of every profile's rim material
+	private final Material[] centerMaterials;
+	private final Material[] rimMaterials;
+	private final int[] rimIndexes;
+	
+	/**
+	 * Constructor for the compilation of the profiles
+	 * @param profiles The profiles in the order they get matched, at most MAX_PROFILES
+	 */
+	public ElevatorProfiles(List<ElevatorProfile> profiles)
+	{
+		if (profiles.isEmpty() || profiles.size() > MAX_PROFILES)
+			throw new IllegalArgumentException("Between 1 and " + MAX_PROFILES + " elevator profiles are needed");
+		
+		this.profiles = profiles.toArray(new ElevatorProfile[0]);
+		List<Material> centers = new ArrayList<Material>();
+		List<Material> rims = new ArrayList<Material>();
+		rimIndexes = new int[this.profiles.length];
+		
+		for (int i = 0; i < this.profiles.length; i++)
+		{
+			ElevatorProfile profile = this.profiles[i];
+			int bit = 1 << i;
+			
+			centerProfiles[profile.getCenterMaterial().ordinal()] |= bit;
+			rimProfiles[profile.getRimMaterial().ordinal()] |= bit;
+			
+			for (int side = 0; side < 4; side++)
+			{
+				if (profile.hasRim(side))
+				{
+					rimSides[side] |= bit;
+					sideProfiles[side * materialCount + profile.getRimMaterial().ordinal()] |= bit;
+				}
+				else
+				{
+					for (int ordinal = 0; ordinal < materialCount; ordinal++)
+						sideProfiles[side * materialCount + ordinal] |= bit;
+				}
+			}
+			
+			if (!centers.contains(profile.getCenterMaterial()))
+				centers.add(profile.getCenterMaterial());
+			if (!rims.contains(profile.getRimMaterial()))
+				rims.add(profile.getRimMaterial());
+			
+			rimIndexes[i] = rims.indexOf(profile.getRimMaterial());
+		}
+		
+		centerMaterials = centers.toArray(new Material[0]);
+		rimMaterials = rims.toArray(new Material[0]);
+	}
+	
+	/**
+	 * This method reads the profiles of the configuration
+	 * The default profile is made of ElevatorCenterBlockMaterial and ElevatorRimMaterial, the profiles
+	 * of the ElevatorProfiles section follow in their order. Broken profiles get skipped with a warning.
+	 * @param config The configuration of the plug-in
+	 * @param logger The logger used to report broken profiles
+	 * @return The compiled profiles
+	 * @throws IllegalArgumentException If the materials of the default profile are unknown
+	 */
+	public static ElevatorProfiles fromConfig(ConfigurationSection config, Logger logger)
+	{
+		List<ElevatorProfile> profiles = new ArrayList<ElevatorProfile>();
+		Material center = Material.getMaterial(config.getString("ElevatorCenterBlockMaterial").toUpperCase());
+		Material rim = Material.getMaterial(config.getString("ElevatorRimMaterial").toUpperCase());
+		
+		if (center == null || rim == null)
+			throw new IllegalArgumentException("Unknown ElevatorCenterBlockMaterial or ElevatorRimMaterial");
+		
+		profiles.add(new ElevatorProfile(DEFAULT_PROFILE, center, rim, ElevatorProfile.SHAPE_PLUS, 0, true, true));
+		ConfigurationSection section = config.getConfigurationSection("ElevatorProfiles");
+		
+		if (section == null)
+			return new ElevatorProfiles(profiles);
+		
+		for (String name : section.getKeys(false))
+		{
+			if (name.equalsIgnoreCase(DEFAULT_PROFILE) || !section.isConfigurationSection(name))
+			{
+				logger.warning("Skipping elevator profile " + name + ", it needs to be a section and must not be named " + DEFAULT_PROFILE);
+				continue;
+			}
+			
+			if (profiles.size() == MAX_PROFILES)
+			{
+				logger.warning("Skipping elevator profile " + name + ", at most " + MAX_PROFILES + " profiles are supported");
+				continue;
+			}
+			
+			try
+			{
+				profiles.add(ElevatorProfile.fromConfig(section.getConfigurationSection(name)));
+			}
+			catch (IllegalArgumentException e)
+			{
+				logger.warning("Skipping elevator profile " + name + ": " + e.getMessage());
+			}
+		}
+		
+		return new ElevatorProfiles(profiles);
+	}
+	
+	/**
+	 * This method matches a floor against all profiles
+	 * @param centerBlock The potential center of a floor
+	 * @return The index of the first matching profile, or NO_PROFILE if none matches
+	 */
+	public int match(Block centerBlock)
+	{
+		int candidates = centerProfiles[centerBlock.getType().ordinal()];
+		
+		for (int side = 0; side < 4 && candidates != 0; side++)
+		{
+			//sides none of the candidates needs are never read
+			if ((candidates & rimSides[side]) != 0)
+				candidates &= sideProfiles[side * materialCount + centerBlock.getRelative(SIDE_FACES[side]).getType().ordinal()];
+		}
+		
+		return first(candidates);
+	}
+	
+	/**
+	 * This method gets the profiles a material can be the center of
+	 * @param material The material
+	 * @return The candidate profiles, bit i stands for profile i
+	 */
+	public int getCenterProfiles(Material material)
+	{
+		return centerProfiles[material.ordinal()];
+	}
+	
+	/**
+	 * This method gets the profiles a material is the rim material of
+	 * @param material The material
+	 * @return The profiles, bit i stands for profile i
+	 */
+	public int getRimProfiles(Material material)
+	{
+		return rimProfiles[material.ordinal()];
+	}
+	
+	/**
+	 * This method checks which candidates need a rim on a side
+	 * @param candidates The candidate profiles
+	 * @param side The side, see ElevatorProfile.SIDE_NORTH to SIDE_WEST
+	 * @return The candidates needing a rim block on the side
+	 */
+	public int needingRim(int candidates, int side)
+	{
+		return candidates & rimSides[side];
+	}
+	
+	/**
+	 * This method removes the candidates a block on a side of the floor doesn't complete
+	 * @param candidates The candidate profiles
+	 * @param side The side, see ElevatorProfile.SIDE_NORTH to SIDE_WEST
+	 * @param material The material of the block on that side
+	 * @return The remaining candidates
+	 */
+	public int filterSide(int candidates, int side, Material material)
+	{
+		return candidates & sideProfiles[side * materialCount + material.ordinal()];
+	}
+	
+	/**
+	 * This method gets the first profile of a set of candidates
+	 * @param candidates The candidate profiles
+	 * @return The index of the first profile, or NO_PROFILE if there is none
+	 */
+	public static int first(int candidates)
+	{
+		return candidates == 0 ? NO_PROFILE : Integer.numberOfTrailingZeros(candidates);
+	}
+	
+	/**
+	 * This method gets a profile
+	 * @param index The index of the profile
+	 * @return The profile
+	 */
+	public ElevatorProfile get(int index)
+	{
+		return profiles[index];
+	}
+	
+	/**
+	 * This method finds a profile by its name
+	 * @param name The name of the profile
+	 * @return The index of the profile, or NO_PROFILE if there is none with this name
+	 */
+	public int indexOf(String name)
+	{
+		for (int i = 0; i < profiles.length; i++)
+		{
+			if (profiles[i].getName().equals(name))
+				return i;
+		}
+		
+		return NO_PROFILE;
+	}
+	
+	/**
+	 * This method gets the amount of profiles
+	 * @return The amount of profiles
+	 */
+	public int size()
+	{
+		return profiles.length;
+	}
+	
+	/**
+	 * This method gets the names of all profiles
+	 * @return The names in the order of the profiles
+	 */
+	public List<String> getNames()
+	{
+		List<String> names = new ArrayList<String>(profiles.length);
+		
+		for (ElevatorProfile profile : profiles)
+			names.add(profile.getName());
+		
+		return names;
+	}
+	
+	/**
+	 * This method gets the distinct center materials of all profiles
+	 * @return The center materials, must not be modified
+	 */
+	public Material[] getCenterMaterials()
+	{
+		return centerMaterials;
+	}
+	
+	/**
+	 * This method gets the distinct rim materials of all profiles
+	 * @return The rim materials, must not be modified
+	 */
+	public Material[] getRimMaterials()
+	{
+		return rimMaterials;
+	}
+	
+	/**
+	 * This method gets the position of a profile's rim material in getRimMaterials
+	 * @param profile The index of the profile
+	 * @return The index of the rim material
+	 */
+	public int getRimIndex(int profile)
+	{
+		return rimIndexes[profile];
+	}
+}
@@ -0,0 +1,405 @@
+package me.evvie.blockbasedelevators.elevators;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import me.evvie.blockbasedelevators.util.CoordinateKeys;
+import me.evvie.blockbasedelevators.util.LongObjectHashMap;
+
+/**
+ * This class holds the known elevators of all worlds, indexed by packed column coordinates
+ * The elevators of a world are kept in buckets per chunk, and the buckets are split into stripes.
+ * Every bucket holds a copy-on-write array of its 256 columns, so lookups from any thread never lock.
+ * Changes lock only the stripe of the changed chunk and copy the columns of that chunk, which keeps
+ * their cost independent of the amount of elevators around it. The map of buckets in a stripe is only
+ * copied when a chunk gets its first elevator or loses its last one.
+ */
+class ElevatorRegistry
+{
+	//amount of stripes per world, must be a power of two
+	private static final int STRIPES = 64;
+	
+	//columns per chunk
+	private static final int CHUNK_COLUMNS = 256;
+	
+	private final ConcurrentHashMap<UUID, Stripe[]> worlds = new ConcurrentHashMap<UUID, Stripe[]>();
+	
+	/**
+	 * This method looks up the elevator of a column
+	 * @param worldId The UUID of the world
+	 * @param x The x-coordinate of the column
+	 * @param z The z-coordinate of the column
+	 * @return The elevator, or null if none is known
+	 */
+	Elevator get(UUID worldId, int x, int z)
+	{
+		Stripe[] stripes = worlds.get(worldId);
+		
+		if (stripes == null)
+			return null;
+		
+		Bucket bucket = stripes[stripeIndex(x >> 4, z >> 4)].buckets.get(CoordinateKeys.columnKey(x >> 4, z >> 4));
+		return bucket == null ? null : bucket.columns[columnIndex(x, z)];
+	}
+	
+	/**
+	 * This method adds an elevator, replacing the elevator known for its column
+	 * @param worldId The UUID of the world
+	 * @param elevator The elevator
+	 */
+	void put(UUID worldId, Elevator elevator)
+	{
+		int chunkX = elevator.getX() >> 4;
+		int chunkZ = elevator.getZ() >> 4;
+		Stripe stripe = getStripes(worldId)[stripeIndex(chunkX, chunkZ)];
+		
+		synchronized (stripe)
+		{
+			Bucket bucket = stripe.getOrCreate(CoordinateKeys.columnKey(chunkX, chunkZ));
+			Elevator[] columns = bucket.columns.clone();
+			columns[columnIndex(elevator.getX(), elevator.getZ())] = elevator;
+			bucket.publish(columns);
+		}
+	}
+	
+	/**
+	 * This method adds many elevators of a world at once, copying the columns of every chunk only once
+	 * @param worldId The UUID of the world
+	 * @param elevators The elevators, indexed by packed column coordinates
+	 */
+	void putAll(UUID worldId, LongObjectHashMap<Elevator> elevators)
+	{
+		final Stripe[] stripes = getStripes(worldId);
+		final LongObjectHashMap<Elevator[]> chunkColumns = new LongObjectHashMap<Elevator[]>();
+		
+		//sort the elevators into the columns of their chunks first
+		elevators.forEach((key, elevator) ->
+		{
+			int x = CoordinateKeys.columnX(key);
+			int z = CoordinateKeys.columnZ(key);
+			long chunkKey = CoordinateKeys.columnKey(x >> 4, z >> 4);
+			Elevator[] columns = chunkColumns.get(chunkKey);
+			
+			if (columns == null)
+			{
+				columns = new Elevator[CHUNK_COLUMNS];
+				chunkColumns.put(chunkKey, columns);
+			}
+			
+			columns[columnIndex(x, z)] = elevator;
+		});
+		
+		chunkColumns.forEach((chunkKey, additions) ->
+		{
+			Stripe stripe = stripes[stripeIndex(CoordinateKeys.columnX(chunkKey), CoordinateKeys.columnZ(chunkKey))];
+			
+			synchronized (stripe)
+			{
+				Bucket bucket = stripe.getOrCreate(chunkKey);
+				Elevator[] columns = bucket.columns.clone();
+				
+				for (int i = 0; i < CHUNK_COLUMNS; i++)
+				{
+					if (additions[i] != null)
+						columns[i] = additions[i];
+				}
+				
+				bucket.publish(columns);
+			}
+		});
+	}
+	
+	/**
+	 * This method removes the elevator of a column
+	 * @param worldId The UUID of the world
+	 * @param x The x-coordinate of the column
+	 * @param z The z-coordinate of the column
+	 * @return The removed elevator, or null if none was known
+	 */
+	Elevator remove(UUID worldId, int x, int z)
+	{
+		Stripe[] stripes = worlds.get(worldId);
+		
+		if (stripes == null)
+			return null;
+		
+		long chunkKey = CoordinateKeys.columnKey(x >> 4, z >> 4);
+		Stripe stripe = stripes[stripeIndex(x >> 4, z >> 4)];
+		
+		synchronized (stripe)
+		{
+			Bucket bucket = stripe.buckets.get(chunkKey);
+			int index = columnIndex(x, z);
+			
+			if (bucket == null || bucket.columns[index] == null)
+				return null;
+			
+			Elevator[] columns = bucket.columns.clone();
+			Elevator elevator = columns[index];
+			columns[index] = null;
+			stripe.publish(chunkKey, bucket, columns);
+			return elevator;
+		}
+	}
+	
+	/**
+	 * This method removes the elevators of several columns within the same chunk, copying their columns only once
+	 * @param worldId The UUID of the world
+	 * @param columnKeys The packed coordinates of the columns, which all need to be part of the same chunk
+	 * @param consumer The consumer of the removed elevators
+	 */
+	void removeAll(UUID worldId, long[] columnKeys, LongObjectHashMap.EntryConsumer<? super Elevator> consumer)
+	{
+		Stripe[] stripes = worlds.get(worldId);
+		
+		if (stripes == null || columnKeys.length == 0)
+			return;
+		
+		int chunkX = CoordinateKeys.columnX(columnKeys[0]) >> 4;
+		int chunkZ = CoordinateKeys.columnZ(columnKeys[0]) >> 4;
+		long chunkKey = CoordinateKeys.columnKey(chunkX, chunkZ);
+		Stripe stripe = stripes[stripeIndex(chunkX, chunkZ)];
+		
+		synchronized (stripe)
+		{
+			Bucket bucket = stripe.buckets.get(chunkKey);
+			
+			if (bucket == null)
+				return;
+			
+			Elevator[] columns = bucket.columns.clone();
+			
+			for (long columnKey : columnKeys)
+			{
+				int index = columnIndex(CoordinateKeys.columnX(columnKey), CoordinateKeys.columnZ(columnKey));
+				Elevator elevator = columns[index];
+				columns[index] = null;
+				
+				if (elevator != null)
+					consumer.accept(columnKey, elevator);
+			}
+			
+			stripe.publish(chunkKey, bucket, columns);
+		}
+	}
+	
+	/**
+	 * This method calls a consumer for every elevator of a chunk
+	 * @param worldId The UUID of the world
+	 * @param chunkX The x-coordinate of the chunk
+	 * @param chunkZ The z-coordinate of the chunk
+	 * @param consumer The consumer of the packed column coordinates and elevators
+	 */
+	void forEachInChunk(UUID worldId, int chunkX, int chunkZ, LongObjectHashMap.EntryConsumer<? super Elevator> consumer)
+	{
+		Stripe[] stripes = worlds.get(worldId);
+		
+		if (stripes == null)
+			return;
+		
+		long chunkKey = CoordinateKeys.columnKey(chunkX, chunkZ);
+		Bucket bucket = stripes[stripeIndex(chunkX, chunkZ)].buckets.get(chunkKey);
+		
+		if (bucket != null)
+			bucket.forEach(chunkKey, consumer);
+	}
+	
+	/**
+	 * This method forgets all elevators of a world
+	 * @param worldId The UUID of the world
+	 */
+	void removeWorld(UUID worldId)
+	{
+		worlds.remove(worldId);
+	}
+	
+	/**
+	 * This method iterates over the elevators of a world
+	 * Every chunk is read once, so the iteration sees a consistent state per chunk.
+	 * @param worldId The UUID of the world
+	 * @param consumer The consumer of the packed column coordinates and elevators
+	 */
+	void forEach(UUID worldId, final LongObjectHashMap.EntryConsumer<? super Elevator> consumer)
+	{
+		Stripe[] stripes = worlds.get(worldId);
+		
+		if (stripes == null)
+			return;
+		
+		for (Stripe stripe : stripes)
+			stripe.buckets.forEach((chunkKey, bucket) -> bucket.forEach(chunkKey, consumer));
+	}
+	
+	/**
+	 * This method gets the amount of elevators of a world
+	 * @param worldId The UUID of the world
+	 * @return The amount of elevators
+	 */
+	int size(UUID worldId)
+	{
+		Stripe[] stripes = worlds.get(worldId);
+		final int[] size = new int[1];
+		
+		if (stripes != null)
+		{
+			for (Stripe stripe : stripes)
+				stripe.buckets.forEach((chunkKey, bucket) -> size[0] += bucket.size);
+		}
+		
+		return size[0];
+	}
+	
+	/**
+	 * This method gets the UUIDs of all worlds with a registry
+	 * @return A live view of the UUIDs
+	 */
+	Set<UUID> getWorlds()
+	{
+		return worlds.keySet();
+	}
+	
+	/**
+	 * This method gets the stripes of a world, creating them if needed
+	 * @param worldId The UUID of the world
+	 * @return The stripes
+	 */
+	private Stripe[] getStripes(UUID worldId)
+	{
+		Stripe[] stripes = worlds.get(worldId);
+		
+		if (stripes == null)
+		{
+			stripes = new Stripe[STRIPES];
+			
+			for (int i = 0; i < STRIPES; i++)
+				stripes[i] = new Stripe();
+			
+			Stripe[] existing = worlds.putIfAbsent(worldId, stripes);
+			
+			if (existing != null)
+				stripes = existing;
+		}
+		
+		return stripes;
+	}
+	
+	/**
+	 * This method gets the stripe of a chunk
+	 * @param chunkX The x-coordinate of the chunk
+	 * @param chunkZ The z-coordinate of the chunk
+	 * @return The index of the stripe
+	 */
+	private static int stripeIndex(int chunkX, int chunkZ)
+	{
+		//spread the chunk coordinates, neighbouring chunks end up in different stripes
+		int hash = chunkX * 0x9E3779B1 + chunkZ * 0x85EBCA6B;
+		return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+	}
+	
+	/**
+	 * This method gets the index of a column inside the columns of its chunk
+	 * @param x The x-coordinate of the column
+	 * @param z The z-coordinate of the column
+	 * @return The index of the column
+	 */
+	private static int columnIndex(int x, int z)
+	{
+		return (x & 15) | ((z & 15) << 4);
+	}
+	
+	/**
+	 * This class is a single stripe of a world's elevators
+	 */
+	private static class Stripe
+	{
+		//replaced whenever a bucket is added or removed, never modified after it got published
+		private volatile LongObjectHashMap<Bucket> buckets = new LongObjectHashMap<Bucket>();
+		
+		/**
+		 * This method gets the bucket of a chunk, adding an empty one if needed
+		 * Must be called while holding the lock of this stripe.
+		 * @param chunkKey The packed coordinates of the chunk
+		 * @return The bucket
+		 */
+		private Bucket getOrCreate(long chunkKey)
+		{
+			Bucket bucket = buckets.get(chunkKey);
+			
+			if (bucket == null)
+			{
+				bucket = new Bucket();
+				LongObjectHashMap<Bucket> newBuckets = new LongObjectHashMap<Bucket>(buckets);
+				newBuckets.put(chunkKey, bucket);
+				buckets = newBuckets;
+			}
+			
+			return bucket;
+		}
+		
+		/**
+		 * This method publishes the new columns of a bucket, and drops the bucket once it is empty
+		 * Must be called while holding the lock of this stripe.
+		 * @param chunkKey The packed coordinates of the chunk
+		 * @param bucket The bucket of the chunk
+		 * @param columns The new columns, which must not be modified afterwards
+		 */
+		private void publish(long chunkKey, Bucket bucket, Elevator[] columns)
+		{
+			bucket.publish(columns);
+			
+			if (bucket.size == 0)
+			{
+				LongObjectHashMap<Bucket> newBuckets = new LongObjectHashMap<Bucket>(buckets);
+				newBuckets.remove(chunkKey);
+				buckets = newBuckets;
+			}
+		}
+	}
+	
+	/**
+	 * This class holds the elevators of a single chunk
+	 */
+	private static class Bucket
+	{
+		//elevators indexed by the column inside the chunk, replaced on every change
+		private volatile Elevator[] columns = new Elevator[CHUNK_COLUMNS];
+		private volatile int size;
+		
+		/**
+		 * This method replaces the columns of the bucket
+		 * @param newColumns The new columns, which must not be modified afterwards
+		 */
+		private void publish(Elevator[] newColumns)
+		{
+			int newSize = 0;
+			
+			for (Elevator elevator : newColumns)
+			{
+				if (elevator != null)
+					newSize++;
+			}
+			
+			size = newSize;
+			columns = newColumns;
+		}
+		
+		/**
+		 * This method calls a consumer for every elevator of the bucket
+		 * @param chunkKey The packed coordinates of the chunk
+		 * @param consumer The consumer of the packed column coordinates and elevators
+		 */
+		private void forEach(long chunkKey, LongObjectHashMap.EntryConsumer<? super Elevator> consumer)
+		{
+			Elevator[] columns = this.columns;
+			int baseX = CoordinateKeys.columnX(chunkKey) << 4;
+			int baseZ = CoordinateKeys.columnZ(chunkKey) << 4;
+			
+			for (int i = 0; i < CHUNK_COLUMNS; i++)
+			{
+				if (columns[i] != null)
+					consumer.accept(CoordinateKeys.columnKey(baseX | (i & 15), baseZ | (i >> 4)), columns[i]);
+			}
+		}
+	}
+}
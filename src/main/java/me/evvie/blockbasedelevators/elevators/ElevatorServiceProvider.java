@@ -0,0 +1,113 @@
+package me.evvie.blockbasedelevators.elevators;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.UUID;
+
+import me.evvie.blockbasedelevators.api.ElevatorService;
+import me.evvie.blockbasedelevators.api.ElevatorSnapshot;
+
+/**
+ * This class implements the ElevatorService using the elevators known by the ElevatorManager
+ * Snapshots share the copy-on-write height arrays of the elevators, so creating them never copies floors.
+ */
+public class ElevatorServiceProvider implements ElevatorService
+{
+	private final ElevatorRegistry registry;
+	private final UnloadedElevators unloadedElevators;
+	
+	/**
+	 * Constructor for the creation of the service
+	 * @param elevatorManager The manager of all known elevators
+	 */
+	public ElevatorServiceProvider(ElevatorManager elevatorManager)
+	{
+		this.registry = elevatorManager.getRegistry();
+		this.unloadedElevators = elevatorManager.getUnloadedElevators();
+	}
+	
+	@Override
+	public ElevatorSnapshot getElevator(UUID worldId, int x, int z)
+	{
+		Elevator elevator = registry.get(worldId, x, z);
+		
+		if (elevator != null)
+			return snapshot(worldId, elevator);
+		
+		//elevators of unloaded chunks are only kept as floor heights
+		int[] floorHeights = unloadedElevators.find(worldId, x, z);
+		return floorHeights != null ? new ElevatorSnapshot(worldId, x, z, floorHeights) : null;
+	}
+	
+	@Override
+	public List<ElevatorSnapshot> getElevatorsInChunk(final UUID worldId, int chunkX, int chunkZ)
+	{
+		final List<ElevatorSnapshot> elevators = new ArrayList<ElevatorSnapshot>();
+		
+		//only the columns holding an elevator are visited, instead of looking up all 256 columns of the chunk
+		registry.forEachInChunk(worldId, chunkX, chunkZ, (key, elevator) ->
+		{
+			ElevatorSnapshot snapshot = snapshot(worldId, elevator);
+			
+			if (snapshot != null)
+				elevators.add(snapshot);
+		});
+		
+		unloadedElevators.forEachInChunk(worldId, chunkX, chunkZ, (x, z, profile, floorHeights) -> elevators.add(new ElevatorSnapshot(worldId, x, z, floorHeights)));
+		
+		return Collections.unmodifiableList(elevators);
+	}
+	
+	@Override
+	public OptionalInt getFloorAbove(UUID worldId, int x, int z, int y)
+	{
+		ElevatorSnapshot snapshot = getElevator(worldId, x, z);
+		return snapshot != null ? snapshot.getFloorAbove(y) : OptionalInt.empty();
+	}
+	
+	@Override
+	public OptionalInt getFloorBelow(UUID worldId, int x, int z, int y)
+	{
+		ElevatorSnapshot snapshot = getElevator(worldId, x, z);
+		return snapshot != null ? snapshot.getFloorBelow(y) : OptionalInt.empty();
+	}
+	
+	@Override
+	public List<ElevatorSnapshot> exportWorld(final UUID worldId)
+	{
+		final List<ElevatorSnapshot> elevators = new ArrayList<ElevatorSnapshot>();
+		
+		registry.forEach(worldId, (key, elevator) ->
+		{
+			ElevatorSnapshot snapshot = snapshot(worldId, elevator);
+			
+			if (snapshot != null)
+				elevators.add(snapshot);
+		});
+		
+		unloadedElevators.forEach(worldId, (x, z, profile, floorHeights) -> elevators.add(new ElevatorSnapshot(worldId, x, z, floorHeights)));
+		
+		return Collections.unmodifiableList(elevators);
+	}
+	
+	/**
+	 * This method creates the snapshot of an elevator
+	 * @param worldId The UUID of the elevator's world
+	 * @param elevator The elevator, may be null
+	 * @return The snapshot, or null if there is no elevator or it has no floors
+	 */
+	private static ElevatorSnapshot snapshot(UUID worldId, Elevator elevator)
+	{
+		if (elevator == null)
+			return null;
+		
+		int[] floorHeights = elevator.getFloorHeights();
+		
+		if (floorHeights.length == 0)
+			return null;
+		
+		return new ElevatorSnapshot(worldId, elevator.getX(), elevator.getZ(), floorHeights);
+	}
+}
@@ -0,0 +1,642 @@
+package me.evvie.blockbasedelevators.elevators;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import me.evvie.blockbasedelevators.util.CoordinateKeys;
+import me.evvie.blockbasedelevators.util.LongObjectHashMap;
+
+/**
+ * This class persists the known elevators of each world to disk
+ * Every world gets a binary snapshot file and an append-only journal of the floor changes made
+ * since that snapshot. All writes happen on a single background thread, so the order of journal
+ * entries and snapshots is always kept.
+ * Snapshots store the names of the elevator profiles, so reordering the profiles in the configuration
+ * keeps the profile of every stored elevator. Journals refer to the profiles by their index.
+ */
+public class ElevatorStore
+{
+	//file format markers
+	private static final int SNAPSHOT_MAGIC = 0x42424553; //"BBES"
+	private static final int JOURNAL_MAGIC = 0x4242454A; //"BBEJ"
+	private static final int SNAPSHOT_VERSION = 2;
+	private static final int JOURNAL_VERSION = 1;
+	
+	//snapshots without profiles, all of their elevators belong to the default profile
+	private static final int SNAPSHOT_VERSION_WITHOUT_PROFILES = 1;
+	
+	//journal operations
+	static final byte OPERATION_ADD = 1;
+	static final byte OPERATION_REMOVE = 2;
+	static final byte OPERATION_CLEAR = 3;
+	
+	//sets the profile of an elevator, the profile index is stored in place of the y-coordinate
+	static final byte OPERATION_PROFILE = 4;
+	
+	//size of a single journal entry: operation, x, y, z
+	private static final int JOURNAL_ENTRY_SIZE = 1 + 3 * 4;
+	
+	private final File directory;
+	private final Logger logger;
+	private final ExecutorService writer;
+	
+	//names of the configured profiles, indexed like the profiles
+	private final List<String> profileNames;
+	
+	//open journals, only accessed by the writer thread
+	private final Map<UUID, DataOutputStream> journals = new HashMap<UUID, DataOutputStream>();
+	
+	//journal entries waiting for the writer thread, guarded by this store
+	private JournalBatch pendingBatch;
+	
+	/**
+	 * Constructor for the creation of the ElevatorStore
+	 * @param directory The directory the elevator files are kept in
+	 * @param logger The logger used to report failing disk operations
+	 * @param profileNames The names of the configured elevator profiles in their order
+	 */
+	public ElevatorStore(File directory, Logger logger, List<String> profileNames)
+	{
+		this.directory = directory;
+		this.logger = logger;
+		this.profileNames = new ArrayList<String>(profileNames);
+		this.writer = Executors.newSingleThreadExecutor(runnable ->
+		{
+			Thread thread = new Thread(runnable, "BlockbasedElevators-Store");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+	
+	/**
+	 * This method reads the stored elevators of a world by replaying its journal on top of its snapshot
+	 * It waits for all pending writes, so the result always reflects every change made before. Files that
+	 * can't be read are moved aside, so the next snapshot doesn't replace the elevators they still contain.
+	 * @param worldId The UUID of the world
+	 * @return Every stored elevator, keyed by packed column coordinates, or null if the files could not be read
+	 */
+	public LongObjectHashMap<Record> load(final UUID worldId)
+	{
+		try
+		{
+			return writer.submit(() -> readOrMoveAside(worldId)).get();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e)
+		{
+			logger.log(Level.WARNING, "Could not load the elevators of world " + worldId, e.getCause());
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * This method appends a floor change to the journal of a world in the background
+	 * @param worldId The UUID of the world
+	 * @param operation The journal operation
+	 * @param x The x-coordinate of the elevator
+	 * @param y The y-coordinate of the floor, the profile index when setting the profile, ignored when clearing an elevator
+	 * @param z The z-coordinate of the elevator
+	 */
+	public void append(UUID worldId, byte operation, int x, int y, int z)
+	{
+		synchronized (this)
+		{
+			//entries get collected into batches, so the writer needs a single task per batch
+			if (pendingBatch == null)
+			{
+				final JournalBatch batch = new JournalBatch();
+				pendingBatch = batch;
+				writer.execute(() -> writeJournal(batch));
+			}
+			
+			pendingBatch.add(worldId, operation, x, y, z);
+		}
+	}
+	
+	/**
+	 * This method writes a snapshot of a world in the background and starts a new, empty journal
+	 * @param worldId The UUID of the world
+	 * @param elevators The elevators of the world, which must not be modified afterwards
+	 */
+	public synchronized void writeSnapshot(final UUID worldId, final List<Record> elevators)
+	{
+		//entries added from now on belong after the snapshot, so they need a new batch
+		pendingBatch = null;
+		
+		writer.execute(() ->
+		{
+			try
+			{
+				write(worldId, elevators);
+			}
+			catch (IOException e)
+			{
+				logger.log(Level.WARNING, "Could not write the elevator snapshot of world " + worldId, e);
+			}
+		});
+	}
+	
+	/**
+	 * This method finishes all pending writes and closes the journals
+	 */
+	public void close()
+	{
+		writer.execute(() ->
+		{
+			for (DataOutputStream journal : journals.values())
+				closeQuietly(journal);
+			
+			journals.clear();
+		});
+		
+		writer.shutdown();
+		
+		try
+		{
+			if (!writer.awaitTermination(30, TimeUnit.SECONDS))
+				logger.warning("Timed out while writing the elevator files");
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * This method reads the snapshot and journal of a world, and moves both files aside if that fails
+	 * @param worldId The UUID of the world
+	 * @return Every stored elevator, keyed by packed column coordinates
+	 * @throws IOException If the files can not be read
+	 */
+	private LongObjectHashMap<Record> readOrMoveAside(UUID worldId) throws IOException
+	{
+		try
+		{
+			return read(worldId);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			//a truncated or corrupt file must not be replaced by the snapshot of an empty world
+			DataOutputStream journal = journals.remove(worldId);
+			
+			if (journal != null)
+				closeQuietly(journal);
+			
+			String suffix = ".unreadable-" + System.currentTimeMillis();
+			moveAside(snapshotFile(worldId), suffix, e);
+			moveAside(journalFile(worldId), suffix, e);
+			throw e;
+		}
+	}
+	
+	/**
+	 * This method renames an unreadable file, so it is kept for a manual recovery
+	 * @param file The unreadable file
+	 * @param suffix The suffix appended to the name of the file
+	 * @param cause The exception that made the file unreadable, failures of the rename get added to it
+	 */
+	private void moveAside(File file, String suffix, Exception cause)
+	{
+		if (!file.isFile())
+			return;
+		
+		try
+		{
+			File movedFile = new File(directory, file.getName() + suffix);
+			Files.move(file.toPath(), movedFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			logger.warning("Moved the unreadable elevator file " + file.getName() + " to " + movedFile.getName());
+		}
+		catch (IOException e)
+		{
+			cause.addSuppressed(e);
+		}
+	}
+	
+	/**
+	 * This method reads the snapshot and journal of a world
+	 * @param worldId The UUID of the world
+	 * @return Every stored elevator, keyed by packed column coordinates
+	 * @throws IOException If the files can not be read
+	 */
+	private LongObjectHashMap<Record> read(UUID worldId) throws IOException
+	{
+		LongObjectHashMap<Record> elevators = new LongObjectHashMap<Record>();
+		File snapshotFile = snapshotFile(worldId);
+		File journalFile = journalFile(worldId);
+		
+		if (snapshotFile.isFile())
+		{
+			ByteBuffer buffer = readFile(snapshotFile);
+			
+			int version = buffer.remaining() >= 12 && buffer.getInt() == SNAPSHOT_MAGIC ? buffer.getInt() : 0;
+			
+			if (version == SNAPSHOT_VERSION || version == SNAPSHOT_VERSION_WITHOUT_PROFILES)
+			{
+				boolean withProfiles = version == SNAPSHOT_VERSION;
+				int[] profiles = withProfiles ? readProfiles(buffer) : new int[] { 0 };
+				int count = buffer.getInt();
+				int dropped = 0;
+				
+				for (int i = 0; i < count; i++)
+				{
+					int x = buffer.getInt();
+					int z = buffer.getInt();
+					int profile = profiles[withProfiles ? buffer.get() & 0xFF : 0];
+					int[] heights = new int[buffer.getInt()];
+					buffer.asIntBuffer().get(heights);
+					buffer.position(buffer.position() + heights.length * 4);
+					
+					//elevators of removed profiles are dropped, their floors get found again if another profile matches
+					if (profile < 0)
+						dropped++;
+					else
+						elevators.put(CoordinateKeys.columnKey(x, z), new Record(x, z, profile, heights));
+				}
+				
+				if (dropped > 0)
+					logger.warning("Dropped " + dropped + " stored elevators of profiles that aren't configured anymore");
+			}
+			else
+			{
+				throw new IOException("Unknown format of the elevator snapshot " + snapshotFile.getName());
+			}
+		}
+		
+		if (journalFile.isFile())
+		{
+			ByteBuffer buffer = readFile(journalFile);
+			
+			if (buffer.remaining() >= 8 && buffer.getInt() == JOURNAL_MAGIC && buffer.getInt() == JOURNAL_VERSION)
+			{
+				//a partially written entry at the end of the journal gets ignored
+				while (buffer.remaining() >= JOURNAL_ENTRY_SIZE)
+				{
+					byte operation = buffer.get();
+					int x = buffer.getInt();
+					int y = buffer.getInt();
+					int z = buffer.getInt();
+					
+					replay(elevators, operation, x, y, z);
+				}
+			}
+			else if (buffer.limit() > 0)
+			{
+				throw new IOException("Unknown format of the elevator journal " + journalFile.getName());
+			}
+		}
+		
+		return elevators;
+	}
+	
+	/**
+	 * This method reads the profile table of a snapshot and maps it to the configured profiles
+	 * @param buffer The buffer of the snapshot, positioned at the profile table
+	 * @return The index of the configured profile for every stored profile, -1 for profiles that aren't configured
+	 */
+	private int[] readProfiles(ByteBuffer buffer)
+	{
+		int[] profiles = new int[buffer.getInt()];
+		
+		for (int i = 0; i < profiles.length; i++)
+		{
+			byte[] name = new byte[buffer.getShort() & 0xFFFF];
+			buffer.get(name);
+			profiles[i] = profileNames.indexOf(new String(name, StandardCharsets.UTF_8));
+		}
+		
+		return profiles;
+	}
+	
+	/**
+	 * This method applies a single journal entry to the read elevators
+	 * @param elevators The elevators read so far
+	 * @param operation The journal operation
+	 * @param x The x-coordinate of the elevator
+	 * @param y The y-coordinate of the floor, or the profile index
+	 * @param z The z-coordinate of the elevator
+	 */
+	private void replay(LongObjectHashMap<Record> elevators, byte operation, int x, int y, int z)
+	{
+		long key = CoordinateKeys.columnKey(x, z);
+		Record record = elevators.get(key);
+		int[] heights = record == null ? null : record.floorHeights;
+		int profile = record == null ? 0 : record.profile;
+		
+		switch (operation)
+		{
+			case OPERATION_ADD:
+				if (heights == null)
+				{
+					elevators.put(key, new Record(x, z, profile, new int[] { y }));
+				}
+				else
+				{
+					int index = Arrays.binarySearch(heights, y);
+					
+					if (index < 0)
+					{
+						index = -(index + 1);
+						int[] added = new int[heights.length + 1];
+						System.arraycopy(heights, 0, added, 0, index);
+						added[index] = y;
+						System.arraycopy(heights, index, added, index + 1, heights.length - index);
+						elevators.put(key, new Record(x, z, profile, added));
+					}
+				}
+				break;
+			case OPERATION_REMOVE:
+				if (heights != null)
+				{
+					int index = Arrays.binarySearch(heights, y);
+					
+					if (index >= 0)
+					{
+						int[] removed = new int[heights.length - 1];
+						System.arraycopy(heights, 0, removed, 0, index);
+						System.arraycopy(heights, index + 1, removed, index, heights.length - index - 1);
+						elevators.put(key, new Record(x, z, profile, removed));
+					}
+				}
+				break;
+			case OPERATION_CLEAR:
+				elevators.remove(key);
+				break;
+			case OPERATION_PROFILE:
+				//journals of an older configuration might refer to profiles that don't exist anymore
+				if (y >= 0 && y < profileNames.size())
+					elevators.put(key, new Record(x, z, y, heights == null ? new int[0] : heights));
+				else
+					elevators.remove(key);
+				break;
+			default:
+				break;
+		}
+	}
+	
+	/**
+	 * This method appends a batch of entries to the journals
+	 * @param batch The batch to write
+	 */
+	private void writeJournal(JournalBatch batch)
+	{
+		//close the batch, so no further entries get added to it
+		synchronized (this)
+		{
+			if (pendingBatch == batch)
+				pendingBatch = null;
+		}
+		
+		Map<UUID, DataOutputStream> written = new HashMap<UUID, DataOutputStream>();
+		
+		for (int i = 0; i < batch.size; i++)
+		{
+			UUID worldId = batch.worldIds[i];
+			
+			try
+			{
+				DataOutputStream journal = openJournal(worldId);
+				journal.writeByte(batch.operations[i]);
+				journal.writeInt(batch.xs[i]);
+				journal.writeInt(batch.ys[i]);
+				journal.writeInt(batch.zs[i]);
+				written.put(worldId, journal);
+			}
+			catch (IOException e)
+			{
+				logger.log(Level.WARNING, "Could not write to the elevator journal of world " + worldId, e);
+			}
+		}
+		
+		for (Map.Entry<UUID, DataOutputStream> journal : written.entrySet())
+		{
+			try
+			{
+				journal.getValue().flush();
+			}
+			catch (IOException e)
+			{
+				logger.log(Level.WARNING, "Could not write to the elevator journal of world " + journal.getKey(), e);
+			}
+		}
+	}
+	
+	/**
+	 * This method writes the snapshot of a world and deletes the journal it replaces
+	 * @param worldId The UUID of the world
+	 * @param elevators The elevators of the world
+	 * @throws IOException If the snapshot can not be written
+	 */
+	private void write(UUID worldId, List<Record> elevators) throws IOException
+	{
+		directory.mkdirs();
+		File snapshotFile = snapshotFile(worldId);
+		File temporaryFile = new File(directory, worldId + ".snapshot.tmp");
+		
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile))))
+		{
+			output.writeInt(SNAPSHOT_MAGIC);
+			output.writeInt(SNAPSHOT_VERSION);
+			output.writeInt(profileNames.size());
+			
+			//plain UTF-8 instead of writeUTF, whose modified encoding differs for NUL and supplementary characters
+			for (String name : profileNames)
+			{
+				byte[] encodedName = name.getBytes(StandardCharsets.UTF_8);
+				output.writeShort(encodedName.length);
+				output.write(encodedName);
+			}
+			
+			output.writeInt(elevators.size());
+			
+			for (Record elevator : elevators)
+			{
+				output.writeInt(elevator.x);
+				output.writeInt(elevator.z);
+				output.writeByte(elevator.profile);
+				output.writeInt(elevator.floorHeights.length);
+				
+				for (int height : elevator.floorHeights)
+					output.writeInt(height);
+			}
+		}
+		
+		//replace the old snapshot in one step, so a crash never leaves a half-written snapshot behind
+		Files.move(temporaryFile.toPath(), snapshotFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		
+		//every journal entry written so far is part of the new snapshot
+		DataOutputStream journal = journals.remove(worldId);
+		
+		if (journal != null)
+			closeQuietly(journal);
+		
+		Files.deleteIfExists(journalFile(worldId).toPath());
+	}
+	
+	/**
+	 * This method opens the journal of a world for appending, creating it if needed
+	 * @param worldId The UUID of the world
+	 * @return The stream writing to the end of the journal
+	 * @throws IOException If the journal can not be opened
+	 */
+	private DataOutputStream openJournal(UUID worldId) throws IOException
+	{
+		DataOutputStream journal = journals.get(worldId);
+		
+		if (journal == null)
+		{
+			directory.mkdirs();
+			File journalFile = journalFile(worldId);
+			boolean created = !journalFile.isFile() || journalFile.length() == 0;
+			
+			journal = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(journalFile, true)));
+			
+			if (created)
+			{
+				journal.writeInt(JOURNAL_MAGIC);
+				journal.writeInt(JOURNAL_VERSION);
+			}
+			
+			journals.put(worldId, journal);
+		}
+		
+		return journal;
+	}
+	
+	/**
+	 * This method reads a whole file into memory
+	 * The file is read into a heap buffer instead of being mapped, since a mapped file stays open until 
+	 * the buffer gets collected, and open files can't be replaced or deleted on every platform.
+	 * @param file The file to read
+	 * @return The buffer holding the content of the file
+	 * @throws IOException If the file can not be read
+	 */
+	private ByteBuffer readFile(File file) throws IOException
+	{
+		return ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+	}
+	
+	/**
+	 * This method closes a journal, only logging failures
+	 * @param journal The journal to close
+	 */
+	private void closeQuietly(DataOutputStream journal)
+	{
+		try
+		{
+			journal.close();
+		}
+		catch (IOException e)
+		{
+			logger.log(Level.WARNING, "Could not close an elevator journal", e);
+		}
+	}
+	
+	/**
+	 * This method gets the snapshot file of a world
+	 * @param worldId The UUID of the world
+	 * @return The snapshot file
+	 */
+	private File snapshotFile(UUID worldId)
+	{
+		return new File(directory, worldId + ".snapshot");
+	}
+	
+	/**
+	 * This method gets the journal file of a world
+	 * @param worldId The UUID of the world
+	 * @return The journal file
+	 */
+	private File journalFile(UUID worldId)
+	{
+		return new File(directory, worldId + ".journal");
+	}
+	
+	/**
+	 * This class is an immutable copy of an elevator used for reading and writing snapshots
+	 */
+	public static class Record
+	{
+		final int x;
+		final int z;
+		final int profile;
+		final int[] floorHeights;
+		
+		/**
+		 * Constructor for the creation of a record
+		 * @param x The x-coordinate of the elevator
+		 * @param z The z-coordinate of the elevator
+		 * @param profile The index of the elevator's profile
+		 * @param floorHeights The sorted floor heights of the elevator
+		 */
+		Record(int x, int z, int profile, int[] floorHeights)
+		{
+			this.x = x;
+			this.z = z;
+			this.profile = profile;
+			this.floorHeights = floorHeights;
+		}
+	}
+	
+	/**
+	 * This class collects journal entries until the writer thread picks them up
+	 */
+	private static class JournalBatch
+	{
+		private UUID[] worldIds = new UUID[16];
+		private byte[] operations = new byte[16];
+		private int[] xs = new int[16];
+		private int[] ys = new int[16];
+		private int[] zs = new int[16];
+		private int size;
+		
+		/**
+		 * This method adds an entry to the batch
+		 * @param worldId The UUID of the world
+		 * @param operation The journal operation
+		 * @param x The x-coordinate of the elevator
+		 * @param y The y-coordinate of the floor
+		 * @param z The z-coordinate of the elevator
+		 */
+		private void add(UUID worldId, byte operation, int x, int y, int z)
+		{
+			if (size == worldIds.length)
+			{
+				worldIds = Arrays.copyOf(worldIds, size * 2);
+				operations = Arrays.copyOf(operations, size * 2);
+				xs = Arrays.copyOf(xs, size * 2);
+				ys = Arrays.copyOf(ys, size * 2);
+				zs = Arrays.copyOf(zs, size * 2);
+			}
+			
+			worldIds[size] = worldId;
+			operations[size] = operation;
+			xs[size] = x;
+			ys[size] = y;
+			zs[size] = z;
+			size++;
+		}
+	}
+}
@@ -0,0 +1,189 @@
+package me.evvie.blockbasedelevators.elevators;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+
+import me.evvie.blockbasedelevators.metrics.ElevatorMetrics;
+
+/**
+ * This class re-checks the known floors against the world in the background
+ * Blocks changed without a BlockBreakEvent (pistons, explosions, world editors) leave floors behind
+ * that no longer exist. The sweeper checks a few floors every tick until its time budget is used up,
+ * starting with the recently used elevators, and removes the floors that aren't valid anymore.
+ */
+public class ElevatorSweeper
+{
+	//minimum amount of ticks between the starts of two full sweeps over all elevators
+	private static final int MIN_SWEEP_TICKS = 20 * 30;
+	
+	private final Server server;
+	private final ElevatorManager elevatorManager;
+	private final long budgetNanos;
+	
+	//elevators of the current full sweep, and the index of the next one to check
+	private final List<Elevator> sweepElevators = new ArrayList<Elevator>();
+	private int sweepIndex;
+	private int ticksSinceSweepStart = MIN_SWEEP_TICKS;
+	
+	//the elevator currently being checked, and the index of its next floor
+	private Elevator currentElevator;
+	private World currentWorld;
+	private int floorIndex;
+	
+	private long checkedFloors;
+	private long removedFloors;
+	
+	/**
+	 * Constructor for the creation of the sweeper
+	 * @param plugin A reference to the main-class of this plug-in
+	 * @param elevatorManager The manager of the elevators to check
+	 * @param budgetMicros The time in microseconds the sweeper may use per tick, 0 disables it
+	 * @param metrics The metrics the checked and removed floors get reported in
+	 */
+	public ElevatorSweeper(Plugin plugin, ElevatorManager elevatorManager, int budgetMicros, ElevatorMetrics metrics)
+	{
+		server = plugin.getServer();
+		this.elevatorManager = elevatorManager;
+		budgetNanos = budgetMicros * 1000L;
+		
+		metrics.registerGauge("Swept floors", () -> checkedFloors);
+		metrics.registerGauge("Stale floors removed", () -> removedFloors);
+		
+		if (budgetNanos > 0)
+			server.getScheduler().runTaskTimer(plugin, this::sweep, 1, 1);
+	}
+	
+	/**
+	 * This method checks floors until the budget of the current tick is used up
+	 */
+	private void sweep()
+	{
+		long deadline = System.nanoTime() + budgetNanos;
+		ticksSinceSweepStart++;
+		
+		//the chunks of the current elevator may have been unloaded since the last tick
+		if (currentElevator != null && (currentWorld = getReadableWorld(currentElevator)) == null)
+			currentElevator = null;
+		
+		do
+		{
+			if (currentElevator == null && !nextElevator())
+				return;
+			
+			if (floorIndex >= currentElevator.floorCount())
+			{
+				currentElevator = null;
+				continue;
+			}
+			
+			//a removed floor shifts the following floors down, so the index only moves on valid floors
+			if (elevatorManager.validateFloor(currentWorld, currentElevator, currentElevator.getFloorHeight(floorIndex)))
+				floorIndex++;
+			else
+				removedFloors++;
+			
+			checkedFloors++;
+		}
+		while (System.nanoTime() < deadline);
+	}
+	
+	/**
+	 * This method selects the next elevator to check, recently used elevators come first
+	 * @return True if an elevator got selected, false if there is nothing to check in this tick
+	 */
+	private boolean nextElevator()
+	{
+		Elevator elevator;
+		
+		while ((elevator = elevatorManager.pollUsedElevator()) != null)
+		{
+			if (select(elevator))
+				return true;
+		}
+		
+		while (true)
+		{
+			if (sweepIndex >= sweepElevators.size() && !startSweep())
+				return false;
+			
+			elevator = sweepElevators.get(sweepIndex);
+			sweepElevators.set(sweepIndex++, null);
+			
+			if (select(elevator))
+				return true;
+		}
+	}
+	
+	/**
+	 * This method starts a new full sweep over all known elevators, if the last one started long enough ago
+	 * @return True if the new sweep contains any elevators, false otherwise
+	 */
+	private boolean startSweep()
+	{
+		sweepElevators.clear();
+		sweepIndex = 0;
+		
+		//small servers would otherwise check the same few floors over and over
+		if (ticksSinceSweepStart < MIN_SWEEP_TICKS)
+			return false;
+		
+		ticksSinceSweepStart = 0;
+		ElevatorRegistry registry = elevatorManager.getRegistry();
+		
+		for (UUID worldId : registry.getWorlds())
+			registry.forEach(worldId, (key, elevator) -> sweepElevators.add(elevator));
+		
+		return !sweepElevators.isEmpty();
+	}
+	
+	/**
+	 * This method selects an elevator for checking, if its floors can be read without loading chunks
+	 * @param elevator The elevator
+	 * @return True if the elevator got selected, false if it has to be skipped
+	 */
+	private boolean select(Elevator elevator)
+	{
+		World world = getReadableWorld(elevator);
+		
+		if (world == null)
+			return false;
+		
+		currentElevator = elevator;
+		currentWorld = world;
+		floorIndex = 0;
+		return true;
+	}
+	
+	/**
+	 * This method gets the world of an elevator, if the elevator is known and its floors can be read 
+	 * without loading chunks
+	 * @param elevator The elevator
+	 * @return The world of the elevator, or null if the elevator has to be skipped
+	 */
+	private World getReadableWorld(Elevator elevator)
+	{
+		//skip elevators that got evicted or replaced since they were queued
+		if (elevatorManager.getKnownElevator(elevator.getWorldId(), elevator.getX(), elevator.getZ()) != elevator)
+			return null;
+		
+		World world = server.getWorld(elevator.getWorldId());
+		
+		if (world == null)
+			return null;
+		
+		//the rim of an elevator at a chunk border lies in the neighbouring chunk
+		int x = elevator.getX();
+		int z = elevator.getZ();
+		
+		if (!world.isChunkLoaded((x - 1) >> 4, z >> 4) || !world.isChunkLoaded((x + 1) >> 4, z >> 4)
+				|| !world.isChunkLoaded(x >> 4, (z - 1) >> 4) || !world.isChunkLoaded(x >> 4, (z + 1) >> 4))
+			return null;
+		
+		return world;
+	}
+}
@@ -0,0 +1,208 @@
+package me.evvie.blockbasedelevators.elevators;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import me.evvie.blockbasedelevators.util.CoordinateKeys;
+import me.evvie.blockbasedelevators.util.IntIntHashMap;
+import me.evvie.blockbasedelevators.util.LongObjectHashMap;
+
+/**
+ * This class remembers the results of floor checks, so checking an unchanged floor again reads no blocks
+ * Every chunk with remembered results has a generation, which is increased whenever a block in the
+ * chunk or at the border of a neighbouring chunk changes. Results are stamped with the generation of
+ * their chunk and stay valid as long as it doesn't change. Block changes without an event, like those
+ * of other plug-ins, aren't seen by the cache. The sweeper reads those floors again and corrects them.
+ */
+class ElevatorValidityCache
+{
+	//result of the get method if the floor has to be read again
+	static final int UNKNOWN = -2;
+	
+	//generations wrap around within 26 bits, so stamped results are never negative
+	//the lower 5 bits hold the matched profile plus one, so NO_PROFILE gets stored as 0
+	private static final int GENERATION_MASK = 0x03FFFFFF;
+	private static final int PROFILE_BITS = 5;
+	private static final int MISSING = -1;
+	
+	//results of a chunk get dropped once this many are remembered, most of them are stale by then
+	private static final int MAX_RESULTS_PER_CHUNK = 256;
+	
+	//remembered results of every world, indexed by packed chunk coordinates
+	private final Map<UUID, LongObjectHashMap<ChunkResults>> worlds = new HashMap<UUID, LongObjectHashMap<ChunkResults>>();
+	
+	private long hits;
+	
+	/**
+	 * This class holds the generation of a chunk and the stamped results of its floors
+	 */
+	private static class ChunkResults
+	{
+		private int generation;
+		
+		//(generation << 5) | (profile + 1), indexed by the position of the floor center inside the chunk
+		private final IntIntHashMap results = new IntIntHashMap();
+	}
+	
+	/**
+	 * This method looks up the remembered result of a floor check
+	 * @param worldId The UUID of the world
+	 * @param x The x-coordinate of the floor center
+	 * @param y The y-coordinate of the floor center
+	 * @param z The z-coordinate of the floor center
+	 * @return The index of the matched profile, ElevatorProfiles.NO_PROFILE, or UNKNOWN if the floor has to be read again
+	 */
+	int get(UUID worldId, int x, int y, int z)
+	{
+		ChunkResults chunk = getChunk(worldId, x >> 4, z >> 4);
+		
+		if (chunk == null)
+			return UNKNOWN;
+		
+		int result = chunk.results.get(position(x, y, z), MISSING);
+		
+		//results stamped with an older generation are stale
+		if (result == MISSING || (result >>> PROFILE_BITS) != chunk.generation)
+			return UNKNOWN;
+		
+		hits++;
+		return (result & ((1 << PROFILE_BITS) - 1)) - 1;
+	}
+	
+	/**
+	 * This method remembers the result of a floor check that just read the blocks of the floor
+	 * @param worldId The UUID of the world
+	 * @param x The x-coordinate of the floor center
+	 * @param y The y-coordinate of the floor center
+	 * @param z The z-coordinate of the floor center
+	 * @param profile The index of the matched profile, or ElevatorProfiles.NO_PROFILE
+	 */
+	void put(UUID worldId, int x, int y, int z, int profile)
+	{
+		LongObjectHashMap<ChunkResults> worldChunks = worlds.get(worldId);
+		
+		if (worldChunks == null)
+		{
+			worldChunks = new LongObjectHashMap<ChunkResults>();
+			worlds.put(worldId, worldChunks);
+		}
+		
+		long chunkKey = CoordinateKeys.columnKey(x >> 4, z >> 4);
+		ChunkResults chunk = worldChunks.get(chunkKey);
+		
+		if (chunk == null)
+		{
+			chunk = new ChunkResults();
+			worldChunks.put(chunkKey, chunk);
+		}
+		else if (chunk.results.size() >= MAX_RESULTS_PER_CHUNK)
+		{
+			chunk.results.clear();
+		}
+		
+		chunk.results.put(position(x, y, z), (chunk.generation << PROFILE_BITS) | (profile + 1));
+	}
+	
+	/**
+	 * This method makes the results of all floors a changed block can be part of stale
+	 * Rim blocks can belong to a floor centered in a neighbouring chunk, so blocks at the border of
+	 * a chunk make the results of the neighbouring chunk stale as well.
+	 * @param worldId The UUID of the world
+	 * @param x The x-coordinate of the changed block
+	 * @param z The z-coordinate of the changed block
+	 */
+	void invalidate(UUID worldId, int x, int z)
+	{
+		LongObjectHashMap<ChunkResults> worldChunks = worlds.get(worldId);
+		
+		if (worldChunks == null)
+			return;
+		
+		int chunkX = x >> 4;
+		int chunkZ = z >> 4;
+		
+		nextGeneration(worldChunks, chunkX, chunkZ);
+		
+		if ((x & 15) == 0)
+			nextGeneration(worldChunks, chunkX - 1, chunkZ);
+		else if ((x & 15) == 15)
+			nextGeneration(worldChunks, chunkX + 1, chunkZ);
+		
+		if ((z & 15) == 0)
+			nextGeneration(worldChunks, chunkX, chunkZ - 1);
+		else if ((z & 15) == 15)
+			nextGeneration(worldChunks, chunkX, chunkZ + 1);
+	}
+	
+	/**
+	 * This method forgets the results of an unloaded chunk
+	 * @param worldId The UUID of the world
+	 * @param chunkX The x-coordinate of the chunk
+	 * @param chunkZ The z-coordinate of the chunk
+	 */
+	void removeChunk(UUID worldId, int chunkX, int chunkZ)
+	{
+		LongObjectHashMap<ChunkResults> worldChunks = worlds.get(worldId);
+		
+		if (worldChunks != null)
+			worldChunks.remove(CoordinateKeys.columnKey(chunkX, chunkZ));
+	}
+	
+	/**
+	 * This method forgets the results of an unloaded world
+	 * @param worldId The UUID of the world
+	 */
+	void removeWorld(UUID worldId)
+	{
+		worlds.remove(worldId);
+	}
+	
+	/**
+	 * This method gets the amount of checks answered without reading any blocks
+	 * @return The amount of cache hits since the start-up
+	 */
+	long getHits()
+	{
+		return hits;
+	}
+	
+	/**
+	 * This method looks up the results of a chunk
+	 * @param worldId The UUID of the world
+	 * @param chunkX The x-coordinate of the chunk
+	 * @param chunkZ The z-coordinate of the chunk
+	 * @return The results of the chunk, or null if none are remembered
+	 */
+	private ChunkResults getChunk(UUID worldId, int chunkX, int chunkZ)
+	{
+		LongObjectHashMap<ChunkResults> worldChunks = worlds.get(worldId);
+		return worldChunks == null ? null : worldChunks.get(CoordinateKeys.columnKey(chunkX, chunkZ));
+	}
+	
+	/**
+	 * This method increases the generation of a chunk, if it has remembered results
+	 * @param worldChunks The results of the chunk's world
+	 * @param chunkX The x-coordinate of the chunk
+	 * @param chunkZ The z-coordinate of the chunk
+	 */
+	private static void nextGeneration(LongObjectHashMap<ChunkResults> worldChunks, int chunkX, int chunkZ)
+	{
+		ChunkResults chunk = worldChunks.get(CoordinateKeys.columnKey(chunkX, chunkZ));
+		
+		if (chunk != null)
+			chunk.generation = (chunk.generation + 1) & GENERATION_MASK;
+	}
+	
+	/**
+	 * This method packs the position of a floor center inside its chunk into an int
+	 * @param x The x-coordinate of the floor center
+	 * @param y The y-coordinate of the floor center
+	 * @param z The z-coordinate of the floor center
+	 * @return The packed position
+	 */
+	private static int position(int x, int y, int z)
+	{
+		return (y << 8) | ((z & 15) << 4) | (x & 15);
+	}
+}
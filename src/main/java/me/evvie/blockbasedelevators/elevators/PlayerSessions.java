@@ -0,0 +1,255 @@
+package me.evvie.blockbasedelevators.elevators;
+
+import java.util.Arrays;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+
+import me.evvie.blockbasedelevators.util.CoordinateKeys;
+import me.evvie.blockbasedelevators.util.IntIntHashMap;
+
+/**
+ * This class holds the state of every online player in a small slot
+ * A slot gets allocated when the player joins and reused once the player quits, so no player is
+ * referenced after leaving. The state of all players is kept in parallel arrays indexed by the slot,
+ * and the slot of a player is looked up once per event by the player's entity id.
+ */
+public class PlayerSessions implements Listener
+{
+	//slot of players without a session, like players created by other plug-ins
+	public static final int NO_SLOT = -1;
+	
+	private static final int DEFAULT_CAPACITY = 16;
+	
+	//slots of the online players by their entity ids, and the slots freed by leaving players
+	private final IntIntHashMap slots = new IntIntHashMap();
+	private int[] freeSlots = new int[DEFAULT_CAPACITY];
+	private int freeSlotCount;
+	private int usedSlots;
+	
+	//state of the players, indexed by their slots
+	private Player[] players = new Player[DEFAULT_CAPACITY];
+	private boolean[] jumping = new boolean[DEFAULT_CAPACITY];
+	private ElevatorFloorDisplayManager.FloorDisplay[] floorDisplays = new ElevatorFloorDisplayManager.FloorDisplay[DEFAULT_CAPACITY];
+	private long[] lastTeleportTimes = new long[DEFAULT_CAPACITY];
+	private long[] lastTeleportColumns = new long[DEFAULT_CAPACITY];
+	private int[] lastTeleportHeights = new int[DEFAULT_CAPACITY];
+	private long[] teleportBuckets = new long[DEFAULT_CAPACITY];
+	
+	/**
+	 * Constructor for the creation of the sessions of the players already online
+	 * @param onlinePlayers The players online while this plug-in gets enabled
+	 */
+	public PlayerSessions(Iterable<? extends Player> onlinePlayers)
+	{
+		for (Player player : onlinePlayers)
+			open(player);
+	}
+	
+	/**
+	 * The event-handler used to open the session of a joining player before anything else uses it
+	 * @param event PlayerJoinEvent
+	 */
+	@EventHandler(priority = EventPriority.LOWEST)
+	public void onPlayerJoin(PlayerJoinEvent event)
+	{
+		open(event.getPlayer());
+	}
+	
+	/**
+	 * The event-handler used to close the session of a leaving player after everything else cleaned up
+	 * @param event PlayerQuitEvent
+	 */
+	@EventHandler(priority = EventPriority.MONITOR)
+	public void onPlayerQuit(PlayerQuitEvent event)
+	{
+		int slot = slots.remove(event.getPlayer().getEntityId(), NO_SLOT);
+		
+		if (slot == NO_SLOT)
+			return;
+		
+		//clear the slot, so its next player starts fresh and the leaving player can be collected
+		players[slot] = null;
+		jumping[slot] = false;
+		floorDisplays[slot] = null;
+		lastTeleportTimes[slot] = 0;
+		lastTeleportColumns[slot] = 0;
+		lastTeleportHeights[slot] = 0;
+		teleportBuckets[slot] = 0;
+		
+		if (freeSlotCount == freeSlots.length)
+			freeSlots = Arrays.copyOf(freeSlots, freeSlotCount * 2);
+		
+		freeSlots[freeSlotCount++] = slot;
+	}
+	
+	/**
+	 * This method gets the slot of a player
+	 * @param player The player
+	 * @return The slot of the player, or NO_SLOT if the player has no session
+	 */
+	public int getSlot(Player player)
+	{
+		return slots.get(player.getEntityId(), NO_SLOT);
+	}
+	
+	/**
+	 * This method gets the player of a slot
+	 * @param slot The slot
+	 * @return The player, or null if the slot is unused
+	 */
+	public Player getPlayer(int slot)
+	{
+		return players[slot];
+	}
+	
+	/**
+	 * This method checks if a player is in the middle of a jump
+	 * @param slot The slot of the player
+	 * @return True if the player is jumping, false otherwise
+	 */
+	public boolean isJumping(int slot)
+	{
+		return jumping[slot];
+	}
+	
+	/**
+	 * This method sets if a player is in the middle of a jump
+	 * @param slot The slot of the player
+	 * @param isJumping True if the player started a jump, false if the player landed
+	 */
+	public void setJumping(int slot, boolean isJumping)
+	{
+		jumping[slot] = isJumping;
+	}
+	
+	/**
+	 * This method remembers the last elevator teleport of a player
+	 * @param slot The slot of the player
+	 * @param x The x-coordinate of the target floor
+	 * @param y The y-coordinate of the target floor
+	 * @param z The z-coordinate of the target floor
+	 */
+	public void recordTeleport(int slot, int x, int y, int z)
+	{
+		lastTeleportTimes[slot] = System.nanoTime();
+		lastTeleportColumns[slot] = CoordinateKeys.columnKey(x, z);
+		lastTeleportHeights[slot] = y;
+	}
+	
+	/**
+	 * This method gets the time of the last elevator teleport of a player
+	 * @param slot The slot of the player
+	 * @return The System.nanoTime() of the teleport, or 0 if the player hasn't teleported yet
+	 */
+	public long getLastTeleportTime(int slot)
+	{
+		return lastTeleportTimes[slot];
+	}
+	
+	/**
+	 * This method gets the column of the last elevator teleport of a player
+	 * @param slot The slot of the player
+	 * @return The packed coordinates of the column, see CoordinateKeys
+	 */
+	public long getLastTeleportColumn(int slot)
+	{
+		return lastTeleportColumns[slot];
+	}
+	
+	/**
+	 * This method gets the height of the last target floor of a player
+	 * @param slot The slot of the player
+	 * @return The y-coordinate of the target floor
+	 */
+	public int getLastTeleportHeight(int slot)
+	{
+		return lastTeleportHeights[slot];
+	}
+	
+	/**
+	 * This method gets the state of the token bucket limiting the teleports of a player
+	 * @param slot The slot of the player
+	 * @return The state of the bucket, see TokenBucket
+	 */
+	public long getTeleportBucket(int slot)
+	{
+		return teleportBuckets[slot];
+	}
+	
+	/**
+	 * This method sets the state of the token bucket limiting the teleports of a player
+	 * @param slot The slot of the player
+	 * @param teleportBucket The new state of the bucket
+	 */
+	public void setTeleportBucket(int slot, long teleportBucket)
+	{
+		teleportBuckets[slot] = teleportBucket;
+	}
+	
+	/**
+	 * This method gets the amount of open sessions
+	 * @return The amount of online players with a session
+	 */
+	public int size()
+	{
+		return slots.size();
+	}
+	
+	/**
+	 * This method gets the floor display of a player
+	 * @param slot The slot of the player
+	 * @return The display, or null if the player never saw one
+	 */
+	ElevatorFloorDisplayManager.FloorDisplay getFloorDisplay(int slot)
+	{
+		return floorDisplays[slot];
+	}
+	
+	/**
+	 * This method sets the floor display of a player
+	 * @param slot The slot of the player
+	 * @param display The display
+	 */
+	void setFloorDisplay(int slot, ElevatorFloorDisplayManager.FloorDisplay display)
+	{
+		floorDisplays[slot] = display;
+	}
+	
+	/**
+	 * This method allocates the slot of a player, reusing the slots of players that left
+	 * @param player The player
+	 */
+	private void open(Player player)
+	{
+		if (slots.get(player.getEntityId(), NO_SLOT) != NO_SLOT)
+			return;
+		
+		int slot = freeSlotCount > 0 ? freeSlots[--freeSlotCount] : usedSlots++;
+		
+		if (slot == players.length)
+			grow(slot * 2);
+		
+		players[slot] = player;
+		slots.put(player.getEntityId(), slot);
+	}
+	
+	/**
+	 * This method grows the arrays of the player states
+	 * @param capacity The new amount of slots
+	 */
+	private void grow(int capacity)
+	{
+		players = Arrays.copyOf(players, capacity);
+		jumping = Arrays.copyOf(jumping, capacity);
+		floorDisplays = Arrays.copyOf(floorDisplays, capacity);
+		lastTeleportTimes = Arrays.copyOf(lastTeleportTimes, capacity);
+		lastTeleportColumns = Arrays.copyOf(lastTeleportColumns, capacity);
+		lastTeleportHeights = Arrays.copyOf(lastTeleportHeights, capacity);
+		teleportBuckets = Arrays.copyOf(teleportBuckets, capacity);
+	}
+}
@@ -0,0 +1,121 @@
+package me.evvie.blockbasedelevators.elevators;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.bukkit.Server;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+
+import me.evvie.blockbasedelevators.metrics.ElevatorMetrics;
+import me.evvie.blockbasedelevators.util.CoordinateKeys;
+import me.evvie.blockbasedelevators.util.LongHashSet;
+
+/**
+ * This class runs the full scans of newly found elevators within a time budget per tick
+ * Unknown elevators used by many players at once, like after a restart, would otherwise each scan
+ * their whole column inside of the event handler. The ElevatorManager serves their first use from
+ * the floors next to the used one and requests the full scan here. Requests for a column that is
+ * already waiting are dropped, and the scans run in the order they were requested.
+ */
+public class RescanScheduler
+{
+	private final Server server;
+	private final ElevatorManager elevatorManager;
+	private final long budgetNanos;
+	
+	//elevators waiting for their scan, and their columns packed per world
+	private final ArrayDeque<Elevator> queue = new ArrayDeque<Elevator>();
+	private final Map<UUID, LongHashSet> pendingColumns = new HashMap<UUID, LongHashSet>();
+	
+	private long droppedRequests;
+	
+	/**
+	 * Constructor for the creation of the scheduler, which registers itself with the manager
+	 * @param plugin A reference to the main-class of this plug-in
+	 * @param elevatorManager The manager of the elevators to scan
+	 * @param budgetMicros The time in microseconds the scans may use per tick, 0 scans every elevator right away
+	 * @param metrics The metrics the queued scans get reported in
+	 */
+	public RescanScheduler(Plugin plugin, ElevatorManager elevatorManager, int budgetMicros, ElevatorMetrics metrics)
+	{
+		server = plugin.getServer();
+		this.elevatorManager = elevatorManager;
+		budgetNanos = budgetMicros * 1000L;
+		
+		metrics.registerGauge("Queued rescans", queue::size);
+		metrics.registerGauge("Duplicate rescans dropped", () -> droppedRequests);
+		
+		if (budgetNanos > 0)
+		{
+			elevatorManager.setRescanScheduler(this);
+			server.getScheduler().runTaskTimer(plugin, this::runScans, 1, 1);
+		}
+	}
+	
+	/**
+	 * This method requests the full scan of an elevator's column
+	 * @param elevator The elevator
+	 */
+	void request(Elevator elevator)
+	{
+		LongHashSet worldColumns = pendingColumns.get(elevator.getWorldId());
+		
+		if (worldColumns == null)
+		{
+			worldColumns = new LongHashSet();
+			pendingColumns.put(elevator.getWorldId(), worldColumns);
+		}
+		
+		if (!worldColumns.add(CoordinateKeys.columnKey(elevator.getX(), elevator.getZ())))
+		{
+			droppedRequests++;
+			return;
+		}
+		
+		queue.add(elevator);
+	}
+	
+	/**
+	 * This method scans the waiting elevators until the budget of the current tick is used up
+	 * At least one elevator gets scanned per tick, so a budget below the cost of a scan can't stall the queue.
+	 */
+	private void runScans()
+	{
+		long deadline = System.nanoTime() + budgetNanos;
+		Elevator elevator;
+		
+		do
+		{
+			if ((elevator = queue.poll()) == null)
+				return;
+			
+			LongHashSet worldColumns = pendingColumns.get(elevator.getWorldId());
+			worldColumns.remove(CoordinateKeys.columnKey(elevator.getX(), elevator.getZ()));
+			
+			if (worldColumns.isEmpty())
+				pendingColumns.remove(elevator.getWorldId());
+			
+			//a column replaced since the request gets the scan of its current elevator
+			Elevator knownElevator = elevatorManager.getKnownElevator(elevator.getWorldId(), elevator.getX(), elevator.getZ());
+			World world = server.getWorld(elevator.getWorldId());
+			
+			//elevators of unloaded chunks keep the floors found so far, missing floors get added once they are used
+			if (knownElevator != null && world != null && world.isChunkLoaded(elevator.getX() >> 4, elevator.getZ() >> 4))
+				elevatorManager.rescanScheduledElevator(world, knownElevator);
+		}
+		while (System.nanoTime() < deadline);
+	}
+	
+	/**
+	 * This method forgets the waiting scans of an unloaded world
+	 * @param worldId The UUID of the world
+	 */
+	void removeWorld(UUID worldId)
+	{
+		if (pendingColumns.remove(worldId) != null)
+			queue.removeIf(elevator -> elevator.getWorldId().equals(worldId));
+	}
+}
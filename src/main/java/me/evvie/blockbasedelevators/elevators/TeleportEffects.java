@@ -0,0 +1,203 @@
+package me.evvie.blockbasedelevators.elevators;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.bukkit.Location;
+import org.bukkit.Particle;
+import org.bukkit.Sound;
+import org.bukkit.World;
+import org.bukkit.plugin.Plugin;
+
+import me.evvie.blockbasedelevators.metrics.ElevatorMetrics;
+import me.evvie.blockbasedelevators.util.CoordinateKeys;
+import me.evvie.blockbasedelevators.util.LongObjectHashMap;
+
+/**
+ * This class plays the particles and sounds of elevator teleports within a budget
+ * Effects are collected during a tick and played once per tick. Teleports in the same column are 
+ * merged into a single effect, and effects exceeding the per-tick or per-chunk budget are dropped,
+ * starting with the ones of the lowest priority.
+ */
+class TeleportEffects
+{
+	//priorities of the effects, lower values get played first
+	private static final int PRIORITY_SOUND = 0;
+	private static final int PRIORITY_ARRIVAL = 1;
+	private static final int PRIORITY_DEPARTURE = 2;
+	
+	private final int tickBudget;
+	private final int chunkBudget;
+	
+	//effects of the current tick, and the same effects indexed by column to merge them
+	private final List<PendingEffect> pendingEffects = new ArrayList<PendingEffect>();
+	private final LongObjectHashMap<PendingEffect> pendingColumns = new LongObjectHashMap<PendingEffect>();
+	
+	//effects played per chunk in the current tick, indexed by world and packed chunk coordinates
+	private final Map<UUID, LongObjectHashMap<int[]>> chunkUsage = new HashMap<UUID, LongObjectHashMap<int[]>>();
+	private long droppedEffects;
+	
+	/**
+	 * Constructor for the creation of the effect player
+	 * @param plugin A reference to the main-class of this plug-in
+	 * @param tickBudget The maximum amount of effects played per tick
+	 * @param chunkBudget The maximum amount of effects played per chunk and tick
+	 * @param metrics The metrics the dropped effects get reported in
+	 */
+	TeleportEffects(Plugin plugin, int tickBudget, int chunkBudget, ElevatorMetrics metrics)
+	{
+		this.tickBudget = tickBudget;
+		this.chunkBudget = chunkBudget;
+		
+		metrics.registerGauge("Dropped effects", () -> droppedEffects);
+		
+		//play the collected effects once per tick
+		plugin.getServer().getScheduler().runTaskTimer(plugin, this::playPendingEffects, 1, 1);
+	}
+	
+	/**
+	 * This method queues the effects of a teleport, which has already happened
+	 * @param from The location the player left
+	 * @param to The location the player arrived at
+	 */
+	void playTeleportEffects(Location from, Location to)
+	{
+		long columnKey = CoordinateKeys.columnKey(to.getBlockX(), to.getBlockZ());
+		PendingEffect effect = pendingColumns.get(columnKey);
+		
+		//other players used the same column in this tick already
+		if (effect != null && effect.world == to.getWorld())
+			return;
+		
+		effect = new PendingEffect(from, to);
+		pendingEffects.add(effect);
+		
+		if (!pendingColumns.containsKey(columnKey))
+			pendingColumns.put(columnKey, effect);
+	}
+	
+	/**
+	 * This method plays the effects collected in this tick, as long as the budgets allow it
+	 */
+	private void playPendingEffects()
+	{
+		if (pendingEffects.isEmpty())
+			return;
+		
+		int played = 0;
+		
+		//every priority gets played for all columns before the next lower one
+		for (int priority = PRIORITY_SOUND; priority <= PRIORITY_DEPARTURE; priority++)
+		{
+			for (int i = 0; i < pendingEffects.size(); i++)
+			{
+				PendingEffect effect = pendingEffects.get(i);
+				
+				if (played < tickBudget && reserveChunkBudget(effect.world, effect.chunkKey))
+				{
+					playEffect(effect, priority);
+					played++;
+				}
+				else
+				{
+					droppedEffects++;
+				}
+			}
+		}
+		
+		pendingEffects.clear();
+		pendingColumns.clear();
+		
+		for (LongObjectHashMap<int[]> worldUsage : chunkUsage.values())
+			worldUsage.clear();
+	}
+	
+	/**
+	 * This method takes one effect from the budget of a chunk
+	 * @param world The world of the chunk
+	 * @param chunkKey The packed coordinates of the chunk
+	 * @return True if the chunk had budget left, false otherwise
+	 */
+	private boolean reserveChunkBudget(World world, long chunkKey)
+	{
+		LongObjectHashMap<int[]> worldUsage = chunkUsage.get(world.getUID());
+		
+		if (worldUsage == null)
+		{
+			worldUsage = new LongObjectHashMap<int[]>();
+			chunkUsage.put(world.getUID(), worldUsage);
+		}
+		
+		int[] usage = worldUsage.get(chunkKey);
+		
+		if (usage == null)
+		{
+			usage = new int[1];
+			worldUsage.put(chunkKey, usage);
+		}
+		
+		if (usage[0] >= chunkBudget)
+			return false;
+		
+		usage[0]++;
+		return true;
+	}
+	
+	/**
+	 * This method plays a single effect of a teleport
+	 * @param effect The teleport
+	 * @param priority The priority of the effect to play
+	 */
+	private void playEffect(PendingEffect effect, int priority)
+	{
+		switch (priority)
+		{
+			case PRIORITY_SOUND:
+				effect.world.playSound(new Location(effect.world, effect.fromX, effect.fromY, effect.fromZ), Sound.ENTITY_ENDERMAN_TELEPORT, 1, 1);
+				break;
+			case PRIORITY_ARRIVAL:
+				effect.world.spawnParticle(Particle.GLOW, effect.toX, effect.toY + 1, effect.toZ, 10, 0.5, 1, 0.5);
+				break;
+			case PRIORITY_DEPARTURE:
+				effect.world.spawnParticle(Particle.GLOW, effect.fromX, effect.fromY + 1, effect.fromZ, 10, 0.5, 1, 0.5);
+				break;
+			default:
+				break;
+		}
+	}
+	
+	/**
+	 * This class holds the locations of a teleport until its effects get played
+	 */
+	private static class PendingEffect
+	{
+		private final World world;
+		private final long chunkKey;
+		private final double fromX;
+		private final double fromY;
+		private final double fromZ;
+		private final double toX;
+		private final double toY;
+		private final double toZ;
+		
+		/**
+		 * Constructor for the creation of a pending effect
+		 * @param from The location the player left
+		 * @param to The location the player arrived at
+		 */
+		PendingEffect(Location from, Location to)
+		{
+			world = to.getWorld();
+			chunkKey = CoordinateKeys.columnKey(to.getBlockX() >> 4, to.getBlockZ() >> 4);
+			fromX = from.getX();
+			fromY = from.getY();
+			fromZ = from.getZ();
+			toX = to.getX();
+			toY = to.getY();
+			toZ = to.getZ();
+		}
+	}
+}
@@ -0,0 +1,194 @@
+package me.evvie.blockbasedelevators.elevators;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import me.evvie.blockbasedelevators.util.CoordinateKeys;
+import me.evvie.blockbasedelevators.util.LongObjectHashMap;
+
+/**
+ * This class keeps the floors of elevators whose chunks are not loaded
+ * All elevators of a chunk are packed into a single int array, holding the profile and the column 
+ * inside the chunk, the amount of floors and the floor heights of one elevator after another. That keeps 
+ * the data needed for the snapshots and for bringing the elevators back once their chunk loads, 
+ * without keeping any elevator objects.
+ * The methods are synchronized, so the ElevatorService can read the floors from other threads.
+ */
+class UnloadedElevators
+{
+	//packed elevators of every world, indexed by packed chunk coordinates
+	private final Map<UUID, LongObjectHashMap<int[]>> worlds = new HashMap<UUID, LongObjectHashMap<int[]>>();
+	private long elevatorCount;
+	
+	/**
+	 * This method adds the floors of an elevator
+	 * @param worldId The UUID of the world
+	 * @param x The x-coordinate of the elevator
+	 * @param z The z-coordinate of the elevator
+	 * @param profile The index of the elevator's profile
+	 * @param floorHeights The y-coordinates of all floors sorted from lowest to highest
+	 */
+	synchronized void add(UUID worldId, int x, int z, int profile, int[] floorHeights)
+	{
+		LongObjectHashMap<int[]> chunks = worlds.get(worldId);
+		
+		if (chunks == null)
+		{
+			chunks = new LongObjectHashMap<int[]>();
+			worlds.put(worldId, chunks);
+		}
+		
+		long chunkKey = CoordinateKeys.columnKey(x >> 4, z >> 4);
+		int[] packed = chunks.get(chunkKey);
+		int offset = packed == null ? 0 : packed.length;
+		
+		//chunks rarely contain more than a few elevators, so the array simply grows for each one
+		packed = packed == null ? new int[2 + floorHeights.length] : Arrays.copyOf(packed, offset + 2 + floorHeights.length);
+		packed[offset] = (profile << 8) | ((z & 15) << 4) | (x & 15);
+		packed[offset + 1] = floorHeights.length;
+		System.arraycopy(floorHeights, 0, packed, offset + 2, floorHeights.length);
+		
+		chunks.put(chunkKey, packed);
+		elevatorCount++;
+	}
+	
+	/**
+	 * This method removes and returns the elevators of a chunk
+	 * @param worldId The UUID of the world
+	 * @param chunkX The x-coordinate of the chunk
+	 * @param chunkZ The z-coordinate of the chunk
+	 * @param consumer The consumer of the removed elevators
+	 */
+	synchronized void take(UUID worldId, int chunkX, int chunkZ, ElevatorConsumer consumer)
+	{
+		LongObjectHashMap<int[]> chunks = worlds.get(worldId);
+		
+		if (chunks == null)
+			return;
+		
+		int[] packed = chunks.remove(CoordinateKeys.columnKey(chunkX, chunkZ));
+		
+		if (packed != null)
+			elevatorCount -= unpack(chunkX, chunkZ, packed, consumer);
+	}
+	
+	/**
+	 * This method finds the floors of a single elevator
+	 * @param worldId The UUID of the world
+	 * @param x The x-coordinate of the elevator
+	 * @param z The z-coordinate of the elevator
+	 * @return The y-coordinates of all floors, or null if the elevator is not part of an unloaded chunk
+	 */
+	synchronized int[] find(UUID worldId, int x, int z)
+	{
+		LongObjectHashMap<int[]> chunks = worlds.get(worldId);
+		int[] packed = chunks == null ? null : chunks.get(CoordinateKeys.columnKey(x >> 4, z >> 4));
+		
+		if (packed == null)
+			return null;
+		
+		int column = ((z & 15) << 4) | (x & 15);
+		
+		for (int offset = 0; offset < packed.length; offset += 2 + packed[offset + 1])
+		{
+			if ((packed[offset] & 0xFF) == column)
+				return Arrays.copyOfRange(packed, offset + 2, offset + 2 + packed[offset + 1]);
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * This method iterates over the unloaded elevators of a chunk
+	 * @param worldId The UUID of the world
+	 * @param chunkX The x-coordinate of the chunk
+	 * @param chunkZ The z-coordinate of the chunk
+	 * @param consumer The consumer of the elevators
+	 */
+	synchronized void forEachInChunk(UUID worldId, int chunkX, int chunkZ, ElevatorConsumer consumer)
+	{
+		LongObjectHashMap<int[]> chunks = worlds.get(worldId);
+		int[] packed = chunks == null ? null : chunks.get(CoordinateKeys.columnKey(chunkX, chunkZ));
+		
+		if (packed != null)
+			unpack(chunkX, chunkZ, packed, consumer);
+	}
+	
+	/**
+	 * This method iterates over all unloaded elevators of a world
+	 * @param worldId The UUID of the world
+	 * @param consumer The consumer of the elevators
+	 */
+	synchronized void forEach(UUID worldId, final ElevatorConsumer consumer)
+	{
+		LongObjectHashMap<int[]> chunks = worlds.get(worldId);
+		
+		if (chunks != null)
+			chunks.forEach((key, packed) -> unpack(CoordinateKeys.columnX(key), CoordinateKeys.columnZ(key), packed, consumer));
+	}
+	
+	/**
+	 * This method forgets all unloaded elevators of a world
+	 * @param worldId The UUID of the world
+	 */
+	synchronized void removeWorld(UUID worldId)
+	{
+		LongObjectHashMap<int[]> chunks = worlds.remove(worldId);
+		
+		if (chunks != null)
+			chunks.forEach((key, packed) -> elevatorCount -= unpack(0, 0, packed, null));
+	}
+	
+	/**
+	 * This method gets the amount of unloaded elevators in all worlds
+	 * @return The amount of unloaded elevators
+	 */
+	synchronized long size()
+	{
+		return elevatorCount;
+	}
+	
+	/**
+	 * This method unpacks the elevators of a chunk
+	 * @param chunkX The x-coordinate of the chunk
+	 * @param chunkZ The z-coordinate of the chunk
+	 * @param packed The packed elevators of the chunk
+	 * @param consumer The consumer of the elevators, or null to only count them
+	 * @return The amount of elevators
+	 */
+	private static int unpack(int chunkX, int chunkZ, int[] packed, ElevatorConsumer consumer)
+	{
+		int count = 0;
+		
+		for (int offset = 0; offset < packed.length; offset += 2 + packed[offset + 1])
+		{
+			if (consumer != null)
+			{
+				int x = (chunkX << 4) | (packed[offset] & 15);
+				int z = (chunkZ << 4) | ((packed[offset] >> 4) & 15);
+				consumer.accept(x, z, packed[offset] >> 8, Arrays.copyOfRange(packed, offset + 2, offset + 2 + packed[offset + 1]));
+			}
+			
+			count++;
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * This interface consumes unpacked elevators
+	 */
+	interface ElevatorConsumer
+	{
+		/**
+		 * This method consumes a single elevator
+		 * @param x The x-coordinate of the elevator
+		 * @param z The z-coordinate of the elevator
+		 * @param profile The index of the elevator's profile
+		 * @param floorHeights The y-coordinates of all floors sorted from lowest to highest
+		 */
+		void accept(int x, int z, int profile, int[] floorHeights);
+	}
+}
@@ -0,0 +1,57 @@
+package me.evvie.blockbasedelevators.events;
+
+import org.bukkit.event.Listener;
+
+import me.evvie.blockbasedelevators.elevators.PlayerSessions;
+import me.evvie.blockbasedelevators.metrics.ElevatorMetrics;
+
+/**
+ * This enum contains the ways jumps can be detected, selected by the JumpDetection configuration
+ * Only the listener of the selected detection gets registered.
+ */
+public enum JumpDetection
+{
+	//checks every PlayerMoveEvent for an upwards move with enough velocity
+	MOVE
+	{
+		@Override
+		public Listener createListener(ElevatorMetrics metrics, PlayerSessions sessions)
+		{
+			return new PlayerJumpEvent.CallJumpEvent(metrics, sessions);
+		}
+	},
+	
+	//waits for the server to increase the jump statistic
+	STATISTIC
+	{
+		@Override
+		public Listener createListener(ElevatorMetrics metrics, PlayerSessions sessions)
+		{
+			return new PlayerJumpEvent.CallJumpEventOnStatistic(metrics);
+		}
+	};
+	
+	/**
+	 * This method creates the listener calling the PlayerJumpEvent
+	 * @param metrics The metrics the jump detections get recorded in
+	 * @param sessions The sessions of the online players
+	 * @return The listener, which still needs to be registered
+	 */
+	public abstract Listener createListener(ElevatorMetrics metrics, PlayerSessions sessions);
+	
+	/**
+	 * This method finds a jump detection by its configured name
+	 * @param name The name of the jump detection, case insensitive
+	 * @return The jump detection, or null if there is none with this name
+	 */
+	public static JumpDetection fromName(String name)
+	{
+		for (JumpDetection detection : values())
+		{
+			if (detection.name().equalsIgnoreCase(name))
+				return detection;
+		}
+		
+		return null;
+	}
+}
@@ -1,10 +1,9 @@
 package me.evvie.blockbasedelevators.events;
 
-import java.util.HashMap;
-import java.util.Map;
-
 import org.bukkit.Bukkit;
+import org.bukkit.Location;
 import org.bukkit.Material;
+import org.bukkit.Statistic;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
 import org.bukkit.event.Cancellable;
@@ -12,13 +11,13 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerEvent;
-import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerMoveEvent;
-import org.bukkit.event.player.PlayerQuitEvent;
-import org.bukkit.event.server.PluginDisableEvent;
-import org.bukkit.event.server.PluginEnableEvent;
+import org.bukkit.event.player.PlayerStatisticIncrementEvent;
 import org.bukkit.util.Vector;
 
+import me.evvie.blockbasedelevators.elevators.PlayerSessions;
+import me.evvie.blockbasedelevators.metrics.ElevatorMetrics;
+
 /**
  * This class is a custom PlayerJumpEvent
  * This event gets triggered if a player starts jumping
@@ -33,25 +32,25 @@ public class PlayerJumpEvent extends PlayerEvent implements Cancellable
 	{
 		super(player);
 	}
-
+	
 	@Override
 	public boolean isCancelled() 
 	{
         return this.cancel;
     }
-
+	
 	@Override
     public void setCancelled(boolean cancel) 
 	{
         this.cancel = cancel;
     }
-
+	
 	@Override
     public HandlerList getHandlers() 
 	{
         return handlers;
     }
-	
+
     public static HandlerList getHandlerList() 
     {
         return handlers;
@@ -62,12 +61,25 @@ public class PlayerJumpEvent extends PlayerEvent implements Cancellable
      */
     public static class CallJumpEvent implements Listener 
     {
-    	//map of jumping-states of all players on the server 
-    	public static final Map<Player, Boolean> jumping = new HashMap<>();
-    	
     	//threshold velocity for a jump to be considered jumping
         public static final double jump_velocity_threshold = 0.3;
-        
+
+        private final ElevatorMetrics metrics;
+
+        //sessions holding the jumping state of the players
+        private final PlayerSessions sessions;
+
+        /**
+         * Constructor for the creation of the jump detection
+         * @param metrics The metrics the jump detections get recorded in
+         * @param sessions The sessions of the online players
+         */
+        public CallJumpEvent(ElevatorMetrics metrics, PlayerSessions sessions)
+        {
+        	this.metrics = metrics;
+        	this.sessions = sessions;
+        }
+
         /**
          * This event-handler is used to grab PlayerMoveEvents and checks them for jumping behavior
          * @param event PlayerMoveEvent
@@ -75,110 +87,115 @@ public class PlayerJumpEvent extends PlayerEvent implements Cancellable
         @EventHandler
         public void onJump(PlayerMoveEvent event)
         {
-        	//get player and his y-velocity
+        	Location from = event.getFrom();
+        	Location to = event.getTo();
+
+        	//head rotations can neither start nor end a jump
+        	if (to == null || (from.getX() == to.getX() && from.getY() == to.getY() && from.getZ() == to.getZ()))
+        		return;
+
         	Player player = event.getPlayer();
-        	double yVelocity = player.getVelocity().getY();
-        	
-        	//check if all jump conditions are met
-        	if (yVelocity > jump_velocity_threshold && !isClimbing(player) && !jumping.get(player))
+        	int slot = sessions.getSlot(player);
+
+        	//players without a session can't be tracked
+        	if (slot == PlayerSessions.NO_SLOT)
+        		return;
+
+        	//if player is on ground reset his jumping state
+        	if (sessions.isJumping(slot))
         	{
-        		//create and call the custom jump event
-        		PlayerJumpEvent playerJumpEvent = new PlayerJumpEvent(player);
-        		Bukkit.getServer().getPluginManager().callEvent(playerJumpEvent);
-        		
-        		//cancel the jump if the jump event is canceled
-        		if (playerJumpEvent.isCancelled())
-        			player.setVelocity(new Vector(player.getVelocity().getX(), 0, player.getVelocity().getZ()));
-        		
-        		//track player as jumping
-        		jumping.replace(player, true);
+        		if (((LivingEntity)player).isOnGround())
+        			sessions.setJumping(slot, false);
+
+        		return;
         	}
-        	//if player is on ground reset his jumping state
-        	else if (((LivingEntity)player).isOnGround() && jumping.get(player))
+
+        	//a jump always moves the player up in its first move, even if a low ceiling caps the rise,
+        	//so the velocity only needs to be looked up for upward moves
+        	if (to.getY() <= from.getY())
+        		return;
+
+        	//only moves that might start a jump get timed, the checks above cost less than the clock
+        	long start = System.nanoTime();
+
+        	//check if all jump conditions are met
+        	if (player.getVelocity().getY() > jump_velocity_threshold && !isClimbing(player, to))
         	{
-        		jumping.replace(player, false);
+        		callJumpEvent(player);
+
+        		//track player as jumping
+        		sessions.setJumping(slot, true);
         	}
-        }
-        
-        /**
-         * This event-handler is used to grab the PlayerJoinEvent to track online players
-         * @param event PlayerJoinEvent
-         */
-        @EventHandler
-        public void onJoin(PlayerJoinEvent event)
-        {
-        	//start tracking joining players
-            Player player = event.getPlayer();
-            add(player);
-        }
 
-        /**
-         * This event-handler is used to grab the PlayerQuitEvent to untrack leaving players
-         * @param event PlayerQuitEvent
-         */
-        @EventHandler
-        public void onQuit(PlayerQuitEvent event)
-        {
-        	//stop tracking leaving players
-            Player player = event.getPlayer();
-            remove(player);
+        	metrics.getJumpDetections().recordSince(start);
         }
 
+    }
+
+    /**
+     * This inner-class detects jumps by the jump statistic, which the server increases whenever 
+     * it sees a player leave the ground upwards. It replaces the PlayerMoveEvent listener, since 
+     * the server only fires statistic events for the rare statistics.
+     */
+    public static class CallJumpEventOnStatistic implements Listener
+    {
+        private final ElevatorMetrics metrics;
+
         /**
-         * This event-handler is used to grab the PluginEnableEvent to track all players that might 
-         * e there before the plugin was enabled
-         * @param event PluginEnableEvent
+         * Constructor for the creation of the jump detection
+         * @param metrics The metrics the jump detections get recorded in
          */
-        @EventHandler
-        public void onEnable(PluginEnableEvent event)
+        public CallJumpEventOnStatistic(ElevatorMetrics metrics)
         {
-        	//add all online players
-            for (Player player: Bukkit.getOnlinePlayers()) 
-            	add(player);
+        	this.metrics = metrics;
         }
 
         /**
-         * This event-handler is used to grab the PluginDisableEvent to clear all tracking data before 
-         * shutting down
-         * @param event
+         * This event-handler is used to grab the increases of the jump statistic
+         * @param event PlayerStatisticIncrementEvent
          */
         @EventHandler
-        public void onDisable(PluginDisableEvent event)
+        public void onStatisticIncrement(PlayerStatisticIncrementEvent event)
         {
-        	//clear the map before shutting down
-            jumping.clear();
-        }
+        	if (event.getStatistic() != Statistic.JUMP)
+        		return;
 
-        /**
-         * This method is used to add a player to the list of tracked players
-         * @param player The player to be tracked
-         */
-        private void add(Player player)
-        {
-            if (!jumping.containsKey(player)) 
-            	jumping.put(player, false);
-        }
-        
-        /**
-         * This method is used to remove a player from the list of tracked players
-         * @param player The player to be removed
-         */
-        private void remove(Player player)
-        {
-            if (jumping.containsKey(player)) 
-            	jumping.remove(player);
+        	long start = System.nanoTime();
+        	Player player = event.getPlayer();
+
+        	//climbing players leaving the ground count as jumping for the server
+        	if (!isClimbing(player, player.getLocation()))
+        		callJumpEvent(player);
+
+        	metrics.getJumpDetections().recordSince(start);
         }
-        
-        /**
-         * This method is used to check if a player is in a climbing state
-         * @param player The player to be checked
-         * @return true if the player is climbing, false otherwise
-         */
-        private boolean isClimbing(Player player)
-    	{
-    		Material material = player.getLocation().getBlock().getType();
-    		
-    		return material == Material.LADDER || material == Material.VINE;
-    	}
     }
+
+    /**
+     * This method creates and calls the custom jump event, and stops the jump if the event got canceled
+     * @param player The jumping player
+     */
+    private static void callJumpEvent(Player player)
+    {
+    	PlayerJumpEvent playerJumpEvent = new PlayerJumpEvent(player);
+    	Bukkit.getServer().getPluginManager().callEvent(playerJumpEvent);
+
+    	//cancel the jump if the jump event is canceled
+    	if (playerJumpEvent.isCancelled())
+    		player.setVelocity(new Vector(player.getVelocity().getX(), 0, player.getVelocity().getZ()));
+    }
+
+    /**
+     * This method is used to check if a player is in a climbing state
+     * @param player The player to be checked
+     * @param location The location the player is moving to
+     * @return true if the player is climbing, false otherwise
+     */
+    private static boolean isClimbing(Player player, Location location)
+	{
+    	//looks up the material directly, without creating a block
+		Material material = player.getWorld().getType(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+
+		return material == Material.LADDER || material == Material.VINE;
+	}
 }
@@ -0,0 +1,133 @@
+package me.evvie.blockbasedelevators.metrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * This class collects the runtime metrics of this plug-in
+ * Operations are measured with histograms that can be recorded from any thread. Sizes, like the
+ * amount of known elevators, are registered as gauges and only read when a summary is created.
+ */
+public class ElevatorMetrics
+{
+	private final LatencyHistogram teleports = new LatencyHistogram();
+	private final LatencyHistogram rescans = new LatencyHistogram();
+	private final LatencyHistogram probes = new LatencyHistogram();
+	private final LatencyHistogram validityChecks = new LatencyHistogram();
+	private final LatencyHistogram jumpDetections = new LatencyHistogram();
+	
+	//gauges in the order they got registered, read on the main thread only
+	private final Map<String, LongSupplier> gauges = new LinkedHashMap<String, LongSupplier>();
+	
+	/**
+	 * This method gets the histogram of elevator teleports
+	 * @return The histogram
+	 */
+	public LatencyHistogram getTeleports()
+	{
+		return teleports;
+	}
+	
+	/**
+	 * This method gets the histogram of elevator rescans
+	 * @return The histogram
+	 */
+	public LatencyHistogram getRescans()
+	{
+		return rescans;
+	}
+	
+	/**
+	 * This method gets the histogram of the probes serving new elevators until their rescan
+	 * @return The histogram
+	 */
+	public LatencyHistogram getProbes()
+	{
+		return probes;
+	}
+	
+	/**
+	 * This method gets the histogram of elevator floor validity checks
+	 * @return The histogram
+	 */
+	public LatencyHistogram getValidityChecks()
+	{
+		return validityChecks;
+	}
+	
+	/**
+	 * This method gets the histogram of jump detections, which are moves that might start a jump
+	 * @return The histogram
+	 */
+	public LatencyHistogram getJumpDetections()
+	{
+		return jumpDetections;
+	}
+	
+	/**
+	 * This method registers a gauge that gets read for every summary
+	 * @param name The name displayed in the summary
+	 * @param gauge The supplier of the current value
+	 */
+	public void registerGauge(String name, LongSupplier gauge)
+	{
+		gauges.put(name, gauge);
+	}
+	
+	/**
+	 * This method creates a summary of all metrics
+	 * @return One line per histogram and gauge
+	 */
+	public List<String> summarize()
+	{
+		List<String> lines = new ArrayList<String>();
+		
+		lines.add(summarize("Teleports", teleports));
+		lines.add(summarize("Rescans", rescans));
+		lines.add(summarize("Probes", probes));
+		lines.add(summarize("Validity checks", validityChecks));
+		lines.add(summarize("Jump detections", jumpDetections));
+		
+		for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet())
+			lines.add(gauge.getKey() + ": " + gauge.getValue().getAsLong());
+		
+		return lines;
+	}
+	
+	/**
+	 * This method creates the summary line of a histogram
+	 * @param name The name of the histogram
+	 * @param histogram The histogram
+	 * @return The summary line
+	 */
+	private static String summarize(String name, LatencyHistogram histogram)
+	{
+		long count = histogram.getCount();
+		
+		if (count == 0)
+			return name + ": 0";
+		
+		return name + ": " + count
+				+ " mean " + formatNanos(histogram.getTotalNanos() / count)
+				+ " p50 " + formatNanos(histogram.getPercentileNanos(0.5))
+				+ " p99 " + formatNanos(histogram.getPercentileNanos(0.99))
+				+ " max " + formatNanos(histogram.getMaxNanos());
+	}
+	
+	/**
+	 * This method formats a duration with a readable unit
+	 * @param nanos The duration in nanoseconds
+	 * @return The formatted duration
+	 */
+	private static String formatNanos(long nanos)
+	{
+		if (nanos < 1000)
+			return nanos + "ns";
+		if (nanos < 1000000)
+			return String.format("%.1fus", nanos / 1000.0);
+		return String.format("%.2fms", nanos / 1000000.0);
+	}
+}
@@ -0,0 +1,116 @@
+package me.evvie.blockbasedelevators.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class counts the durations of an operation in buckets of powers of two nanoseconds
+ * All values are striped adders, so recording is cheap enough to stay enabled on busy servers
+ * and never contends with threads reading the values.
+ */
+public class LatencyHistogram
+{
+	//bucket i holds durations from 2^i up to 2^(i+1) nanoseconds, the last one everything above
+	private static final int BUCKETS = 40;
+	
+	private final LongAdder[] buckets = new LongAdder[BUCKETS];
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+	
+	/**
+	 * Constructor for the creation of an empty histogram
+	 */
+	public LatencyHistogram()
+	{
+		for (int i = 0; i < BUCKETS; i++)
+			buckets[i] = new LongAdder();
+	}
+	
+	/**
+	 * This method records a single duration
+	 * @param nanos The duration in nanoseconds
+	 */
+	public void record(long nanos)
+	{
+		if (nanos < 0)
+			nanos = 0;
+		
+		buckets[Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(nanos | 1))].increment();
+		totalNanos.add(nanos);
+		maxNanos.accumulate(nanos);
+	}
+	
+	/**
+	 * This method records the duration since a start time
+	 * @param startNanos The start time taken with System.nanoTime()
+	 */
+	public void recordSince(long startNanos)
+	{
+		record(System.nanoTime() - startNanos);
+	}
+	
+	/**
+	 * This method gets the amount of recorded durations
+	 * @return The amount of recorded durations
+	 */
+	public long getCount()
+	{
+		long count = 0;
+		
+		for (LongAdder bucket : buckets)
+			count += bucket.sum();
+		
+		return count;
+	}
+	
+	/**
+	 * This method gets the sum of all recorded durations
+	 * @return The sum in nanoseconds
+	 */
+	public long getTotalNanos()
+	{
+		return totalNanos.sum();
+	}
+	
+	/**
+	 * This method gets the longest recorded duration
+	 * @return The longest duration in nanoseconds
+	 */
+	public long getMaxNanos()
+	{
+		return maxNanos.get();
+	}
+	
+	/**
+	 * This method estimates a percentile of the recorded durations
+	 * @param percentile The percentile (0-1)
+	 * @return The upper bound of the bucket containing the percentile in nanoseconds, 0 if nothing got recorded
+	 */
+	public long getPercentileNanos(double percentile)
+	{
+		long[] counts = new long[BUCKETS];
+		long count = 0;
+		
+		//the buckets are read once, so concurrent recording can't push the rank past the end
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			counts[i] = buckets[i].sum();
+			count += counts[i];
+		}
+		
+		if (count == 0)
+			return 0;
+		
+		long rank = Math.max(1, (long)Math.ceil(percentile * count));
+		
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			rank -= counts[i];
+			
+			if (rank <= 0)
+				return Math.min(getMaxNanos(), (1L << (i + 1)) - 1);
+		}
+		
+		return getMaxNanos();
+	}
+}
@@ -0,0 +1,43 @@
+package me.evvie.blockbasedelevators.util;
+
+/**
+ * This class packs block and chunk coordinates into primitive long keys
+ * It is used by the primitive collections of this plug-in, so no coordinate objects are needed
+ */
+public final class CoordinateKeys
+{
+	private CoordinateKeys()
+	{
+	}
+	
+	/**
+	 * This method packs the x and z coordinate of a block column into a single key
+	 * @param x The x-coordinate of the column
+	 * @param z The z-coordinate of the column
+	 * @return The packed key of the column
+	 */
+	public static long columnKey(int x, int z)
+	{
+		return ((long)x << 32) | (z & 0xFFFFFFFFL);
+	}
+	
+	/**
+	 * This method gets the x-coordinate back from a packed column key
+	 * @param key The packed key of the column
+	 * @return The x-coordinate of the column
+	 */
+	public static int columnX(long key)
+	{
+		return (int)(key >> 32);
+	}
+	
+	/**
+	 * This method gets the z-coordinate back from a packed column key
+	 * @param key The packed key of the column
+	 * @return The z-coordinate of the column
+	 */
+	public static int columnZ(long key)
+	{
+		return (int)key;
+	}
+}
@@ -0,0 +1,196 @@
+package me.evvie.blockbasedelevators.util;
+
+import java.util.Arrays;
+
+/**
+ * This class is a hash map from primitive int keys to primitive int values
+ * It uses open addressing with linear probing, so putting and removing entries never allocates
+ * as long as the map doesn't need to grow.
+ */
+public class IntIntHashMap
+{
+	private static final int DEFAULT_CAPACITY = 16;
+	
+	private int[] keys;
+	private int[] values;
+	private boolean[] used;
+	private int mask;
+	private int size;
+	
+	/**
+	 * Constructor for the creation of an empty map
+	 */
+	public IntIntHashMap()
+	{
+		keys = new int[DEFAULT_CAPACITY];
+		values = new int[DEFAULT_CAPACITY];
+		used = new boolean[DEFAULT_CAPACITY];
+		mask = DEFAULT_CAPACITY - 1;
+	}
+	
+	/**
+	 * This method gets the value of a key
+	 * @param key The key
+	 * @param defaultValue The value returned if the key isn't part of the map
+	 * @return The value of the key, or the default value if the key isn't part of the map
+	 */
+	public int get(int key, int defaultValue)
+	{
+		int index = slot(key);
+		
+		while (used[index])
+		{
+			if (keys[index] == key)
+				return values[index];
+			
+			index = (index + 1) & mask;
+		}
+		
+		return defaultValue;
+	}
+	
+	/**
+	 * This method sets the value of a key
+	 * @param key The key
+	 * @param value The new value of the key
+	 */
+	public void put(int key, int value)
+	{
+		int index = slot(key);
+		
+		while (used[index])
+		{
+			if (keys[index] == key)
+			{
+				values[index] = value;
+				return;
+			}
+			
+			index = (index + 1) & mask;
+		}
+		
+		keys[index] = key;
+		values[index] = value;
+		used[index] = true;
+		
+		//grow before the table gets more than half full
+		if (++size * 2 > keys.length)
+			resize(keys.length << 1);
+	}
+	
+	/**
+	 * This method removes a key from the map
+	 * @param key The key to remove
+	 * @param defaultValue The value returned if the key isn't part of the map
+	 * @return The removed value, or the default value if the key wasn't part of the map
+	 */
+	public int remove(int key, int defaultValue)
+	{
+		int index = slot(key);
+		
+		while (used[index])
+		{
+			if (keys[index] == key)
+			{
+				int value = values[index];
+				shiftBack(index);
+				size--;
+				return value;
+			}
+			
+			index = (index + 1) & mask;
+		}
+		
+		return defaultValue;
+	}
+	
+	/**
+	 * This method gets the amount of entries in the map
+	 * @return The amount of entries in the map
+	 */
+	public int size()
+	{
+		return size;
+	}
+	
+	/**
+	 * This method removes all entries from the map
+	 */
+	public void clear()
+	{
+		Arrays.fill(used, false);
+		size = 0;
+	}
+	
+	/**
+	 * This method gets the index of the first slot a key could be stored in
+	 * @param key The key
+	 * @return The index of the slot
+	 */
+	private int slot(int key)
+	{
+		//spread the bits of the key, since entity ids are handed out sequentially
+		int hash = key * 0x9E3779B9;
+		return (hash ^ (hash >>> 16)) & mask;
+	}
+	
+	/**
+	 * This method closes the gap left by a removed entry, so probing sequences stay intact
+	 * @param gap The index of the freed slot
+	 */
+	private void shiftBack(int gap)
+	{
+		int index = gap;
+		
+		while (true)
+		{
+			index = (index + 1) & mask;
+			
+			if (!used[index])
+				break;
+			
+			//move the entry into the gap if its home slot is not between the gap and itself
+			int home = slot(keys[index]);
+			
+			if (((index - home) & mask) >= ((index - gap) & mask))
+			{
+				keys[gap] = keys[index];
+				values[gap] = values[index];
+				gap = index;
+			}
+		}
+		
+		used[gap] = false;
+	}
+	
+	/**
+	 * This method rebuilds the table with a new capacity
+	 * @param capacity The new capacity, must be a power of two
+	 */
+	private void resize(int capacity)
+	{
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		boolean[] oldUsed = used;
+		
+		keys = new int[capacity];
+		values = new int[capacity];
+		used = new boolean[capacity];
+		mask = capacity - 1;
+		
+		for (int i = 0; i < oldKeys.length; i++)
+		{
+			if (!oldUsed[i])
+				continue;
+			
+			int index = slot(oldKeys[i]);
+			
+			while (used[index])
+				index = (index + 1) & mask;
+			
+			keys[index] = oldKeys[i];
+			values[index] = oldValues[i];
+			used[index] = true;
+		}
+	}
+}
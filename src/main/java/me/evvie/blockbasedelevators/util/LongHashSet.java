@@ -0,0 +1,194 @@
+package me.evvie.blockbasedelevators.util;
+
+import java.util.Arrays;
+
+/**
+ * This class is a hash set of primitive long values
+ * It uses open addressing with linear probing, so adding and removing values never allocates
+ * as long as the set doesn't need to grow.
+ */
+public class LongHashSet
+{
+	private static final int DEFAULT_CAPACITY = 16;
+	
+	private long[] keys;
+	private boolean[] used;
+	private int mask;
+	private int size;
+	
+	/**
+	 * Constructor for the creation of an empty set
+	 */
+	public LongHashSet()
+	{
+		keys = new long[DEFAULT_CAPACITY];
+		used = new boolean[DEFAULT_CAPACITY];
+		mask = DEFAULT_CAPACITY - 1;
+	}
+	
+	/**
+	 * This method checks if a value is part of the set
+	 * @param key The value to check
+	 * @return True if the value is part of the set, false otherwise
+	 */
+	public boolean contains(long key)
+	{
+		int index = slot(key);
+		
+		while (used[index])
+		{
+			if (keys[index] == key)
+				return true;
+			
+			index = (index + 1) & mask;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * This method adds a value to the set
+	 * @param key The value to add
+	 * @return True if the value was added, false if it was already part of the set
+	 */
+	public boolean add(long key)
+	{
+		int index = slot(key);
+		
+		while (used[index])
+		{
+			if (keys[index] == key)
+				return false;
+			
+			index = (index + 1) & mask;
+		}
+		
+		keys[index] = key;
+		used[index] = true;
+		
+		//grow before the table gets more than half full
+		if (++size * 2 > keys.length)
+			resize(keys.length << 1);
+		
+		return true;
+	}
+	
+	/**
+	 * This method removes a value from the set
+	 * @param key The value to remove
+	 * @return True if the value was removed, false if it wasn't part of the set
+	 */
+	public boolean remove(long key)
+	{
+		int index = slot(key);
+		
+		while (used[index])
+		{
+			if (keys[index] == key)
+			{
+				shiftBack(index);
+				size--;
+				return true;
+			}
+			
+			index = (index + 1) & mask;
+		}
+		
+		return false;
+	}
+	
+	/**
+	 * This method gets the amount of values in the set
+	 * @return The amount of values in the set
+	 */
+	public int size()
+	{
+		return size;
+	}
+	
+	/**
+	 * This method checks if the set is empty
+	 * @return True if the set contains no values, false otherwise
+	 */
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+	
+	/**
+	 * This method removes all values from the set
+	 */
+	public void clear()
+	{
+		Arrays.fill(used, false);
+		size = 0;
+	}
+	
+	/**
+	 * This method gets the index of the first slot a value could be stored in
+	 * @param key The value
+	 * @return The index of the slot
+	 */
+	private int slot(long key)
+	{
+		//spread the bits of the value, since packed coordinates and ids cluster heavily
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int)(hash ^ (hash >>> 32)) & mask;
+	}
+	
+	/**
+	 * This method closes the gap left by a removed value, so probing sequences stay intact
+	 * @param gap The index of the freed slot
+	 */
+	private void shiftBack(int gap)
+	{
+		int index = gap;
+		
+		while (true)
+		{
+			index = (index + 1) & mask;
+			
+			if (!used[index])
+				break;
+			
+			//move the value into the gap if its home slot is not between the gap and itself
+			int home = slot(keys[index]);
+			
+			if (((index - home) & mask) >= ((index - gap) & mask))
+			{
+				keys[gap] = keys[index];
+				gap = index;
+			}
+		}
+		
+		used[gap] = false;
+	}
+	
+	/**
+	 * This method rebuilds the table with a new capacity
+	 * @param capacity The new capacity, must be a power of two
+	 */
+	private void resize(int capacity)
+	{
+		long[] oldKeys = keys;
+		boolean[] oldUsed = used;
+		
+		keys = new long[capacity];
+		used = new boolean[capacity];
+		mask = capacity - 1;
+		
+		for (int i = 0; i < oldKeys.length; i++)
+		{
+			if (!oldUsed[i])
+				continue;
+			
+			int index = slot(oldKeys[i]);
+			
+			while (used[index])
+				index = (index + 1) & mask;
+			
+			keys[index] = oldKeys[i];
+			used[index] = true;
+		}
+	}
+}
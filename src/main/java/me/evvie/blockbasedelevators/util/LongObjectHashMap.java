@@ -0,0 +1,274 @@
+package me.evvie.blockbasedelevators.util;
+
+import java.util.Arrays;
+
+/**
+ * This class is a hash map using primitive long keys
+ * It uses open addressing with linear probing, so neither keys nor entries need to be allocated.
+ * Null values are not supported, since they mark free slots.
+ * @param <V> The type of the stored values
+ */
+public class LongObjectHashMap<V>
+{
+	private static final int DEFAULT_CAPACITY = 16;
+	
+	private long[] keys;
+	private Object[] values;
+	private int mask;
+	private int size;
+	
+	/**
+	 * Constructor for the creation of an empty map
+	 */
+	public LongObjectHashMap()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Constructor for the creation of an empty map with a given initial capacity
+	 * @param expectedSize The amount of entries the map should hold without growing
+	 */
+	public LongObjectHashMap(int expectedSize)
+	{
+		int capacity = DEFAULT_CAPACITY;
+		
+		//keep the load factor at or below one half
+		while (capacity < expectedSize * 2)
+			capacity <<= 1;
+		
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+	}
+	
+	/**
+	 * Constructor for the creation of a copy of an other map
+	 * @param other The map to copy, the values themselves are not copied
+	 */
+	public LongObjectHashMap(LongObjectHashMap<? extends V> other)
+	{
+		keys = other.keys.clone();
+		values = other.values.clone();
+		mask = other.mask;
+		size = other.size;
+	}
+	
+	/**
+	 * This method gets the value stored for a key
+	 * @param key The key of the value
+	 * @return The value, or null if no value is stored for the key
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key)
+	{
+		int index = slot(key);
+		
+		while (values[index] != null)
+		{
+			if (keys[index] == key)
+				return (V)values[index];
+			
+			index = (index + 1) & mask;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * This method checks if a value is stored for a key
+	 * @param key The key to check
+	 * @return True if a value is stored for the key, false otherwise
+	 */
+	public boolean containsKey(long key)
+	{
+		return get(key) != null;
+	}
+	
+	/**
+	 * This method stores a value for a key, replacing the previous one
+	 * @param key The key of the value
+	 * @param value The value to store, must not be null
+	 * @return The previous value, or null if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value)
+	{
+		if (value == null)
+			throw new IllegalArgumentException("Null values are not supported");
+		
+		int index = slot(key);
+		
+		while (values[index] != null)
+		{
+			if (keys[index] == key)
+			{
+				V previous = (V)values[index];
+				values[index] = value;
+				return previous;
+			}
+			
+			index = (index + 1) & mask;
+		}
+		
+		keys[index] = key;
+		values[index] = value;
+		
+		//grow before the table gets more than half full
+		if (++size * 2 > keys.length)
+			resize(keys.length << 1);
+		
+		return null;
+	}
+	
+	/**
+	 * This method removes the value stored for a key
+	 * @param key The key of the value
+	 * @return The removed value, or null if there was none
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key)
+	{
+		int index = slot(key);
+		
+		while (values[index] != null)
+		{
+			if (keys[index] == key)
+			{
+				V previous = (V)values[index];
+				shiftBack(index);
+				size--;
+				return previous;
+			}
+			
+			index = (index + 1) & mask;
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * This method gets the amount of stored entries
+	 * @return The amount of stored entries
+	 */
+	public int size()
+	{
+		return size;
+	}
+	
+	/**
+	 * This method checks if the map is empty
+	 * @return True if no entries are stored, false otherwise
+	 */
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+	
+	/**
+	 * This method passes every entry of the map to a consumer
+	 * The map must not be modified while it is iterated.
+	 * @param consumer The consumer receiving the entries
+	 */
+	@SuppressWarnings("unchecked")
+	public void forEach(EntryConsumer<? super V> consumer)
+	{
+		for (int i = 0; i < keys.length; i++)
+		{
+			if (values[i] != null)
+				consumer.accept(keys[i], (V)values[i]);
+		}
+	}
+	
+	/**
+	 * This method removes all entries from the map
+	 */
+	public void clear()
+	{
+		Arrays.fill(values, null);
+		size = 0;
+	}
+	
+	/**
+	 * This method gets the index of the first slot a key could be stored in
+	 * @param key The key
+	 * @return The index of the slot
+	 */
+	private int slot(long key)
+	{
+		//spread the bits of the key, since packed coordinates cluster heavily
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int)(hash ^ (hash >>> 32)) & mask;
+	}
+	
+	/**
+	 * This method closes the gap left by a removed entry, so probing sequences stay intact
+	 * @param gap The index of the freed slot
+	 */
+	private void shiftBack(int gap)
+	{
+		int index = gap;
+		
+		while (true)
+		{
+			index = (index + 1) & mask;
+			
+			if (values[index] == null)
+				break;
+			
+			//move the entry into the gap if its home slot is not between the gap and itself
+			int home = slot(keys[index]);
+			
+			if (((index - home) & mask) >= ((index - gap) & mask))
+			{
+				keys[gap] = keys[index];
+				values[gap] = values[index];
+				gap = index;
+			}
+		}
+		
+		values[gap] = null;
+	}
+	
+	/**
+	 * This method rebuilds the table with a new capacity
+	 * @param capacity The new capacity, must be a power of two
+	 */
+	private void resize(int capacity)
+	{
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+		
+		for (int i = 0; i < oldKeys.length; i++)
+		{
+			if (oldValues[i] == null)
+				continue;
+			
+			int index = slot(oldKeys[i]);
+			
+			while (values[index] != null)
+				index = (index + 1) & mask;
+			
+			keys[index] = oldKeys[i];
+			values[index] = oldValues[i];
+		}
+	}
+	
+	/**
+	 * This interface is used to iterate the entries of the map without boxing the keys
+	 * @param <V> The type of the stored values
+	 */
+	public interface EntryConsumer<V>
+	{
+		/**
+		 * This method receives a single entry of the map
+		 * @param key The key of the entry
+		 * @param value The value of the entry
+		 */
+		void accept(long key, V value);
+	}
+}
@@ -0,0 +1,165 @@
+package me.evvie.blockbasedelevators.util;
+
+import java.util.function.Consumer;
+
+/**
+ * This class is a hashed timing wheel that expires timers with a resolution of one tick
+ * Timers are intrusive list nodes, so scheduling, re-arming and cancelling a timer never allocates.
+ * Every tick only the timers hashed into the current slot get looked at, which keeps the cost of a
+ * tick independent of the amount of scheduled timers.
+ * @param <T> The type of the timers
+ */
+public class TimingWheel<T extends TimingWheel.Timer>
+{
+	private final Timer[] slots;
+	private final int mask;
+	private long currentTick;
+	private int size;
+	
+	/**
+	 * Constructor for the creation of an empty wheel
+	 * @param slotCount The amount of slots, gets rounded up to a power of two
+	 */
+	public TimingWheel(int slotCount)
+	{
+		int capacity = Integer.highestOneBit(Math.max(1, slotCount - 1)) << 1;
+		slots = new Timer[capacity];
+		mask = capacity - 1;
+	}
+	
+	/**
+	 * This method schedules a timer, replacing its old deadline if it is already scheduled
+	 * @param timer The timer
+	 * @param delayTicks The amount of ticks until the timer expires, at least one
+	 */
+	public void schedule(T timer, long delayTicks)
+	{
+		Timer node = timer;
+		
+		if (node.scheduled)
+			unlink(node);
+		
+		node.deadline = currentTick + Math.max(1, delayTicks);
+		link(node);
+	}
+	
+	/**
+	 * This method cancels a timer
+	 * @param timer The timer
+	 * @return True if the timer was scheduled, false otherwise
+	 */
+	public boolean cancel(T timer)
+	{
+		Timer node = timer;
+		
+		if (!node.scheduled)
+			return false;
+		
+		unlink(node);
+		return true;
+	}
+	
+	/**
+	 * This method advances the wheel by one tick and expires all timers that are due
+	 * Expired timers are unscheduled before the consumer gets them, so they can be re-armed right away.
+	 * The consumer must not cancel any other timer.
+	 * @param expired The consumer of the expired timers
+	 */
+	@SuppressWarnings("unchecked")
+	public void tick(Consumer<? super T> expired)
+	{
+		currentTick++;
+		
+		int slot = (int)(currentTick & mask);
+		Timer timer = slots[slot];
+		
+		//detach the slot first, so timers re-armed by the consumer can't be visited twice
+		slots[slot] = null;
+		
+		while (timer != null)
+		{
+			Timer next = timer.next;
+			timer.prev = null;
+			timer.next = null;
+			timer.scheduled = false;
+			size--;
+			
+			//timers of a later round stay in the slot
+			if (timer.deadline > currentTick)
+				link(timer);
+			else
+				expired.accept((T)timer);
+			
+			timer = next;
+		}
+	}
+	
+	/**
+	 * This method gets the amount of scheduled timers
+	 * @return The amount of scheduled timers
+	 */
+	public int size()
+	{
+		return size;
+	}
+	
+	/**
+	 * This method adds a timer to the slot of its deadline
+	 * @param timer The timer
+	 */
+	private void link(Timer timer)
+	{
+		int slot = (int)(timer.deadline & mask);
+		Timer head = slots[slot];
+		
+		timer.next = head;
+		timer.prev = null;
+		
+		if (head != null)
+			head.prev = timer;
+		
+		slots[slot] = timer;
+		timer.scheduled = true;
+		size++;
+	}
+	
+	/**
+	 * This method removes a timer from its slot
+	 * @param timer The timer
+	 */
+	private void unlink(Timer timer)
+	{
+		if (timer.prev != null)
+			timer.prev.next = timer.next;
+		else
+			slots[(int)(timer.deadline & mask)] = timer.next;
+		
+		if (timer.next != null)
+			timer.next.prev = timer.prev;
+		
+		timer.prev = null;
+		timer.next = null;
+		timer.scheduled = false;
+		size--;
+	}
+	
+	/**
+	 * This class is the base of everything that can be scheduled in a timing wheel
+	 */
+	public static abstract class Timer
+	{
+		private Timer prev;
+		private Timer next;
+		private long deadline;
+		private boolean scheduled;
+		
+		/**
+		 * This method checks if the timer is scheduled
+		 * @return True if the timer is scheduled, false otherwise
+		 */
+		public boolean isScheduled()
+		{
+			return scheduled;
+		}
+	}
+}
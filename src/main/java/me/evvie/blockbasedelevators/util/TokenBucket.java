@@ -0,0 +1,63 @@
+package me.evvie.blockbasedelevators.util;
+
+/**
+ * This class is a token bucket whose whole state fits into a single long
+ * The state is the time at which the bucket is full again, like the theoretical arrival time of the
+ * generic cell rate algorithm. Taking a token moves that time one refill interval into the future,
+ * and a token can be taken as long as the time stays within the burst of the bucket. This way the
+ * buckets of many players can be kept in a primitive array, and a state of 0 is a full bucket.
+ */
+public final class TokenBucket
+{
+	//returned by take if the bucket is empty
+	public static final long DENIED = Long.MIN_VALUE;
+	
+	//origin of the clock, chosen so the clock never returns 0 or less
+	private static final long CLOCK_ORIGIN = System.nanoTime() - 1;
+	
+	private final long refillNanos;
+	private final long burstNanos;
+	
+	/**
+	 * Constructor for the creation of a bucket configuration
+	 * @param tokensPerSecond The amount of tokens refilled per second, must be positive
+	 * @param burst The amount of tokens the bucket can hold, at least 1
+	 */
+	public TokenBucket(double tokensPerSecond, int burst)
+	{
+		refillNanos = (long)(1000000000L / tokensPerSecond);
+		burstNanos = refillNanos * Math.max(1, burst);
+	}
+	
+	/**
+	 * This method gets the current time of the clock used by all buckets
+	 * @return The current time in nanoseconds, always positive
+	 */
+	public static long now()
+	{
+		return System.nanoTime() - CLOCK_ORIGIN;
+	}
+	
+	/**
+	 * This method checks if a token could be taken out of a bucket, without taking it
+	 * @param state The current state of the bucket
+	 * @param now The current time, see now()
+	 * @return True if the bucket holds at least one token, false otherwise
+	 */
+	public boolean hasToken(long state, long now)
+	{
+		return Math.max(state, now) + refillNanos - now <= burstNanos;
+	}
+	
+	/**
+	 * This method takes a token out of a bucket
+	 * @param state The current state of the bucket
+	 * @param now The current time, see now()
+	 * @return The new state of the bucket, or DENIED if the bucket is empty and the state stays the same
+	 */
+	public long take(long state, long now)
+	{
+		long fullAt = Math.max(state, now) + refillNanos;
+		return fullAt - now <= burstNanos ? fullAt : DENIED;
+	}
+}
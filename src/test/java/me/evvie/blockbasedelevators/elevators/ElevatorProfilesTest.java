@@ -0,0 +1,107 @@
+package me.evvie.blockbasedelevators.elevators;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.bukkit.Material;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This class tests matching floors against the compiled elevator profiles
+ */
+class ElevatorProfilesTest
+{
+	private static final int SHAPE_NORTH_SOUTH = (1 << ElevatorProfile.SIDE_NORTH) | (1 << ElevatorProfile.SIDE_SOUTH);
+	
+	private final ElevatorProfile plus = new ElevatorProfile("default", Material.GOLD_BLOCK, Material.IRON_BLOCK, ElevatorProfile.SHAPE_PLUS, 0, true, true);
+	private final ElevatorProfile line = new ElevatorProfile("line", Material.GOLD_BLOCK, Material.IRON_BLOCK, SHAPE_NORTH_SOUTH, 0, true, true);
+	private final ElevatorProfile express = new ElevatorProfile("express", Material.DIAMOND_BLOCK, Material.GOLD_BLOCK, ElevatorProfile.SHAPE_PLUS, 64, true, false);
+	
+	@Test
+	void completeFloorsMatchTheirProfile()
+	{
+		ElevatorProfiles profiles = new ElevatorProfiles(Arrays.asList(plus, express));
+		TestWorld world = new TestWorld();
+		world.setFloor(0, 10, 0, Material.GOLD_BLOCK, Material.IRON_BLOCK);
+		world.setFloor(10, 10, 0, Material.DIAMOND_BLOCK, Material.GOLD_BLOCK);
+		
+		assertEquals(0, profiles.match(world.getBlock(0, 10, 0)));
+		assertEquals(1, profiles.match(world.getBlock(10, 10, 0)));
+		
+		//rim and surrounding blocks are never the center of a floor
+		assertEquals(ElevatorProfiles.NO_PROFILE, profiles.match(world.getBlock(1, 10, 0)));
+		assertEquals(ElevatorProfiles.NO_PROFILE, profiles.match(world.getBlock(0, 11, 0)));
+	}
+	
+	@Test
+	void missingRimBlocksFailTheMatch()
+	{
+		ElevatorProfiles profiles = new ElevatorProfiles(Collections.singletonList(plus));
+		TestWorld world = new TestWorld();
+		world.setFloor(0, 10, 0, Material.GOLD_BLOCK, Material.IRON_BLOCK);
+		
+		for (int[] side : new int[][] { { 0, -1 }, { 1, 0 }, { 0, 1 }, { -1, 0 } })
+		{
+			world.set(side[0], 10, side[1], Material.STONE);
+			assertEquals(ElevatorProfiles.NO_PROFILE, profiles.match(world.getBlock(0, 10, 0)));
+			world.set(side[0], 10, side[1], Material.IRON_BLOCK);
+		}
+		
+		assertEquals(0, profiles.match(world.getBlock(0, 10, 0)));
+	}
+	
+	@Test
+	void sidesWithoutRimAcceptAnyBlock()
+	{
+		ElevatorProfiles profiles = new ElevatorProfiles(Collections.singletonList(line));
+		TestWorld world = new TestWorld();
+		world.set(0, 10, 0, Material.GOLD_BLOCK);
+		world.set(0, 10, -1, Material.IRON_BLOCK);
+		world.set(0, 10, 1, Material.IRON_BLOCK);
+		world.set(1, 10, 0, Material.STONE);
+		
+		assertEquals(0, profiles.match(world.getBlock(0, 10, 0)));
+		
+		world.set(0, 10, 1, Material.AIR);
+		assertEquals(ElevatorProfiles.NO_PROFILE, profiles.match(world.getBlock(0, 10, 0)));
+	}
+	
+	@Test
+	void theFirstMatchingProfileWins()
+	{
+		TestWorld world = new TestWorld();
+		world.setFloor(0, 10, 0, Material.GOLD_BLOCK, Material.IRON_BLOCK);
+		
+		assertEquals(0, new ElevatorProfiles(Arrays.asList(plus, line)).match(world.getBlock(0, 10, 0)));
+		assertEquals(0, new ElevatorProfiles(Arrays.asList(line, plus)).match(world.getBlock(0, 10, 0)));
+		
+		//only the profile without rims on the east and west side is left once one of those is missing
+		world.set(1, 10, 0, Material.AIR);
+		assertEquals(1, new ElevatorProfiles(Arrays.asList(plus, line)).match(world.getBlock(0, 10, 0)));
+	}
+	
+	@Test
+	void materialsKnowTheirProfiles()
+	{
+		ElevatorProfiles profiles = new ElevatorProfiles(Arrays.asList(plus, line, express));
+		
+		assertEquals(0b011, profiles.getCenterProfiles(Material.GOLD_BLOCK));
+		assertEquals(0b100, profiles.getCenterProfiles(Material.DIAMOND_BLOCK));
+		assertEquals(0, profiles.getCenterProfiles(Material.IRON_BLOCK));
+		assertEquals(0b011, profiles.getRimProfiles(Material.IRON_BLOCK));
+		assertEquals(0b100, profiles.getRimProfiles(Material.GOLD_BLOCK));
+		assertEquals(1, profiles.indexOf("line"));
+		assertEquals(2, ElevatorProfiles.first(0b100));
+		assertEquals(ElevatorProfiles.NO_PROFILE, ElevatorProfiles.first(0));
+	}
+	
+	@Test
+	void profileCountIsLimited()
+	{
+		assertThrows(IllegalArgumentException.class, () -> new ElevatorProfiles(Collections.<ElevatorProfile>emptyList()));
+		assertThrows(IllegalArgumentException.class, () -> new ElevatorProfiles(Collections.nCopies(ElevatorProfiles.MAX_PROFILES + 1, plus)));
+	}
+}
@@ -0,0 +1,102 @@
+package me.evvie.blockbasedelevators.elevators;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import me.evvie.blockbasedelevators.util.CoordinateKeys;
+import me.evvie.blockbasedelevators.util.LongObjectHashMap;
+
+/**
+ * This class tests adding, looking up and removing elevators of the registry, which keeps them in buckets per chunk
+ */
+class ElevatorRegistryTest
+{
+	private final UUID worldId = UUID.randomUUID();
+	private final ElevatorRegistry registry = new ElevatorRegistry();
+	
+	/**
+	 * This method creates an elevator without floors
+	 * @param x The x-coordinate of the elevator
+	 * @param z The z-coordinate of the elevator
+	 * @return The elevator
+	 */
+	private Elevator elevator(int x, int z)
+	{
+		Elevator elevator = new Elevator();
+		elevator.create(worldId, x, z, 0);
+		return elevator;
+	}
+	
+	@Test
+	void elevatorsAreFoundByTheirColumn()
+	{
+		Elevator positive = elevator(17, 31);
+		Elevator negative = elevator(-1, -16);
+		registry.put(worldId, positive);
+		registry.put(worldId, negative);
+		
+		assertSame(positive, registry.get(worldId, 17, 31));
+		assertSame(negative, registry.get(worldId, -1, -16));
+		assertNull(registry.get(worldId, 1, 15));
+		assertNull(registry.get(worldId, -1, -15));
+		assertNull(registry.get(UUID.randomUUID(), 17, 31));
+		assertEquals(2, registry.size(worldId));
+	}
+	
+	@Test
+	void iterationReportsTheColumnOfEveryElevator()
+	{
+		LongObjectHashMap<Elevator> elevators = new LongObjectHashMap<Elevator>();
+		
+		for (int x = -20; x < 20; x += 3)
+			elevators.put(CoordinateKeys.columnKey(x, -x), elevator(x, -x));
+		
+		registry.putAll(worldId, elevators);
+		
+		final List<Long> keys = new ArrayList<Long>();
+		registry.forEach(worldId, (key, elevator) ->
+		{
+			assertEquals(elevator.getX(), CoordinateKeys.columnX(key));
+			assertEquals(elevator.getZ(), CoordinateKeys.columnZ(key));
+			keys.add(key);
+		});
+		
+		assertEquals(elevators.size(), keys.size());
+		assertEquals(elevators.size(), registry.size(worldId));
+		
+		final int[] inChunk = new int[1];
+		registry.forEachInChunk(worldId, -2, 1, (key, elevator) -> inChunk[0]++);
+		assertEquals(2, inChunk[0]);
+	}
+	
+	@Test
+	void removedElevatorsLeaveTheirNeighbours()
+	{
+		Elevator first = elevator(32, 32);
+		Elevator second = elevator(33, 47);
+		registry.put(worldId, first);
+		registry.put(worldId, second);
+		
+		assertSame(first, registry.remove(worldId, 32, 32));
+		assertNull(registry.remove(worldId, 32, 32));
+		assertSame(second, registry.get(worldId, 33, 47));
+		
+		//removing the last elevator of a chunk drops the chunk, adding one brings it back
+		final List<Elevator> removed = new ArrayList<Elevator>();
+		registry.removeAll(worldId, new long[] { CoordinateKeys.columnKey(33, 47), CoordinateKeys.columnKey(34, 34) }, (key, elevator) -> removed.add(elevator));
+		
+		assertEquals(1, removed.size());
+		assertSame(second, removed.get(0));
+		assertEquals(0, registry.size(worldId));
+		
+		registry.put(worldId, first);
+		assertSame(first, registry.get(worldId, 32, 32));
+	}
+}
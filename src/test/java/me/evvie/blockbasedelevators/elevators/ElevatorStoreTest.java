@@ -0,0 +1,252 @@
+package me.evvie.blockbasedelevators.elevators;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import me.evvie.blockbasedelevators.elevators.ElevatorStore.Record;
+import me.evvie.blockbasedelevators.util.CoordinateKeys;
+import me.evvie.blockbasedelevators.util.LongObjectHashMap;
+
+/**
+ * This class tests writing and reading the snapshots and journals of the elevator store
+ */
+class ElevatorStoreTest
+{
+	private static final List<String> PROFILES = Arrays.asList("default", "express");
+	
+	private final UUID worldId = UUID.randomUUID();
+	
+	@TempDir
+	File directory;
+	
+	private ElevatorStore store;
+	
+	@AfterEach
+	void tearDown()
+	{
+		if (store != null)
+			store.close();
+	}
+	
+	/**
+	 * This method replaces the store of the test by a new one, like after a restart
+	 * @param profileNames The names of the configured profiles
+	 * @return The new store
+	 */
+	private ElevatorStore reopen(List<String> profileNames)
+	{
+		if (store != null)
+			store.close();
+		
+		store = new ElevatorStore(directory, Logger.getLogger("ElevatorStoreTest"), profileNames);
+		return store;
+	}
+	
+	/**
+	 * This method gets a loaded elevator
+	 * @param elevators The loaded elevators
+	 * @param x The x-coordinate of the elevator
+	 * @param z The z-coordinate of the elevator
+	 * @return The record of the elevator, null if it wasn't loaded
+	 */
+	private static Record get(LongObjectHashMap<Record> elevators, int x, int z)
+	{
+		return elevators.get(CoordinateKeys.columnKey(x, z));
+	}
+	
+	/**
+	 * This method checks if the files of the world have been moved aside as unreadable
+	 * @return True if an unreadable snapshot or journal exists, false otherwise
+	 */
+	private boolean hasUnreadableFiles()
+	{
+		String[] names = directory.list((dir, name) -> name.startsWith(worldId.toString()) && name.contains(".unreadable-"));
+		return names != null && names.length > 0;
+	}
+	
+	@Test
+	void emptyWorldsLoadWithoutElevators()
+	{
+		LongObjectHashMap<Record> elevators = reopen(PROFILES).load(worldId);
+		
+		assertNotNull(elevators);
+		assertTrue(elevators.isEmpty());
+	}
+	
+	@Test
+	void journalIsReplayedOnTopOfTheSnapshot()
+	{
+		reopen(PROFILES).writeSnapshot(worldId, Arrays.asList(new Record(1, 2, 0, new int[] { 10, 20 }), new Record(-5, 7, 1, new int[] { -60 })));
+		store.append(worldId, ElevatorStore.OPERATION_ADD, 1, 15, 2);
+		store.append(worldId, ElevatorStore.OPERATION_REMOVE, 1, 20, 2);
+		store.append(worldId, ElevatorStore.OPERATION_CLEAR, -5, 0, 7);
+		store.append(worldId, ElevatorStore.OPERATION_PROFILE, 3, 1, 4);
+		store.append(worldId, ElevatorStore.OPERATION_ADD, 3, 40, 4);
+		
+		LongObjectHashMap<Record> elevators = reopen(PROFILES).load(worldId);
+		
+		assertEquals(2, elevators.size());
+		assertArrayEquals(new int[] { 10, 15 }, get(elevators, 1, 2).floorHeights);
+		assertEquals(0, get(elevators, 1, 2).profile);
+		assertNull(get(elevators, -5, 7));
+		assertArrayEquals(new int[] { 40 }, get(elevators, 3, 4).floorHeights);
+		assertEquals(1, get(elevators, 3, 4).profile);
+	}
+	
+	@Test
+	void snapshotsReplaceTheJournal()
+	{
+		reopen(PROFILES).append(worldId, ElevatorStore.OPERATION_ADD, 1, 10, 2);
+		store.writeSnapshot(worldId, Collections.singletonList(new Record(1, 2, 0, new int[] { 30 })));
+		store.append(worldId, ElevatorStore.OPERATION_ADD, 1, 40, 2);
+		
+		LongObjectHashMap<Record> elevators = reopen(PROFILES).load(worldId);
+		
+		assertArrayEquals(new int[] { 30, 40 }, get(elevators, 1, 2).floorHeights);
+	}
+	
+	@Test
+	void elevatorsOfRemovedProfilesAreDropped()
+	{
+		reopen(PROFILES).writeSnapshot(worldId, Arrays.asList(new Record(0, 0, 0, new int[] { 10 }), new Record(1, 0, 1, new int[] { 20 })));
+		
+		//the stored profile names get mapped to the new order of the configuration
+		LongObjectHashMap<Record> elevators = reopen(Arrays.asList("express")).load(worldId);
+		
+		assertEquals(1, elevators.size());
+		assertEquals(0, get(elevators, 1, 0).profile);
+		assertArrayEquals(new int[] { 20 }, get(elevators, 1, 0).floorHeights);
+	}
+	
+	@Test
+	void profileNamesKeepEveryCharacter()
+	{
+		List<String> profileNames = Arrays.asList("default", "nul\u0000", "rocket \uD83D\uDE80");
+		reopen(profileNames).writeSnapshot(worldId, Arrays.asList(new Record(0, 0, 1, new int[] { 10 }), new Record(1, 0, 2, new int[] { 20 })));
+		
+		LongObjectHashMap<Record> elevators = reopen(profileNames).load(worldId);
+		
+		assertEquals(2, elevators.size());
+		assertEquals(1, get(elevators, 0, 0).profile);
+		assertEquals(2, get(elevators, 1, 0).profile);
+		
+		//a name that only differs in a supplementary character is another profile
+		elevators = reopen(Arrays.asList("default", "nul\u0000", "rocket \uD83D\uDE81")).load(worldId);
+		
+		assertEquals(1, elevators.size());
+		assertNull(get(elevators, 1, 0));
+	}
+	
+	@Test
+	void snapshotsWithoutProfilesAreUpgraded() throws IOException
+	{
+		try (DataOutputStream output = new DataOutputStream(new FileOutputStream(new File(directory, worldId + ".snapshot"))))
+		{
+			output.writeInt(0x42424553);
+			output.writeInt(1);
+			output.writeInt(2);
+			output.writeInt(4);
+			output.writeInt(-9);
+			output.writeInt(2);
+			output.writeInt(12);
+			output.writeInt(24);
+			output.writeInt(100);
+			output.writeInt(100);
+			output.writeInt(0);
+		}
+		
+		LongObjectHashMap<Record> elevators = reopen(PROFILES).load(worldId);
+		
+		assertEquals(2, elevators.size());
+		assertEquals(0, get(elevators, 4, -9).profile);
+		assertArrayEquals(new int[] { 12, 24 }, get(elevators, 4, -9).floorHeights);
+		assertEquals(0, get(elevators, 100, 100).floorHeights.length);
+		
+		//the next snapshot is written in the current version and keeps the elevators
+		store.writeSnapshot(worldId, Collections.singletonList(get(elevators, 4, -9)));
+		elevators = reopen(PROFILES).load(worldId);
+		
+		try (RandomAccessFile snapshot = new RandomAccessFile(new File(directory, worldId + ".snapshot"), "r"))
+		{
+			snapshot.seek(4);
+			assertEquals(2, snapshot.readInt());
+		}
+		
+		assertEquals(1, elevators.size());
+		assertArrayEquals(new int[] { 12, 24 }, get(elevators, 4, -9).floorHeights);
+	}
+	
+	@Test
+	void partialJournalEntriesAreIgnored() throws IOException
+	{
+		reopen(PROFILES).append(worldId, ElevatorStore.OPERATION_ADD, 1, 10, 2);
+		store.append(worldId, ElevatorStore.OPERATION_ADD, 1, 20, 2);
+		reopen(PROFILES);
+		
+		//cut the last entry in half, like a crash while writing it
+		try (RandomAccessFile journal = new RandomAccessFile(new File(directory, worldId + ".journal"), "rw"))
+		{
+			journal.setLength(journal.length() - 6);
+		}
+		
+		LongObjectHashMap<Record> elevators = store.load(worldId);
+		
+		assertArrayEquals(new int[] { 10 }, get(elevators, 1, 2).floorHeights);
+		assertFalse(hasUnreadableFiles());
+	}
+	
+	@Test
+	void truncatedSnapshotsAreMovedAside() throws IOException
+	{
+		reopen(PROFILES).writeSnapshot(worldId, Arrays.asList(new Record(1, 2, 0, new int[] { 10, 20 }), new Record(3, 4, 1, new int[] { 30 })));
+		store.append(worldId, ElevatorStore.OPERATION_ADD, 1, 15, 2);
+		reopen(PROFILES);
+		
+		File snapshotFile = new File(directory, worldId + ".snapshot");
+		
+		try (RandomAccessFile snapshot = new RandomAccessFile(snapshotFile, "rw"))
+		{
+			snapshot.setLength(snapshot.length() - 3);
+		}
+		
+		assertNull(store.load(worldId));
+		assertFalse(snapshotFile.exists());
+		assertFalse(new File(directory, worldId + ".journal").exists());
+		assertTrue(hasUnreadableFiles());
+	}
+	
+	@Test
+	void unknownJournalsAreMovedAside() throws IOException
+	{
+		try (DataOutputStream output = new DataOutputStream(new FileOutputStream(new File(directory, worldId + ".journal"))))
+		{
+			output.writeInt(0x12345678);
+			output.writeInt(1);
+		}
+		
+		assertNull(reopen(PROFILES).load(worldId));
+		assertTrue(hasUnreadableFiles());
+		
+		//the world starts over without the moved files
+		assertNotNull(store.load(worldId));
+	}
+}
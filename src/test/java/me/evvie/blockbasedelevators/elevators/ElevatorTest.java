@@ -0,0 +1,162 @@
+package me.evvie.blockbasedelevators.elevators;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * This class tests the floor lookups of an elevator, especially around floors with a blocked landing
+ */
+class ElevatorTest
+{
+	private static final int X = 8;
+	private static final int Z = -3;
+	
+	private TestWorld world;
+	private Elevator elevator;
+	
+	@BeforeEach
+	void setUp()
+	{
+		world = new TestWorld();
+		elevator = new Elevator();
+		elevator.create(world.getUID(), X, Z, 0);
+	}
+	
+	/**
+	 * This method gets a block of the elevator's column
+	 * @param y The y-coordinate of the block
+	 * @return The block
+	 */
+	private Block floor(int y)
+	{
+		return world.getBlock(X, y, Z);
+	}
+	
+	/**
+	 * This method blocks the landing of a floor by placing a solid block right above it
+	 * @param y The y-coordinate of the floor
+	 */
+	private void blockLanding(int y)
+	{
+		world.set(X, y + 1, Z, Material.STONE);
+	}
+	
+	@Test
+	void blockedFloorsAreFoundButSkipped()
+	{
+		blockLanding(20);
+		elevator.setFloorHeights(new int[] { 10, 20, 30 }, world.getWorld());
+		
+		assertEquals(3, elevator.floorCount());
+		assertEquals(1, elevator.getFloorNumber(floor(10)));
+		assertEquals(2, elevator.getFloorNumber(floor(20)));
+		assertEquals(3, elevator.getFloorNumber(floor(30)));
+		assertTrue(elevator.containsElevatorFloor(floor(20)));
+		
+		assertEquals(30, elevator.getAbove(floor(10)).getY());
+		assertEquals(10, elevator.getBelow(floor(30)).getY());
+		
+		//a player standing on a blocked floor still gets to its neighbours
+		assertEquals(30, elevator.getAbove(floor(20)).getY());
+		assertEquals(10, elevator.getBelow(floor(20)).getY());
+	}
+	
+	@Test
+	void heightsNextToFloorsAreNotFloors()
+	{
+		blockLanding(20);
+		elevator.setFloorHeights(new int[] { 10, 20, 30 }, world.getWorld());
+		
+		//the heights right above and below a blocked floor sort next to it
+		assertEquals(-1, elevator.getFloorNumber(floor(19)));
+		assertEquals(-1, elevator.getFloorNumber(floor(21)));
+		assertEquals(-1, elevator.getFloorNumber(floor(31)));
+		assertEquals(-1, elevator.getFloorNumber(floor(9)));
+		assertNull(elevator.getAbove(floor(15)));
+		assertNull(elevator.getBelow(floor(15)));
+		
+		//blocks of another column are never part of the elevator
+		assertEquals(-1, elevator.getFloorNumber(world.getBlock(X + 1, 10, Z)));
+	}
+	
+	@Test
+	void onlyBlockedFloorsLeadNowhere()
+	{
+		blockLanding(20);
+		blockLanding(30);
+		elevator.setFloorHeights(new int[] { 10, 20, 30 }, world.getWorld());
+		
+		assertNull(elevator.getAbove(floor(10)));
+		assertEquals(10, elevator.getBelow(floor(30)).getY());
+		assertNull(elevator.getBelow(floor(10)));
+	}
+	
+	@Test
+	void negativeHeightsKeepTheirOrder()
+	{
+		blockLanding(-64);
+		elevator.setFloorHeights(new int[] { -64, -63, -1, 0 }, world.getWorld());
+		
+		assertEquals(1, elevator.getFloorNumber(floor(-64)));
+		assertEquals(2, elevator.getFloorNumber(floor(-63)));
+		assertEquals(3, elevator.getFloorNumber(floor(-1)));
+		assertEquals(4, elevator.getFloorNumber(floor(0)));
+		assertEquals(-1, elevator.getFloorNumber(floor(-2)));
+		assertEquals(-63, elevator.getBelow(floor(-1)).getY());
+		assertNull(elevator.getBelow(floor(-63)));
+		assertArrayEquals(new int[] { -64, -63, -1, 0 }, elevator.getFloorHeights());
+	}
+	
+	@Test
+	void landingChangesKeepTheHeights()
+	{
+		blockLanding(20);
+		elevator.setFloorHeights(new int[] { 10, 20, 30 }, world.getWorld());
+		int[] heights = elevator.getFloorHeights();
+		
+		elevator.setLandingClear(20, true);
+		assertEquals(20, elevator.getAbove(floor(10)).getY());
+		assertSame(heights, elevator.getFloorHeights());
+		
+		elevator.setLandingClear(30, false);
+		assertNull(elevator.getAbove(floor(20)));
+		assertEquals(2, elevator.getFloorNumber(floor(20)));
+		assertEquals(3, elevator.getFloorNumber(floor(30)));
+		assertSame(heights, elevator.getFloorHeights());
+	}
+	
+	@Test
+	void addingAndRemovingFloorsKeepsThemSorted()
+	{
+		elevator.addElevatorFloor(floor(30));
+		elevator.addElevatorFloor(floor(10));
+		int[] heights = elevator.getFloorHeights();
+		
+		blockLanding(20);
+		elevator.addElevatorFloor(floor(20));
+		elevator.addElevatorFloor(floor(20));
+		
+		assertArrayEquals(new int[] { 10, 30 }, heights);
+		assertArrayEquals(new int[] { 10, 20, 30 }, elevator.getFloorHeights());
+		assertNotSame(heights, elevator.getFloorHeights());
+		assertEquals(30, elevator.getAbove(floor(10)).getY());
+		
+		elevator.removeElevatorFloor(floor(20));
+		assertArrayEquals(new int[] { 10, 30 }, elevator.getFloorHeights());
+		assertFalse(elevator.containsElevatorFloor(floor(20)));
+		
+		elevator.clearElevator();
+		assertEquals(0, elevator.floorCount());
+		assertEquals(0, elevator.getFloorHeights().length);
+	}
+}
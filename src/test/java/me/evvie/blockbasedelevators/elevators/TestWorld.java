@@ -0,0 +1,159 @@
+package me.evvie.blockbasedelevators.elevators;
+
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
+
+/**
+ * This class is an in-memory world for the tests, holding the materials of the blocks set in it
+ * Worlds and blocks are dynamic proxies, so only the methods the tested classes call are handled.
+ * Every block that wasn't set is air.
+ */
+final class TestWorld
+{
+	private final UUID worldId = UUID.randomUUID();
+	private final Map<Long, Material> materials = new HashMap<Long, Material>();
+	private final World world;
+	
+	/**
+	 * Constructor for the creation of an empty world
+	 */
+	TestWorld()
+	{
+		world = (World)Proxy.newProxyInstance(TestWorld.class.getClassLoader(), new Class<?>[] { World.class }, (proxy, method, args) ->
+		{
+			switch (method.getName())
+			{
+				case "getUID":
+					return worldId;
+				case "getBlockAt":
+					return getBlock((Integer)args[0], (Integer)args[1], (Integer)args[2]);
+				case "equals":
+					return proxy == args[0];
+				case "hashCode":
+					return worldId.hashCode();
+				case "toString":
+					return "TestWorld " + worldId;
+				default:
+					throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+	
+	/**
+	 * This method gets the world
+	 * @return The proxy of the world
+	 */
+	World getWorld()
+	{
+		return world;
+	}
+	
+	/**
+	 * This method gets the UUID of the world
+	 * @return The UUID of the world
+	 */
+	UUID getUID()
+	{
+		return worldId;
+	}
+	
+	/**
+	 * This method sets the material of a block
+	 * @param x The x-coordinate of the block
+	 * @param y The y-coordinate of the block
+	 * @param z The z-coordinate of the block
+	 * @param material The new material of the block
+	 */
+	void set(int x, int y, int z, Material material)
+	{
+		materials.put(key(x, y, z), material);
+	}
+	
+	/**
+	 * This method builds a floor of the given materials, with every rim block in place
+	 * @param x The x-coordinate of the center block
+	 * @param y The y-coordinate of the center block
+	 * @param z The z-coordinate of the center block
+	 * @param center The material of the center block
+	 * @param rim The material of the rim blocks
+	 */
+	void setFloor(int x, int y, int z, Material center, Material rim)
+	{
+		set(x, y, z, center);
+		set(x, y, z - 1, rim);
+		set(x + 1, y, z, rim);
+		set(x, y, z + 1, rim);
+		set(x - 1, y, z, rim);
+	}
+	
+	/**
+	 * This method gets a block of the world
+	 * @param x The x-coordinate of the block
+	 * @param y The y-coordinate of the block
+	 * @param z The z-coordinate of the block
+	 * @return The proxy of the block
+	 */
+	Block getBlock(final int x, final int y, final int z)
+	{
+		return (Block)Proxy.newProxyInstance(TestWorld.class.getClassLoader(), new Class<?>[] { Block.class }, (proxy, method, args) ->
+		{
+			switch (method.getName())
+			{
+				case "getX":
+					return x;
+				case "getY":
+					return y;
+				case "getZ":
+					return z;
+				case "getWorld":
+					return world;
+				case "getType":
+					return getType(x, y, z);
+				case "isPassable":
+					return !getType(x, y, z).isSolid();
+				case "getRelative":
+					BlockFace face = (BlockFace)args[0];
+					return getBlock(x + face.getModX(), y + face.getModY(), z + face.getModZ());
+				case "equals":
+					return args[0] instanceof Block && ((Block)args[0]).getX() == x && ((Block)args[0]).getY() == y && ((Block)args[0]).getZ() == z;
+				case "hashCode":
+					return Long.hashCode(key(x, y, z));
+				case "toString":
+					return "TestBlock " + x + " " + y + " " + z;
+				default:
+					throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+	
+	/**
+	 * This method gets the material of a block
+	 * @param x The x-coordinate of the block
+	 * @param y The y-coordinate of the block
+	 * @param z The z-coordinate of the block
+	 * @return The material of the block, air if it was never set
+	 */
+	private Material getType(int x, int y, int z)
+	{
+		return materials.getOrDefault(key(x, y, z), Material.AIR);
+	}
+	
+	/**
+	 * This method packs the coordinates of a block
+	 * @param x The x-coordinate of the block
+	 * @param y The y-coordinate of the block
+	 * @param z The z-coordinate of the block
+	 * @return The packed coordinates
+	 */
+	private static long key(int x, int y, int z)
+	{
+		return ((long)(x & 0x3FFFFFF) << 38) | ((long)(z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+	}
+}
@@ -0,0 +1,46 @@
+package me.evvie.blockbasedelevators.elevators;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * This class tests packing the elevators of unloaded chunks and reading them back
+ */
+class UnloadedElevatorsTest
+{
+	private final UUID worldId = UUID.randomUUID();
+	private final UnloadedElevators unloadedElevators = new UnloadedElevators();
+	
+	@Test
+	void chunksOnlyHoldTheirOwnElevators()
+	{
+		unloadedElevators.add(worldId, -1, -17, 2, new int[] { -30, 40 });
+		unloadedElevators.add(worldId, -16, -32, 0, new int[] { 5 });
+		unloadedElevators.add(worldId, 0, -17, 1, new int[] { 10 });
+		
+		final List<int[]> elevators = new ArrayList<int[]>();
+		unloadedElevators.forEachInChunk(worldId, -1, -2, (x, z, profile, floorHeights) -> elevators.add(new int[] { x, z, profile, floorHeights.length }));
+		
+		assertEquals(2, elevators.size());
+		assertArrayEquals(new int[] { -1, -17, 2, 2 }, elevators.get(0));
+		assertArrayEquals(new int[] { -16, -32, 0, 1 }, elevators.get(1));
+		assertArrayEquals(new int[] { -30, 40 }, unloadedElevators.find(worldId, -1, -17));
+		assertNull(unloadedElevators.find(worldId, -1, -18));
+		
+		//reading a chunk keeps its elevators, taking it removes them
+		unloadedElevators.take(worldId, -1, -2, (x, z, profile, floorHeights) -> {});
+		unloadedElevators.forEachInChunk(worldId, -1, -2, (x, z, profile, floorHeights) -> elevators.add(null));
+		unloadedElevators.forEachInChunk(UUID.randomUUID(), 0, -2, (x, z, profile, floorHeights) -> elevators.add(null));
+		
+		assertEquals(2, elevators.size());
+		assertEquals(1, unloadedElevators.size());
+		assertArrayEquals(new int[] { 10 }, unloadedElevators.find(worldId, 0, -17));
+	}
+}
@@ -0,0 +1,163 @@
+package me.evvie.blockbasedelevators.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * This class tests scheduling, re-arming and cancelling timers of a timing wheel
+ */
+class TimingWheelTest
+{
+	private final TimingWheel<TestTimer> wheel = new TimingWheel<TestTimer>(8);
+	private final List<TestTimer> expired = new ArrayList<TestTimer>();
+	private int tick;
+	
+	/**
+	 * This method advances the wheel, recording the tick each timer expires in
+	 * @param ticks The amount of ticks to advance
+	 */
+	private void advance(int ticks)
+	{
+		for (int i = 0; i < ticks; i++)
+		{
+			tick++;
+			wheel.tick(timer ->
+			{
+				timer.expiredAt = tick;
+				expired.add(timer);
+			});
+		}
+	}
+	
+	@Test
+	void timersExpireAfterTheirDelay()
+	{
+		TestTimer timer = new TestTimer();
+		wheel.schedule(timer, 3);
+		
+		advance(2);
+		assertTrue(expired.isEmpty());
+		assertTrue(timer.isScheduled());
+		
+		advance(1);
+		assertEquals(3, timer.expiredAt);
+		assertFalse(timer.isScheduled());
+		assertEquals(0, wheel.size());
+	}
+	
+	@Test
+	void delaysBelowOneTickExpireWithTheNextTick()
+	{
+		TestTimer timer = new TestTimer();
+		wheel.schedule(timer, 0);
+		
+		advance(1);
+		assertEquals(1, timer.expiredAt);
+	}
+	
+	@Test
+	void delaysLongerThanTheWheelWaitForTheirRound()
+	{
+		TestTimer timer = new TestTimer();
+		wheel.schedule(timer, 20);
+		
+		advance(19);
+		assertTrue(expired.isEmpty());
+		assertEquals(1, wheel.size());
+		
+		advance(1);
+		assertEquals(20, timer.expiredAt);
+	}
+	
+	@Test
+	void reschedulingReplacesTheDeadline()
+	{
+		TestTimer timer = new TestTimer();
+		wheel.schedule(timer, 2);
+		wheel.schedule(timer, 5);
+		assertEquals(1, wheel.size());
+		
+		advance(8);
+		assertEquals(1, expired.size());
+		assertEquals(5, timer.expiredAt);
+	}
+	
+	@Test
+	void cancelledTimersNeverExpire()
+	{
+		TestTimer first = new TestTimer();
+		TestTimer second = new TestTimer();
+		TestTimer third = new TestTimer();
+		wheel.schedule(first, 4);
+		wheel.schedule(second, 4);
+		wheel.schedule(third, 4);
+		
+		//the middle timer of the slot gets unlinked
+		assertTrue(wheel.cancel(second));
+		assertFalse(wheel.cancel(second));
+		assertEquals(2, wheel.size());
+		
+		advance(4);
+		assertEquals(2, expired.size());
+		assertTrue(expired.contains(first));
+		assertTrue(expired.contains(third));
+		assertFalse(wheel.cancel(first));
+	}
+	
+	@Test
+	void expiredTimersCanBeRearmedRightAway()
+	{
+		final TestTimer timer = new TestTimer();
+		final int[] expirations = new int[1];
+		wheel.schedule(timer, 8);
+		
+		for (int i = 0; i < 24; i++)
+		{
+			wheel.tick(expiredTimer ->
+			{
+				expirations[0]++;
+				wheel.schedule(expiredTimer, 8);
+			});
+		}
+		
+		//a timer re-armed into the slot being expired must not expire again in the same tick
+		assertEquals(3, expirations[0]);
+		assertTrue(timer.isScheduled());
+		assertEquals(1, wheel.size());
+	}
+	
+	@Test
+	void slotCountsAreRoundedUp()
+	{
+		TimingWheel<TestTimer> smallWheel = new TimingWheel<TestTimer>(1);
+		TestTimer timer = new TestTimer();
+		smallWheel.schedule(timer, 3);
+		
+		smallWheel.tick(expiredTimer -> fail());
+		smallWheel.tick(expiredTimer -> fail());
+		smallWheel.tick(expiredTimer -> expired.add(expiredTimer));
+		assertEquals(1, expired.size());
+	}
+	
+	/**
+	 * This method fails the test when a timer expires too early
+	 */
+	private static void fail()
+	{
+		throw new AssertionError("Timer expired too early");
+	}
+	
+	/**
+	 * This class is a timer remembering the tick it expired in
+	 */
+	private static class TestTimer extends TimingWheel.Timer
+	{
+		private int expiredAt = -1;
+	}
+}
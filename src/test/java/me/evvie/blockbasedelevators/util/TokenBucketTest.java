@@ -0,0 +1,105 @@
+package me.evvie.blockbasedelevators.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * This class tests taking tokens out of token buckets at given times
+ */
+class TokenBucketTest
+{
+	private static final long SECOND = 1000000000L;
+	private static final long START = 100 * SECOND;
+	
+	@Test
+	void fullBucketsAllowTheirBurst()
+	{
+		TokenBucket bucket = new TokenBucket(2, 3);
+		long state = 0;
+		
+		for (int i = 0; i < 3; i++)
+		{
+			state = bucket.take(state, START);
+			assertNotEquals(TokenBucket.DENIED, state);
+		}
+		
+		assertEquals(TokenBucket.DENIED, bucket.take(state, START));
+	}
+	
+	@Test
+	void tokensRefillOverTime()
+	{
+		TokenBucket bucket = new TokenBucket(2, 3);
+		long state = 0;
+		
+		for (int i = 0; i < 3; i++)
+			state = bucket.take(state, START);
+		
+		//one token comes back every half second, not earlier
+		assertEquals(TokenBucket.DENIED, bucket.take(state, START + SECOND / 2 - 1));
+		state = bucket.take(state, START + SECOND / 2);
+		assertNotEquals(TokenBucket.DENIED, state);
+		assertEquals(TokenBucket.DENIED, bucket.take(state, START + SECOND / 2));
+	}
+	
+	@Test
+	void idleBucketsNeverHoldMoreThanTheirBurst()
+	{
+		TokenBucket bucket = new TokenBucket(2, 3);
+		long state = bucket.take(0, START);
+		long now = START + 3600 * SECOND;
+		
+		for (int i = 0; i < 3; i++)
+			state = bucket.take(state, now);
+		
+		assertEquals(TokenBucket.DENIED, bucket.take(state, now));
+	}
+	
+	@Test
+	void burstsBelowOneHoldOneToken()
+	{
+		TokenBucket bucket = new TokenBucket(1, 0);
+		long state = bucket.take(0, START);
+		
+		assertNotEquals(TokenBucket.DENIED, state);
+		assertEquals(TokenBucket.DENIED, bucket.take(state, START));
+		assertNotEquals(TokenBucket.DENIED, bucket.take(state, START + SECOND));
+	}
+	
+	@Test
+	void slowRatesWaitLongerThanASecond()
+	{
+		TokenBucket bucket = new TokenBucket(0.25, 1);
+		long state = bucket.take(0, START);
+		
+		assertEquals(TokenBucket.DENIED, bucket.take(state, START + 3 * SECOND));
+		assertNotEquals(TokenBucket.DENIED, bucket.take(state, START + 4 * SECOND));
+	}
+	
+	@Test
+	void checkingForATokenDoesNotTakeIt()
+	{
+		TokenBucket bucket = new TokenBucket(2, 2);
+		long state = 0;
+		
+		for (int i = 0; i < 2; i++)
+		{
+			assertTrue(bucket.hasToken(state, START));
+			state = bucket.take(state, START);
+		}
+		
+		assertFalse(bucket.hasToken(state, START));
+		assertEquals(TokenBucket.DENIED, bucket.take(state, START));
+		assertTrue(bucket.hasToken(state, START + SECOND / 2));
+	}
+	
+	@Test
+	void clockNeverReturnsTheStateOfAFullBucket()
+	{
+		assertTrue(TokenBucket.now() > 0);
+	}
+}